@@ -0,0 +1,74 @@
+package de.bwaldvogel.mongo.bson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds a small document with an embedded subdocument, once as {@link Document} and once as nested
+ * {@link LinkedHashMap}s, which {@link Document} used before it switched to {@link CompactMap}.
+ * <p>
+ * Run with {@code gradle :mongo-java-server-core:jmh --args="-prof gc DocumentFootprintBenchmark"}.
+ * Everything that is allocated while building the document stays reachable from it, so the allocated bytes per
+ * document ({@code gc.alloc.rate.norm}) are the heap footprint of the document, excluding the shared keys and values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentFootprintBenchmark {
+
+    @Param({"3", "10", "20"})
+    private int numberOfFields;
+
+    private String[] keys;
+    private Object[] values;
+
+    @Setup
+    public void setup() {
+        keys = new String[numberOfFields];
+        values = new Object[numberOfFields];
+        for (int i = 0; i < numberOfFields; i++) {
+            keys[i] = "field" + i;
+            values[i] = Integer.valueOf(i);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> compactDocument() {
+        Document document = new Document();
+        for (int i = 0; i < keys.length; i++) {
+            document.put(keys[i], values[i]);
+        }
+        document.put("address", new Document("street", values[0]).append("zip", values[0]));
+        return document;
+    }
+
+    @Benchmark
+    public Map<String, Object> linkedHashMap() {
+        Map<String, Object> document = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            document.put(keys[i], values[i]);
+        }
+        Map<String, Object> address = new LinkedHashMap<>();
+        address.put("street", values[0]);
+        address.put("zip", values[0]);
+        document.put("address", address);
+        return document;
+    }
+
+}
@@ -0,0 +1,82 @@
+package de.bwaldvogel.mongo.wire.bson;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.bson.ObjectId;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Encodes the reply of a {@code find} command with a large first batch.
+ * <p>
+ * Run with {@code gradle :mongo-java-server-core:jmh --args="-prof gc BsonEncoderBenchmark"}
+ * to see the allocation rate ({@code gc.alloc.rate.norm}) per encoded reply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BsonEncoderBenchmark {
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private Document reply;
+    private ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        List<Document> firstBatch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            List<Object> tags = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                tags.add("tag-" + j);
+            }
+            firstBatch.add(new Document("_id", new ObjectId())
+                .append("name", "document " + i)
+                .append("description", "café тест")
+                .append("counter", i)
+                .append("created", Instant.ofEpochMilli(i))
+                .append("address", new Document("street", "Main Street").append("zip", 12345L))
+                .append("tags", tags));
+        }
+
+        Document cursor = new Document("firstBatch", firstBatch)
+            .append("id", 0L)
+            .append("ns", "testdb.testcollection");
+        reply = new Document("cursor", cursor).append("ok", 1.0);
+        buffer = Unpooled.directBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public ByteBuf encodeFindReply() {
+        buffer.clear();
+        BsonEncoder.encodeDocument(reply, buffer);
+        return buffer;
+    }
+
+}
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.List;
 
 import de.bwaldvogel.mongo.backend.QueryResult;
+import de.bwaldvogel.mongo.backend.ServerMetrics;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.wire.message.MongoMessage;
 import de.bwaldvogel.mongo.wire.message.MongoQuery;
@@ -26,6 +27,11 @@ public interface MongoBackend {
 
     Document getServerStatus();
 
+    /**
+     * @return the metrics that are reported by {@link #getServerStatus()} or null if the backend has none
+     */
+    ServerMetrics getMetrics();
+
     void close();
 
     void closeCursors(List<Long> cursorIds);
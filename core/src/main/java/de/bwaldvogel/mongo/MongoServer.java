@@ -2,9 +2,17 @@ package de.bwaldvogel.mongo;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLException;
@@ -13,21 +21,36 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.backend.Assert;
+import de.bwaldvogel.mongo.backend.ServerMetrics;
+import de.bwaldvogel.mongo.wire.AdmissionControl;
 import de.bwaldvogel.mongo.wire.MongoDatabaseHandler;
 import de.bwaldvogel.mongo.wire.MongoExceptionHandler;
 import de.bwaldvogel.mongo.wire.MongoWireMessageEncoder;
 import de.bwaldvogel.mongo.wire.MongoWireProtocolHandler;
 import de.bwaldvogel.mongo.wire.MongoWireReplyEncoder;
+import de.bwaldvogel.mongo.wire.NetworkMetricsHandler;
+import de.bwaldvogel.mongo.wire.RequestExecutor;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressor;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressors;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerDomainSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 
@@ -47,8 +70,38 @@ public class MongoServer {
 
     private Channel channel;
 
+    private Path unixDomainSocketPath;
+
+    private final List<Channel> additionalAcceptorChannels = new ArrayList<>();
+
+    private boolean nativeTransport;
+
+    private int numberOfAcceptors = 1;
+
     private SslContext sslContext;
 
+    private int numberOfRequestThreads;
+
+    private Executor customRequestExecutor;
+
+    private ExecutorService requestThreadPool;
+
+    private RequestExecutor requestExecutor;
+
+    private List<MessageCompressor> compressors = MessageCompressors.getAvailableCompressors();
+
+    private boolean checksums;
+
+    private int maxConnections = AdmissionControl.UNLIMITED;
+
+    private int maxInFlightRequestsPerConnection = AdmissionControl.UNLIMITED;
+
+    private int maxInFlightRequests = AdmissionControl.UNLIMITED;
+
+    private int maxPendingReplyBytes;
+
+    private AdmissionControl admissionControl;
+
     public MongoServer(MongoBackend backend) {
         this.backend = backend;
     }
@@ -66,43 +119,249 @@ public class MongoServer {
         }
     }
 
+    /**
+     * Sets the compressors that are offered to clients in the handshake. By default, all available compressors
+     * are offered: snappy and zstd if their libraries are on the classpath, and zlib.
+     *
+     * @param compressorNames the names of the compressors in the order of preference. No names disable compression.
+     */
+    public void setCompressors(String... compressorNames) {
+        Assert.isNull(channel, () -> "Server already started");
+        List<MessageCompressor> compressors = new ArrayList<>();
+        for (String compressorName : compressorNames) {
+            MessageCompressor compressor = MessageCompressors.getByName(compressorName);
+            Assert.notNull(compressor, () -> "Unsupported compressor: " + compressorName);
+            compressors.add(compressor);
+        }
+        this.compressors = compressors;
+    }
+
+    /**
+     * Verifies the CRC-32C checksums of incoming {@code OP_MSG} messages and appends a checksum to every
+     * outgoing {@code OP_MSG} message. A client that sends a message with a wrong checksum is disconnected.
+     * By default, checksums of incoming messages are ignored and none are written.
+     */
+    public void enableChecksums() {
+        Assert.isNull(channel, () -> "Server already started");
+        this.checksums = true;
+    }
+
+    /**
+     * Limits the number of open connections. Clients that connect while the limit is reached are disconnected
+     * immediately and counted in {@code serverStatus.connections.rejected}.
+     */
+    public void setMaxConnections(int maxConnections) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.isTrue(maxConnections > 0, () -> "Illegal maximum number of connections: " + maxConnections);
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Limits the number of requests that are handled or waiting to be handled at the same time. A client that
+     * reaches the limit is not rejected, instead the server stops reading its requests until a reply was written.
+     *
+     * @param maxInFlightRequestsPerConnection the limit for the requests of a single connection
+     * @param maxInFlightRequests              the limit for the requests of all connections
+     */
+    public void setMaxInFlightRequests(int maxInFlightRequestsPerConnection, int maxInFlightRequests) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.isTrue(maxInFlightRequestsPerConnection > 0,
+            () -> "Illegal maximum number of in-flight requests per connection: " + maxInFlightRequestsPerConnection);
+        Assert.isTrue(maxInFlightRequests > 0, () -> "Illegal maximum number of in-flight requests: " + maxInFlightRequests);
+        this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * Stops reading the requests of a client while more than the given number of reply bytes wait to be sent to
+     * the client. Reading is resumed when half of them were sent.
+     */
+    public void setMaxPendingReplyBytes(int maxPendingReplyBytes) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.isTrue(maxPendingReplyBytes > 0, () -> "Illegal maximum number of pending reply bytes: " + maxPendingReplyBytes);
+        this.maxPendingReplyBytes = maxPendingReplyBytes;
+    }
+
+    /**
+     * @return the connection and request counters of the server or null if the server was never started
+     */
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * Uses the native epoll transport of Netty if it is available on the current platform.
+     * The server falls back to the NIO transport otherwise.
+     */
+    public void enableNativeTransport() {
+        enableNativeTransport(1);
+    }
+
+    /**
+     * Uses the native epoll transport of Netty if it is available on the current platform.
+     * The server falls back to the NIO transport with a single acceptor otherwise.
+     *
+     * @param numberOfAcceptors the number of server sockets that are bound to the same address with
+     *                          {@code SO_REUSEPORT}, such that the kernel distributes new connections
+     *                          over several boss threads
+     */
+    public void enableNativeTransport(int numberOfAcceptors) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.isTrue(numberOfAcceptors > 0, () -> "Illegal number of acceptors: " + numberOfAcceptors);
+        this.nativeTransport = true;
+        this.numberOfAcceptors = numberOfAcceptors;
+    }
+
+    /**
+     * @return true if the server was bound using the native epoll transport
+     */
+    public boolean isNativeTransportActive() {
+        return channel instanceof EpollServerSocketChannel || channel instanceof EpollServerDomainSocketChannel;
+    }
+
+    /**
+     * Handles requests in a fixed pool of threads instead of the Netty event loop, such that slow requests
+     * do not delay the requests of other clients. The requests of a single client are still handled in order.
+     *
+     * @param numberOfThreads the number of threads that handle requests
+     */
+    public void enableRequestExecutor(int numberOfThreads) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.isTrue(numberOfThreads > 0, () -> "Illegal number of threads: " + numberOfThreads);
+        this.numberOfRequestThreads = numberOfThreads;
+        this.customRequestExecutor = null;
+    }
+
+    /**
+     * Handles requests in the given executor instead of the Netty event loop, such that slow requests do not
+     * delay the requests of other clients. The requests of a single client are still handled in order.
+     * <p>
+     * On JDK 21 or later, {@code Executors.newVirtualThreadPerTaskExecutor()} can be used to handle every request
+     * in its own virtual thread. The executor is not shut down by the server.
+     *
+     * @param executor the executor that handles requests
+     */
+    public void enableRequestExecutor(Executor executor) {
+        Assert.isNull(channel, () -> "Server already started");
+        Assert.notNull(executor, () -> "Executor must not be null");
+        this.customRequestExecutor = executor;
+        this.numberOfRequestThreads = 0;
+    }
+
+    /**
+     * @return the executor that handles requests including its queue metrics or null if requests are handled on
+     * the Netty event loop
+     */
+    public RequestExecutor getRequestExecutor() {
+        return requestExecutor;
+    }
+
     public void bind(String hostname, int port) {
         bind(new InetSocketAddress(hostname, port));
     }
 
+    /**
+     * Binds the server to the given address. Besides TCP addresses, a {@link UnixDomainSocketAddress} can be
+     * given to accept local clients on a Unix domain socket without the overhead of the TCP loopback stack.
+     * The socket file must not exist yet and is deleted when the server stops listening.
+     */
     public void bind(SocketAddress socketAddress) {
         bind(socketAddress, DEFAULT_NETTY_EVENT_LOOP_THREADS, DEFAULT_NETTY_EVENT_LOOP_THREADS);
     }
 
     public void bind(SocketAddress socketAddress, int numberOfBossThreads, int numberOfWorkerThreads) {
+        boolean useEpoll = nativeTransport && Epoll.isAvailable();
+        if (nativeTransport && !useEpoll) {
+            Throwable cause = Epoll.unavailabilityCause();
+            log.info("Native transport is not available. Falling back to NIO: {}", String.valueOf(cause));
+            log.debug("Native transport is not available", cause);
+        }
 
-        bossGroup = new NioEventLoopGroup(numberOfBossThreads, new MongoThreadFactory("mongo-server-boss"));
-        workerGroup = new NioEventLoopGroup(numberOfWorkerThreads, new MongoThreadFactory("mongo-server-worker"));
+        boolean domainSocket = socketAddress instanceof UnixDomainSocketAddress;
+        // SO_REUSEPORT only applies to TCP
+        int acceptors = useEpoll && !domainSocket ? numberOfAcceptors : 1;
+        if (useEpoll) {
+            if (numberOfBossThreads > 0) {
+                // every acceptor needs its own boss thread
+                numberOfBossThreads = Math.max(numberOfBossThreads, acceptors);
+            }
+            bossGroup = new EpollEventLoopGroup(numberOfBossThreads, new MongoThreadFactory("mongo-server-boss"));
+            workerGroup = new EpollEventLoopGroup(numberOfWorkerThreads, new MongoThreadFactory("mongo-server-worker"));
+        } else {
+            bossGroup = new NioEventLoopGroup(numberOfBossThreads, new MongoThreadFactory("mongo-server-boss"));
+            workerGroup = new NioEventLoopGroup(numberOfWorkerThreads, new MongoThreadFactory("mongo-server-worker"));
+        }
         channelGroup = new DefaultChannelGroup("mongodb-channels", workerGroup.next());
 
+        admissionControl = new AdmissionControl(maxConnections, maxInFlightRequestsPerConnection, maxInFlightRequests);
+        ServerMetrics metrics = backend.getMetrics();
+        NetworkMetricsHandler networkMetricsHandler = metrics != null ? new NetworkMetricsHandler(metrics) : null;
+
+        if (customRequestExecutor != null) {
+            requestExecutor = new RequestExecutor(customRequestExecutor);
+        } else if (numberOfRequestThreads > 0) {
+            requestThreadPool = Executors.newFixedThreadPool(numberOfRequestThreads, new MongoThreadFactory("mongo-server-request"));
+            requestExecutor = new RequestExecutor(requestThreadPool);
+        }
+
+        final Class<? extends ServerChannel> channelClass;
+        final SocketAddress localAddress;
+        if (domainSocket) {
+            Path path = ((UnixDomainSocketAddress) socketAddress).getPath();
+            channelClass = useEpoll ? EpollServerDomainSocketChannel.class : NioServerDomainSocketChannel.class;
+            localAddress = useEpoll ? new DomainSocketAddress(path.toString()) : socketAddress;
+            unixDomainSocketPath = path;
+        } else {
+            channelClass = useEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+            localAddress = socketAddress;
+        }
+
         try {
             ServerBootstrap bootstrap = new ServerBootstrap()
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(channelClass)
                 .option(ChannelOption.SO_BACKLOG, 100)
-                .localAddress(socketAddress)
-                .childOption(ChannelOption.TCP_NODELAY, Boolean.TRUE)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
+                .localAddress(localAddress)
+                .childHandler(new ChannelInitializer<>() {
                     @Override
-                    public void initChannel(SocketChannel ch) throws Exception {
+                    public void initChannel(Channel ch) throws Exception {
                         if (sslContext != null) {
                             ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
                         }
-                        ch.pipeline().addLast(new MongoWireReplyEncoder());
-                        ch.pipeline().addLast(new MongoWireMessageEncoder());
-                        ch.pipeline().addLast(new MongoWireProtocolHandler());
-                        ch.pipeline().addLast(new MongoDatabaseHandler(backend, channelGroup));
+                        if (networkMetricsHandler != null) {
+                            ch.pipeline().addLast(networkMetricsHandler);
+                        }
+                        CompressionContext compressionContext = new CompressionContext(compressors);
+                        ch.pipeline().addLast(new MongoWireReplyEncoder(compressionContext));
+                        ch.pipeline().addLast(new MongoWireMessageEncoder(compressionContext, checksums));
+                        ch.pipeline().addLast(new MongoWireProtocolHandler(compressionContext, checksums));
+                        Executor channelExecutor = requestExecutor != null ? requestExecutor.newChannelExecutor() : null;
+                        ch.pipeline().addLast(new MongoDatabaseHandler(backend, channelGroup, channelExecutor, compressionContext,
+                            admissionControl));
                         ch.pipeline().addLast(new MongoExceptionHandler());
                     }
                 });
 
+            if (!domainSocket) {
+                bootstrap.childOption(ChannelOption.TCP_NODELAY, Boolean.TRUE);
+            }
+
+            if (maxPendingReplyBytes > 0) {
+                WriteBufferWaterMark waterMark = new WriteBufferWaterMark(maxPendingReplyBytes / 2, maxPendingReplyBytes);
+                bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark);
+            }
+
+            if (acceptors > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, Boolean.TRUE);
+            }
+
             channel = bootstrap.bind().syncUninterruptibly().channel();
 
+            // bind the resolved address such that a random port is shared by all acceptors
+            for (int i = 1; i < acceptors; i++) {
+                additionalAcceptorChannels.add(bootstrap.bind(channel.localAddress()).syncUninterruptibly().channel());
+            }
+
             log.info("started {}", this);
         } catch (RuntimeException e) {
             shutdownNow();
@@ -133,17 +392,29 @@ public class MongoServer {
     }
 
     /**
-     * @return the local address the server was bound or null if the server is not listening
+     * @return the local address the server was bound or null if the server is not listening on a TCP socket
      */
     public InetSocketAddress getLocalAddress() {
-        if (channel == null) {
+        if (channel == null || unixDomainSocketPath != null) {
             return null;
         }
         return (InetSocketAddress) channel.localAddress();
     }
 
     /**
-     * @return the MongoDB connection string to connect to this server. Example: mongodb://localhost:12345
+     * @return the path of the Unix domain socket the server was bound to or null if the server is not listening
+     * on a Unix domain socket
+     */
+    public Path getUnixDomainSocketPath() {
+        if (channel == null) {
+            return null;
+        }
+        return unixDomainSocketPath;
+    }
+
+    /**
+     * @return the MongoDB connection string to connect to this server. Example: mongodb://localhost:12345 or
+     * mongodb://%2Ftmp%2Fmongo.sock for a Unix domain socket
      */
     public String getConnectionString() {
         final String options;
@@ -153,6 +424,10 @@ public class MongoServer {
             options = "";
         }
 
+        if (unixDomainSocketPath != null) {
+            return "mongodb://" + URLEncoder.encode(unixDomainSocketPath.toString(), StandardCharsets.UTF_8) + options;
+        }
+
         InetSocketAddress socketAddress = getLocalAddress();
         return "mongodb://" + socketAddress.getHostString() + ":" + socketAddress.getPort() + options;
     }
@@ -181,11 +456,30 @@ public class MongoServer {
             workerGroup.terminationFuture().syncUninterruptibly();
         }
 
+        shutdownRequestThreadPool();
+
         backend.close();
 
         log.info("completed shutdown of {}", this);
     }
 
+    private void shutdownRequestThreadPool() {
+        if (requestThreadPool != null) {
+            requestThreadPool.shutdown();
+            try {
+                if (!requestThreadPool.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Request threads did not terminate in time");
+                    requestThreadPool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                requestThreadPool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            requestThreadPool = null;
+        }
+        requestExecutor = null;
+    }
+
     /**
      * Closes the server socket. No new clients are accepted afterwards.
      */
@@ -195,6 +489,11 @@ public class MongoServer {
             channel.close().syncUninterruptibly();
             channel = null;
         }
+        unixDomainSocketPath = null;
+        for (Channel acceptorChannel : additionalAcceptorChannels) {
+            acceptorChannel.close().syncUninterruptibly();
+        }
+        additionalAcceptorChannels.clear();
     }
 
     /**
@@ -223,9 +522,13 @@ public class MongoServer {
         StringBuilder sb = new StringBuilder(getClass().getSimpleName());
         sb.append("(");
         InetSocketAddress socketAddress = getLocalAddress();
+        Path socketPath = getUnixDomainSocketPath();
         if (socketAddress != null) {
             sb.append("port: ").append(socketAddress.getPort());
             sb.append(", ssl: ").append(sslContext != null);
+        } else if (socketPath != null) {
+            sb.append("path: ").append(socketPath);
+            sb.append(", ssl: ").append(sslContext != null);
         }
         sb.append(")");
         return sb.toString();
@@ -25,6 +25,8 @@ import de.bwaldvogel.mongo.MongoDatabase;
 import de.bwaldvogel.mongo.MongoVersion;
 import de.bwaldvogel.mongo.ServerVersion;
 import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.BadValueException;
+import de.bwaldvogel.mongo.exception.MaxTimeMSExpiredException;
 import de.bwaldvogel.mongo.exception.MongoServerException;
 import de.bwaldvogel.mongo.exception.MongoSilentServerException;
 import de.bwaldvogel.mongo.exception.NamespaceExistsException;
@@ -55,7 +57,11 @@ public abstract class AbstractMongoBackend implements MongoBackend {
     private final Clock clock;
     private final Instant started;
 
-    private final CursorRegistry cursorRegistry = new CursorRegistry();
+    private final CursorRegistry cursorRegistry;
+
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    private final OperationRegistry operationRegistry;
 
     protected Oplog oplog = NoopOplog.get();
 
@@ -66,6 +72,8 @@ public abstract class AbstractMongoBackend implements MongoBackend {
     protected AbstractMongoBackend(Clock clock) {
         this.started = Instant.now(clock);
         this.clock = clock;
+        this.operationRegistry = new OperationRegistry(clock);
+        this.cursorRegistry = new CursorRegistry();
     }
 
     protected static Clock defaultClock() {
@@ -109,15 +117,16 @@ public abstract class AbstractMongoBackend implements MongoBackend {
 
         Document metrics = new Document();
         Document cursorMetrics = new Document();
-        cursorMetrics.put("timedOut", 0L);
+        cursorMetrics.put("timedOut", Long.valueOf(cursorRegistry.getTimedOutCursors()));
 
         Document openCursors = new Document();
-        openCursors.put("noTimeout", 0L);
+        openCursors.put("noTimeout", Long.valueOf(cursorRegistry.getNoTimeoutCursors()));
         openCursors.put("pinned", 0L);
         openCursors.put("total", (long) cursorRegistry.size());
         cursorMetrics.put("open", openCursors);
 
         metrics.put("cursor", cursorMetrics);
+        this.metrics.appendTo(serverStatus, metrics);
         serverStatus.put("metrics", metrics);
 
         Utils.markOkay(serverStatus);
@@ -170,10 +179,16 @@ public abstract class AbstractMongoBackend implements MongoBackend {
         } else if (command.equalsIgnoreCase("find")) {
             String collectionName = (String) query.get(command);
             if (collectionName.equals("$cmd.sys.inprog")) {
-                return Utils.firstBatchCursorResponse(collectionName, new Document("inprog", Collections.emptyList()));
+                Document filter = (Document) query.getOrDefault("filter", new Document());
+                List<Document> currentOperations = operationRegistry.getCurrentOperations(filter);
+                return Utils.firstBatchCursorResponse(collectionName, new Document("inprog", currentOperations));
             } else {
                 throw new NoSuchCommandException(new Document(command, collectionName).toString());
             }
+        } else if (command.equalsIgnoreCase("currentOp")) {
+            return handleCurrentOp(command, query);
+        } else if (command.equalsIgnoreCase("killOp")) {
+            return handleKillOp(query);
         } else if (command.equalsIgnoreCase("replSetGetStatus")) {
             throw new NoReplicationEnabledException();
         } else if (command.equalsIgnoreCase("getLog")) {
@@ -302,6 +317,27 @@ public abstract class AbstractMongoBackend implements MongoBackend {
 
     @Override
     public Document handleCommand(Channel channel, String databaseName, String command, Document query) {
+        long start = System.nanoTime();
+        String commandName = command;
+        boolean failed = true;
+        Operation operation = null;
+        try {
+            operation = operationRegistry.start(channel, databaseName, command, query);
+            Document response = dispatchCommand(channel, databaseName, command, query);
+            failed = false;
+            return response;
+        } catch (NoSuchCommandException e) {
+            commandName = ServerMetrics.UNKNOWN_COMMAND;
+            throw e;
+        } finally {
+            if (operation != null) {
+                operationRegistry.finish(operation);
+            }
+            metrics.recordCommand(commandName, query, System.nanoTime() - start, failed);
+        }
+    }
+
+    private Document dispatchCommand(Channel channel, String databaseName, String command, Document query) {
         if (command.equalsIgnoreCase("whatsmyuri")) {
             Document response = new Document();
             InetSocketAddress remoteAddress = (InetSocketAddress) channel.remoteAddress();
@@ -344,13 +380,54 @@ public abstract class AbstractMongoBackend implements MongoBackend {
 
     @Override
     public Collection<Document> getCurrentOperations(MongoQuery query) {
-        // TODO
-        return Collections.emptyList();
+        return operationRegistry.getCurrentOperations(currentOpFilter(query.getQuery(), null));
+    }
+
+    private static Document currentOpFilter(Document query, String command) {
+        Document filter = new Document();
+        if (query != null) {
+            query.forEach((key, value) -> {
+                // skip the command itself and the fields that the driver adds to every command
+                if (!key.equals(command) && !key.startsWith("$") && !key.equals("lsid")) {
+                    filter.put(key, value);
+                }
+            });
+        }
+        return filter;
+    }
+
+    private Document handleCurrentOp(String command, Document query) {
+        Document response = new Document("inprog", operationRegistry.getCurrentOperations(currentOpFilter(query, command)));
+        Utils.markOkay(response);
+        return response;
+    }
+
+    private Document handleKillOp(Document query) {
+        Object op = query.get("op");
+        if (!(op instanceof Number opId)) {
+            throw new BadValueException("Illegal attempt to kill operation with op: " + op);
+        }
+        if (operationRegistry.kill(opId.intValue())) {
+            log.info("Killing op {}", opId);
+        } else {
+            log.info("Op {} not found", opId);
+        }
+        Document response = new Document("info", "attempting to kill op");
+        Utils.markOkay(response);
+        return response;
     }
 
     @Override
     public QueryResult handleQuery(MongoQuery query) {
-        return resolveDatabase(query).handleQuery(query);
+        long start = System.nanoTime();
+        Document find = new Document("find", query.getCollectionName()).append("filter", query.getQuery());
+        Operation operation = operationRegistry.start(query.getChannel(), query.getDatabaseName(), "find", find);
+        try {
+            return resolveDatabase(query).handleQuery(query);
+        } finally {
+            operationRegistry.finish(operation);
+            metrics.recordQuery(System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -391,7 +468,18 @@ public abstract class AbstractMongoBackend implements MongoBackend {
 
     private QueryResult handleGetMore(long cursorId, int numberToReturn) {
         Cursor cursor = cursorRegistry.getCursor(cursorId);
-        List<Document> documents = cursor.takeDocuments(numberToReturn);
+        List<Document> documents;
+        try {
+            Operation operation = Operation.current();
+            if (operation != null) {
+                operation.applyDeadline(cursor.getDeadlineNanos());
+            }
+            documents = cursor.takeDocuments(numberToReturn);
+        } catch (MaxTimeMSExpiredException e) {
+            // like in MongoDB, a cursor that exceeded the time limit of its query cannot be continued
+            cursorRegistry.remove(cursor);
+            throw e;
+        }
         if (cursor.isEmpty()) {
             log.debug("Removing empty {}", cursor);
             cursorRegistry.remove(cursor);
@@ -434,6 +522,7 @@ public abstract class AbstractMongoBackend implements MongoBackend {
     public void close() {
         log.info("closing {}", this);
         databases.clear();
+        cursorRegistry.close();
     }
 
     @Override
@@ -466,6 +555,22 @@ public abstract class AbstractMongoBackend implements MongoBackend {
         return new CollectionBackedOplog(this, collection, cursorRegistry);
     }
 
+    /**
+     * Sets the time after which an idle cursor is closed. Defaults to {@link CursorRegistry#DEFAULT_CURSOR_TIMEOUT}.
+     */
+    public void setCursorTimeout(Duration cursorTimeout) {
+        cursorRegistry.setCursorTimeout(cursorTimeout);
+    }
+
+    @Override
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    protected OperationRegistry getOperationRegistry() {
+        return operationRegistry;
+    }
+
     protected CursorRegistry getCursorRegistry() {
         return cursorRegistry;
     }
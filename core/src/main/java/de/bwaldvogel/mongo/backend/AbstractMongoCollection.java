@@ -15,6 +15,8 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -25,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import de.bwaldvogel.mongo.MongoCollection;
 import de.bwaldvogel.mongo.MongoDatabase;
 import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.bson.FieldNameInterner;
 import de.bwaldvogel.mongo.bson.ObjectId;
 import de.bwaldvogel.mongo.exception.ConflictingUpdateOperatorsException;
 import de.bwaldvogel.mongo.exception.ErrorCode;
@@ -65,20 +68,65 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         return uuid;
     }
 
-    protected boolean documentMatchesQuery(Document document, Document query) {
-        return matcher.matches(document, query);
+    protected Predicate<Document> compileQuery(Document query) {
+        return matcher.compile(query);
     }
 
     protected QueryResult queryDocuments(Document query, Document orderBy, int numberToSkip, int limit, int batchSize,
                                          Document fieldSelector) {
+        Index<P> index = findIndexForQuery(query, orderBy);
+
+        Stream<P> orderedPositions = findPositionsInOrder(query, orderBy, index);
+        if (orderedPositions != null) {
+            Stream<Document> documentStream = orderedPositions.map(this::getDocument).filter(Objects::nonNull);
+            return matchDocumentsFromStream(query, documentStream, numberToSkip, limit, batchSize, null, fieldSelector);
+        }
+
+        if (index != null) {
+            Iterable<P> positions = index.getPositions(query);
+            return matchDocuments(query, positions, orderBy, numberToSkip, limit, batchSize, fieldSelector);
+        }
+
+        return matchDocuments(query, orderBy, numberToSkip, limit, batchSize, fieldSelector);
+    }
+
+    private Index<P> findIndexForQuery(Document query, Document orderBy) {
+        if (isNaturalDescending(orderBy)) {
+            // positions are returned in index order or natural order
+            return null;
+        }
+        Index<P> secondaryIndex = null;
         for (Index<P> index : indexes) {
-            if (index.canHandle(query)) {
-                Iterable<P> positions = index.getPositions(query);
-                return matchDocuments(query, positions, orderBy, numberToSkip, limit, batchSize, fieldSelector);
+            if (index.isUnique()) {
+                if (index.canHandle(query)) {
+                    return index;
+                }
+            } else if (secondaryIndex == null && index.canHandle(query)) {
+                secondaryIndex = index;
             }
         }
+        return secondaryIndex;
+    }
 
-        return matchDocuments(query, orderBy, numberToSkip, limit, batchSize, fieldSelector);
+    /**
+     * Looks for an index that returns the documents in the requested order, such that the documents do not need
+     * to be sorted and the scan can stop after {@code numberToSkip + limit} documents.
+     * An index that cannot restrict the query is only used if no other index can handle the query.
+     */
+    private Stream<P> findPositionsInOrder(Document query, Document orderBy, Index<P> queryIndex) {
+        if (deriveComparator(orderBy) == null) {
+            return null;
+        }
+        for (Index<P> index : indexes) {
+            if (queryIndex != null && index != queryIndex && !index.canHandle(query)) {
+                continue;
+            }
+            Stream<P> positions = index.getPositionsInOrder(query, orderBy);
+            if (positions != null) {
+                return positions;
+            }
+        }
+        return null;
     }
 
     protected abstract QueryResult matchDocuments(Document query, Document orderBy, int numberToSkip,
@@ -95,10 +143,19 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
                                                    Comparator<Document> documentComparator,
                                                    Document fieldSelector) {
         documentStream = documentStream
-            .filter(document -> documentMatchesQuery(document, query));
+            .peek(document -> Operation.documentExamined())
+            .filter(compileQuery(query));
 
         if (documentComparator != null) {
-            documentStream = documentStream.sorted(documentComparator);
+            if (limit > 0) {
+                // keep only the first documents instead of sorting all matching documents
+                int maxSize = (int) Math.min(Integer.MAX_VALUE, (long) Math.max(numberToSkip, 0) + limit);
+                documentStream = documentStream
+                    .collect(StreamUtils.toSortedList(documentComparator, maxSize))
+                    .stream();
+            } else {
+                documentStream = documentStream.sorted(documentComparator);
+            }
         }
 
         if (numberToSkip > 0) {
@@ -114,15 +171,16 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
             documentStream = documentStream.map(projection::projectDocument);
         }
 
-        List<Document> matchedDocuments = documentStream.collect(Collectors.toList());
-        return createQueryResult(matchedDocuments, batchSize);
+        return createQueryResult(documentStream.iterator(), batchSize);
     }
 
     protected QueryResult matchDocuments(Document query, Iterable<P> positions, Document orderBy,
                                          int numberToSkip, int limit, int batchSize,
                                          Document fieldSelector) {
         Stream<Document> documentStream = StreamSupport.stream(positions.spliterator(), false)
-            .map(this::getDocument);
+            .map(this::getDocument)
+            // the document might have been removed after the positions were collected
+            .filter(Objects::nonNull);
 
         return matchDocumentsFromStream(documentStream, query, orderBy, numberToSkip, limit, batchSize, fieldSelector);
     }
@@ -156,10 +214,43 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
 
     protected abstract Document getDocument(P position);
 
+    /**
+     * Runs the given action while the documents cannot be modified concurrently, e.g. to advance the query pipeline
+     * of a cursor. By default, the monitor of the collection is held, like in {@link AbstractSynchronizedMongoCollection}.
+     */
+    protected <T> T readLocked(Supplier<T> action) {
+        synchronized (this) {
+            return action.get();
+        }
+    }
+
     protected abstract void updateDataSize(int sizeDelta);
 
     protected abstract int getDataSize();
 
+    /**
+     * Returns the encoded size of the stored document at the given position. Backends that keep the size of
+     * their documents override this method, such that the document does not need to be measured again.
+     */
+    @VisibleForExternalBackends
+    protected int getDocumentSize(P position, Document document) {
+        return Utils.calculateSize(document);
+    }
+
+    /**
+     * Called when a document was added at the given position, with the encoded size of the document.
+     */
+    @VisibleForExternalBackends
+    protected void storeDocumentSize(P position, int size) {
+    }
+
+    /**
+     * Called when the stored document at the given position is updated and its encoded size changes by the given delta.
+     */
+    @VisibleForExternalBackends
+    protected void updateDocumentSize(P position, int sizeDelta) {
+    }
+
     protected abstract P addDocumentInternal(Document document);
 
     @Override
@@ -178,6 +269,7 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
             index.checkAdd(document, this);
         }
 
+        document.prepareForStorage(null);
         P position = addDocumentInternal(document);
 
         for (Index<P> index : indexes) {
@@ -185,7 +277,9 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         }
 
         if (tracksDataSize()) {
-            updateDataSize(Utils.calculateSize(document));
+            int size = Utils.calculateSize(document);
+            storeDocumentSize(position, size);
+            updateDataSize(size);
         }
     }
 
@@ -300,7 +394,8 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
             newDocument.put(getIdField(), oldId);
         }
 
-        newDocument.cloneInto(oldDocument);
+        // the replacement is not used after the update, hence its embedded documents can be taken over
+        oldDocument.putAll(newDocument);
     }
 
     Object deriveDocumentId(Document selector) {
@@ -349,7 +444,11 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
             applyUpdate(newDocument, update);
         } else if (numStartsWithDollar == update.keySet().size()) {
             validateUpdateQuery(update);
-            oldDocument.cloneInto(newDocument);
+            // share the embedded documents with the old document and copy only those that are modified
+            newDocument.putAll(oldDocument);
+            for (String path : getModifiedPaths(update)) {
+                Utils.copyPathForModification(newDocument, path);
+            }
             for (String key : update.keySet()) {
                 modifyField(newDocument, key, update, arrayFilters, matchPos, isUpsert);
             }
@@ -361,6 +460,22 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         return newDocument;
     }
 
+    private static Set<String> getModifiedPaths(Document update) {
+        Set<String> paths = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> entry : update.entrySet()) {
+            Document modification = (Document) entry.getValue();
+            paths.addAll(modification.keySet());
+            if (entry.getKey().equals(UpdateOperator.RENAME.getValue())) {
+                for (Object targetPath : modification.values()) {
+                    if (targetPath instanceof String path) {
+                        paths.add(path);
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
     static void validateUpdateQuery(Document update) {
         Set<String> allModifiedPaths = new LinkedHashSet<>();
         for (Object value : update.values()) {
@@ -400,10 +515,12 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         Document lastErrorObject = null;
         Document returnDocument = null;
         boolean matchingDocument = false;
-        for (Document document : handleQuery(queryObject, 0, 1)) {
+        Document orderBy = (Document) queryObject.get("orderby");
+        for (DocumentWithPosition<P> match : queryDocumentsWithPosition((Document) queryObject.get("query"), orderBy, 1)) {
+            Document document = match.getDocument();
             matchingDocument = true;
             if (Utils.isTrue(query.get("remove"))) {
-                removeDocument(document);
+                removeDocument(document, match.getPosition());
                 returnDocument = document;
             } else if (query.get("update") != null) {
                 Document updateQuery = (Document) query.get("update");
@@ -414,7 +531,7 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
 
                 final Document oldDocument;
                 try {
-                    oldDocument = updateDocument(document, updateQuery, arrayFilters, matchPos);
+                    oldDocument = updateDocument(document, match.getPosition(), updateQuery, arrayFilters, matchPos);
                 } catch (MongoServerError e) {
                     if (e.shouldPrefixCommandContext()) {
                         throw new FindAndModifyPlanExecutorError(e);
@@ -548,12 +665,14 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
     @Override
     public int deleteDocuments(Document selector, int limit, Oplog oplog) {
         List<Object> deletedDocumentIds = new ArrayList<>();
-        for (Document document : handleQuery(selector, 0, limit)) {
+        for (DocumentWithPosition<P> match : queryDocumentsWithPosition(selector, null, limit)) {
+            Operation.checkForInterrupt();
             if (limit > 0 && deletedDocumentIds.size() >= limit) {
                 throw new MongoServerException("internal error: too many elements (" + deletedDocumentIds.size() + " >= " + limit + ")");
             }
+            Document document = match.getDocument();
             deletedDocumentIds.add(document.get(getIdField()));
-            removeDocument(document);
+            removeDocument(document, match.getPosition());
         }
         oplog.handleDelete(getFullName(), selector, deletedDocumentIds);
         return deletedDocumentIds.size();
@@ -572,9 +691,11 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
 
         int nMatched = 0;
         List<Object> updatedIds = new ArrayList<>();
-        for (Document document : queryDocuments(selector, null, 0, 0, 0, null)) {
+        for (DocumentWithPosition<P> match : queryDocumentsWithPosition(selector, null, isMulti ? 0 : 1)) {
+            Operation.checkForInterrupt();
+            Document document = match.getDocument();
             Integer matchPos = matcher.matchPosition(document, selector);
-            Document oldDocument = updateDocument(document, updateQuery, arrayFilters, matchPos);
+            Document oldDocument = updateDocument(document, match.getPosition(), updateQuery, arrayFilters, matchPos);
             if (!Utils.nullAwareEquals(oldDocument, document)) {
                 updatedIds.add(document.get(getIdField()));
             }
@@ -601,9 +722,11 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         return result;
     }
 
-    private Document updateDocument(Document document, Document updateQuery,
+    private Document updateDocument(Document document, P position, Document updateQuery,
                                     ArrayFilters arrayFilters, Integer matchPos) {
-        Document oldDocument = document.cloneDeeply();
+        // the stored document is modified in place, but only at the top level: embedded documents are never
+        // modified but replaced by modified copies, hence a shallow copy keeps the old state
+        Document oldDocument = document.clone();
 
         Document newDocument = calculateUpdateDocument(document, updateQuery, arrayFilters, matchPos, false);
 
@@ -611,17 +734,19 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
             for (Index<P> index : indexes) {
                 index.checkUpdate(oldDocument, newDocument, this);
             }
-            P position = getSinglePosition(oldDocument);
             for (Index<P> index : indexes) {
                 index.updateInPlace(oldDocument, newDocument, position, this);
             }
 
             if (tracksDataSize()) {
-                int oldSize = Utils.calculateSize(oldDocument);
-                int newSize = Utils.calculateSize(newDocument);
-                updateDataSize(newSize - oldSize);
+                // the fields that were not modified are shared by both documents and are not measured again
+                int sizeDelta = Utils.calculateSizeDifference(oldDocument, newDocument);
+                updateDocumentSize(position, sizeDelta);
+                updateDataSize(sizeDelta);
             }
 
+            newDocument.prepareForStorage(oldDocument);
+
             // only keep fields that are also in the updated document
             Set<String> fields = new LinkedHashSet<>(document.keySet());
             fields.removeAll(newDocument.keySet());
@@ -642,14 +767,61 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         return oldDocument;
     }
 
+    /**
+     * Queries the documents together with their positions, such that they can be modified without looking up
+     * their positions again.
+     */
+    private List<DocumentWithPosition<P>> queryDocumentsWithPosition(Document query, Document orderBy, int limit) {
+        List<DocumentWithPosition<P>> matches = new ArrayList<>();
+        if (hasUniqueIndex()) {
+            for (Document document : queryDocuments(query, orderBy, 0, limit, 0, null)) {
+                matches.add(new DocumentWithPosition<>(document, getSinglePosition(document)));
+            }
+            return matches;
+        }
+
+        // the position of a document can only be looked up by a scan, hence it is kept from the query
+        Index<P> index = findIndexForQuery(query, orderBy);
+        Stream<DocumentWithPosition<P>> documents;
+        if (index != null) {
+            documents = StreamSupport.stream(index.getPositions(query).spliterator(), false)
+                .map(position -> new DocumentWithPosition<>(getDocument(position), position));
+        } else if (isNaturalDescending(orderBy)) {
+            List<DocumentWithPosition<P>> allDocuments = streamAllDocumentsWithPosition().collect(Collectors.toList());
+            Collections.reverse(allDocuments);
+            documents = allDocuments.stream();
+        } else {
+            documents = streamAllDocumentsWithPosition();
+        }
+
+        Predicate<Document> queryPredicate = compileQuery(query);
+        documents = documents
+            .peek(match -> Operation.documentExamined())
+            .filter(match -> queryPredicate.test(match.getDocument()));
+
+        Comparator<Document> documentComparator = deriveComparator(orderBy);
+        if (documentComparator != null) {
+            documents = documents.sorted(Comparator.comparing(DocumentWithPosition::getDocument, documentComparator));
+        }
+        if (limit > 0) {
+            documents = documents.limit(limit);
+        }
+        documents.forEach(matches::add);
+        return matches;
+    }
+
     private P getSinglePosition(Document document) {
-        if (indexes.isEmpty()) {
+        if (!hasUniqueIndex()) {
             return findDocumentPosition(document);
         }
         Set<P> positions = indexes.stream()
+            .filter(Index::isUnique)
             .map(index -> index.getPosition(document))
             .filter(Objects::nonNull)
             .collect(Collectors.toSet());
+        if (positions.isEmpty()) {
+            return null;
+        }
         return CollectionUtils.getSingleElement(positions);
     }
 
@@ -770,45 +942,45 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         }
 
         response.put("indexSize", indexSizes);
+
+        // the dictionary is shared by all collections
+        FieldNameInterner fieldNameInterner = FieldNameInterner.getInstance();
+        response.put("fieldNameInterning", new Document()
+            .append("internedFieldNames", Integer.valueOf(fieldNameInterner.size()))
+            .append("maxInternedFieldNames", Integer.valueOf(fieldNameInterner.getMaxSize()))
+            .append("deduplicatedFieldNames", Long.valueOf(fieldNameInterner.getDeduplicatedFieldNames()))
+            .append("deduplicatedBytes", Long.valueOf(fieldNameInterner.getDeduplicatedBytes())));
+
         Utils.markOkay(response);
         return response;
     }
 
     @Override
     public void removeDocument(Document document) {
-        P position = null;
-
-        if (!indexes.isEmpty()) {
-            for (Index<P> index : indexes) {
-                P indexPosition = index.remove(document);
-                if (indexPosition == null) {
-                    if (index.isSparse()) {
-                        continue;
-                    } else {
-                        throw new IllegalStateException("Found no position for " + document + " in " + index);
-                    }
-                }
-                if (position != null) {
-                    Assert.equals(position, indexPosition, () -> "Got different positions for " + document);
-                }
-                position = indexPosition;
-            }
-        } else {
-            position = findDocumentPosition(document);
-        }
-
+        P position = getSinglePosition(document);
         if (position == null) {
             // not found
             return;
         }
+        removeDocument(document, position);
+    }
+
+    private void removeDocument(Document document, P position) {
+        for (Index<P> index : indexes) {
+            index.remove(document, position);
+        }
 
         if (tracksDataSize()) {
-            updateDataSize(-Utils.calculateSize(document));
+            updateDataSize(-getDocumentSize(position, document));
         }
 
         removeDocument(position);
     }
 
+    private boolean hasUniqueIndex() {
+        return indexes.stream().anyMatch(Index::isUnique);
+    }
+
     @VisibleForExternalBackends
     protected boolean tracksDataSize() {
         return true;
@@ -843,8 +1015,9 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
     protected abstract void removeDocument(P position);
 
     protected P findDocumentPosition(Document document) {
+        Predicate<Document> query = compileQuery(document);
         return streamAllDocumentsWithPosition()
-            .filter(match -> documentMatchesQuery(match.getDocument(), document))
+            .filter(match -> query.test(match.getDocument()))
             .map(DocumentWithPosition::getPosition)
             .findFirst()
             .orElse(null);
@@ -856,28 +1029,32 @@ public abstract class AbstractMongoCollection<P> implements MongoCollection<P> {
         return AbstractMongoDatabase.isSystemCollection(getCollectionName());
     }
 
-    protected QueryResult createQueryResult(List<Document> matchedDocuments, int batchSize) {
-        final Collection<Document> firstBatch;
-        if (batchSize > 0) {
-            firstBatch = matchedDocuments.stream()
-                .limit(batchSize)
-                .collect(Collectors.toList());
-        } else {
-            firstBatch = matchedDocuments;
+    /**
+     * Reads the first batch from the query pipeline. If more documents remain, the pipeline is suspended in a cursor
+     * that continues with the next getMore.
+     */
+    private QueryResult createQueryResult(Iterator<Document> matchedDocuments, int batchSize) {
+        List<Document> firstBatch = new ArrayList<>();
+        while ((batchSize <= 0 || firstBatch.size() < batchSize) && matchedDocuments.hasNext()) {
+            firstBatch.add(matchedDocuments.next());
         }
 
-        List<Document> remainingDocuments = matchedDocuments.subList(firstBatch.size(), matchedDocuments.size());
-
-        if (remainingDocuments.isEmpty()) {
+        if (!matchedDocuments.hasNext()) {
             return new QueryResult(firstBatch);
         } else {
-            Cursor cursor = createCursor(remainingDocuments);
+            Cursor cursor = createCursor(matchedDocuments);
             return new QueryResult(firstBatch, cursor);
         }
     }
 
-    protected Cursor createCursor(List<Document> remainingDocuments) {
-        InMemoryCursor cursor = new InMemoryCursor(cursorRegistry.generateCursorId(), remainingDocuments);
+    protected Cursor createCursor(Iterator<Document> remainingDocuments) {
+        Operation operation = Operation.current();
+        long deadlineNanos = operation != null ? operation.getDeadlineNanos() : 0;
+        StreamingCursor cursor = new StreamingCursor(cursorRegistry.generateCursorId(), remainingDocuments,
+            action -> readLocked(() -> {
+                action.run();
+                return null;
+            }), deadlineNanos);
         cursorRegistry.add(cursor);
         return cursor;
     }
@@ -251,6 +251,9 @@ public abstract class AbstractMongoDatabase<P> implements MongoDatabase {
         }
         QueryParameters queryParameters = toQueryParameters(query);
         QueryResult queryResult = collection.handleQuery(queryParameters);
+        if (Utils.isTrue(query.get("noCursorTimeout"))) {
+            cursorRegistry.disableTimeout(queryResult.getCursorId());
+        }
         return toCursorResponse(collection, queryResult);
     }
 
@@ -0,0 +1,129 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import de.bwaldvogel.mongo.MongoDatabase;
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.oplog.Oplog;
+
+/**
+ * A collection that guards its documents with a {@link StampedLock} instead of synchronizing every operation like
+ * {@link AbstractSynchronizedMongoCollection}. Queries share a read lock, such that concurrent readers of a collection
+ * are not serialized, while modifications take the write lock.
+ * <p>
+ * Unlike a monitor, a {@link StampedLock} is not reentrant. Operations that are called by the thread that holds
+ * the write lock, e.g. an upsert that adds a document, therefore run without locking again. Read locked sections
+ * must not call other locked operations.
+ */
+public abstract class AbstractReadWriteLockedMongoCollection<P> extends AbstractMongoCollection<P> {
+
+    private final StampedLock lock = new StampedLock();
+
+    // the thread that holds the write lock, if any
+    private volatile Thread writer;
+
+    protected AbstractReadWriteLockedMongoCollection(MongoDatabase database, String collectionName,
+                                                     CollectionOptions options,
+                                                     CursorRegistry cursorRegistry) {
+        super(database, collectionName, options, cursorRegistry);
+    }
+
+    @Override
+    protected <T> T readLocked(Supplier<T> action) {
+        if (writer == Thread.currentThread()) {
+            return action.get();
+        }
+        long stamp = lock.readLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    protected <T> T writeLocked(Supplier<T> action) {
+        if (writer == Thread.currentThread()) {
+            return action.get();
+        }
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        try {
+            return action.get();
+        } finally {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    protected void writeLocked(Runnable action) {
+        writeLocked(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void addIndex(Index<P> index) {
+        writeLocked(() -> super.addIndex(index));
+    }
+
+    @Override
+    public void dropIndex(String indexName) {
+        writeLocked(() -> super.dropIndex(indexName));
+    }
+
+    @Override
+    public void addDocument(Document document) {
+        writeLocked(() -> super.addDocument(document));
+    }
+
+    @Override
+    public void addDocuments(Stream<Document> documents) {
+        writeLocked(() -> super.addDocuments(documents));
+    }
+
+    @Override
+    public Document findAndModify(Document query) {
+        return writeLocked(() -> super.findAndModify(query));
+    }
+
+    @Override
+    public QueryResult handleQuery(QueryParameters queryParameters) {
+        return readLocked(() -> super.handleQuery(queryParameters));
+    }
+
+    @Override
+    public Document handleDistinct(Document query) {
+        return readLocked(() -> super.handleDistinct(query));
+    }
+
+    @Override
+    public List<Document> insertDocuments(List<Document> documents, boolean isOrdered) {
+        return writeLocked(() -> super.insertDocuments(documents, isOrdered));
+    }
+
+    @Override
+    public int deleteDocuments(Document selector, int limit, Oplog oplog) {
+        return writeLocked(() -> super.deleteDocuments(selector, limit, oplog));
+    }
+
+    @Override
+    public Document updateDocuments(Document selector, Document updateQuery, ArrayFilters arrayFilters,
+                                    boolean isMulti, boolean isUpsert, Oplog oplog) {
+        return writeLocked(() -> super.updateDocuments(selector, updateQuery, arrayFilters, isMulti, isUpsert, oplog));
+    }
+
+    @Override
+    public void removeDocument(Document document) {
+        writeLocked(() -> super.removeDocument(document));
+    }
+
+    @Override
+    public void renameTo(MongoDatabase newDatabase, String newCollectionName) {
+        writeLocked(() -> super.renameTo(newDatabase, newCollectionName));
+    }
+
+}
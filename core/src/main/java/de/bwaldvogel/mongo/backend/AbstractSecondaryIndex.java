@@ -0,0 +1,223 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bwaldvogel.mongo.MongoCollection;
+import de.bwaldvogel.mongo.bson.BsonRegularExpression;
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.KeyConstraintError;
+
+/**
+ * A non-unique index that maps every key value to the positions of all documents that contain it.
+ * Implementations that keep their keys sorted also support range queries and index-backed sorting.
+ * <p>
+ * The positions returned for a query are a superset of the matching documents. Callers are expected to
+ * apply the query to the documents at these positions.
+ */
+public abstract class AbstractSecondaryIndex<P> extends Index<P> {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractSecondaryIndex.class);
+
+    protected AbstractSecondaryIndex(String name, List<IndexKey> keys, boolean sparse) {
+        super(name, keys, sparse);
+    }
+
+    protected abstract void addPosition(KeyValue keyValue, P position);
+
+    protected abstract void removePosition(KeyValue keyValue, P position);
+
+    protected abstract Collection<P> getPositions(KeyValue keyValue);
+
+    /**
+     * @return a new, empty set that is used to collect the positions of multiple key values
+     */
+    protected abstract Set<P> createPositionSet();
+
+    /**
+     * Indexes that keep their entries sorted by {@link KeyValueComparator} can return them here
+     * to answer range queries and to return documents in the order of the index keys.
+     *
+     * @return the sorted index entries or {@code null} if the entries are not sorted
+     */
+    protected NavigableMap<KeyValue, ? extends Collection<P>> getSortedEntries() {
+        return null;
+    }
+
+    private boolean isSparseAndHasNoValueForKeys(Document document) {
+        return isSparse() && keys().stream().noneMatch(key -> Utils.hasSubdocumentValue(document, key));
+    }
+
+    @Override
+    public P getPosition(Document document) {
+        // a non-unique index cannot resolve the position of a single document
+        return null;
+    }
+
+    @Override
+    public void checkAdd(Document document, MongoCollection<P> collection) {
+        if (isSparseAndHasNoValueForKeys(document)) {
+            return;
+        }
+        // fails if the document contains parallel arrays
+        getKeyValues(document);
+    }
+
+    @Override
+    public synchronized void add(Document document, P position, MongoCollection<P> collection) {
+        if (isSparseAndHasNoValueForKeys(document)) {
+            return;
+        }
+        trackMultiKey(document);
+        for (KeyValue keyValue : getKeyValues(document)) {
+            addPosition(keyValue, position);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Document document, P position) {
+        if (isSparseAndHasNoValueForKeys(document)) {
+            return;
+        }
+        for (KeyValue keyValue : getKeyValues(document)) {
+            removePosition(keyValue, position);
+        }
+    }
+
+    @Override
+    public void checkUpdate(Document oldDocument, Document newDocument, MongoCollection<P> collection) {
+        checkAdd(newDocument, collection);
+    }
+
+    @Override
+    public synchronized void updateInPlace(Document oldDocument, Document newDocument, P position, MongoCollection<P> collection) throws KeyConstraintError {
+        if (!nullAwareEqualsKeys(oldDocument, newDocument)) {
+            remove(oldDocument, position);
+            add(newDocument, position, collection);
+        }
+    }
+
+    @Override
+    public boolean canHandle(Document query) {
+        if (canHandleByKey(query)) {
+            return true;
+        }
+        return getSortedEntries() != null && getIndexRange(query) != null;
+    }
+
+    private boolean canHandleByKey(Document query) {
+        if (!query.keySet().containsAll(keySet())) {
+            return false;
+        }
+
+        for (String key : keys()) {
+            Object queryValue = query.get(key);
+            if (queryValue instanceof Document document && Utils.containsQueryExpression(document)) {
+                if (document.size() != 1) {
+                    return false;
+                }
+                String operator = document.keySet().iterator().next();
+                Object operand = document.get(operator);
+                if (operator.equals(QueryOperator.EQUAL.getValue())) {
+                    if (!isIndexableValue(operand)) {
+                        return false;
+                    }
+                } else if (operator.equals(QueryOperator.IN.getValue()) && !isCompoundIndex()) {
+                    if (!(operand instanceof Collection<?> values) || !values.stream().allMatch(AbstractSecondaryIndex::isIndexableValue)) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            } else if (!isIndexableValue(queryValue)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Values that match a document if and only if one of its key values is equal to them.
+     * {@code null} is excluded since it also matches documents that do not contain the key at all.
+     */
+    private static boolean isIndexableValue(Object value) {
+        if (Missing.isNullOrMissing(value)) {
+            return false;
+        }
+        if (value instanceof Collection) {
+            return false;
+        }
+        return !BsonRegularExpression.isRegularExpression(value);
+    }
+
+    @Override
+    public synchronized Iterable<P> getPositions(Document query) {
+        if (!canHandleByKey(query)) {
+            Set<P> positions = createPositionSet();
+            getIndexRange(query).stream(getSortedEntries(), false)
+                .forEach(positions::addAll);
+            return positions;
+        }
+
+        List<KeyValue> queriedKeyValues = getQueriedKeyValues(query);
+        if (queriedKeyValues.size() == 1) {
+            return new ArrayList<>(getPositions(queriedKeyValues.get(0)));
+        }
+
+        Set<P> positions = createPositionSet();
+        for (KeyValue keyValue : queriedKeyValues) {
+            positions.addAll(getPositions(keyValue));
+        }
+        return positions;
+    }
+
+    @Override
+    public synchronized Stream<P> getPositionsInOrder(Document query, Document orderBy) {
+        NavigableMap<KeyValue, ? extends Collection<P>> sortedEntries = getSortedEntries();
+        if (sortedEntries == null) {
+            return null;
+        }
+        IndexRange indexRange = getIndexRangeForSort(query, orderBy);
+        if (indexRange == null) {
+            return null;
+        }
+        // positions with the same key remain in their natural order like in a stable sort
+        return indexRange.stream(sortedEntries, indexRange.getScanDirection(keys(), orderBy) < 0)
+            .flatMap(Collection::stream);
+    }
+
+    private List<KeyValue> getQueriedKeyValues(Document query) {
+        List<Object> values = new ArrayList<>();
+        for (String key : keys()) {
+            Object queryValue = query.get(key);
+            if (queryValue instanceof Document document && Utils.containsQueryExpression(document)) {
+                Object operand = document.get(QueryOperator.IN.getValue());
+                if (operand != null) {
+                    Assert.isFalse(isCompoundIndex(), () -> "Unexpected $in query for compound index " + this);
+                    List<KeyValue> keyValues = new ArrayList<>();
+                    for (Object value : (Collection<?>) operand) {
+                        keyValues.add(new KeyValue(Utils.normalizeValue(value)));
+                    }
+                    return keyValues;
+                }
+                queryValue = document.get(QueryOperator.EQUAL.getValue());
+            }
+            values.add(Utils.normalizeValue(queryValue));
+        }
+        return List.of(new KeyValue(values));
+    }
+
+    @Override
+    public void drop() {
+        log.debug("Dropping {}", this);
+    }
+
+}
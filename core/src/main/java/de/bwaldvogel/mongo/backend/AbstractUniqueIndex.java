@@ -4,12 +4,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,16 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
 
     protected abstract P getPosition(KeyValue keyValue);
 
+    /**
+     * Indexes that keep their entries sorted by {@link KeyValueComparator} can return them here
+     * to answer range queries, anchored regular expressions and queries on a prefix of a compound index.
+     *
+     * @return the sorted index entries or {@code null} if the entries are not sorted
+     */
+    protected NavigableMap<KeyValue, P> getSortedEntries() {
+        return null;
+    }
+
     private boolean isSparseAndHasNoValueForKeys(Document document) {
         return isSparse() && hasNoValueForKeys(document);
     }
@@ -48,7 +60,6 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
         return keys().stream().noneMatch(key -> Utils.hasSubdocumentValue(document, key));
     }
 
-    @Override
     public synchronized P remove(Document document) {
         if (isSparseAndHasNoValueForKeys(document)) {
             return null;
@@ -57,8 +68,19 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
         return apply(document, this::removeDocument);
     }
 
+    @Override
+    public void remove(Document document, P position) {
+        P removedPosition = remove(document);
+        if (removedPosition != null) {
+            Assert.equals(removedPosition, position);
+        }
+    }
+
     @Override
     public P getPosition(Document document) {
+        if (isSparseAndHasNoValueForKeys(document)) {
+            return null;
+        }
         return apply(document, this::getPosition);
     }
 
@@ -95,6 +117,7 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
         if (isSparseAndHasNoValueForKeys(document)) {
             return;
         }
+        trackMultiKey(document);
         Set<KeyValue> keyValues = getKeyValues(document);
         for (KeyValue keyValue : keyValues) {
             boolean added = putKeyPosition(keyValue, position);
@@ -130,17 +153,20 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
     @Override
     public void updateInPlace(Document oldDocument, Document newDocument, P position, MongoCollection<P> collection) throws KeyConstraintError {
         if (!nullAwareEqualsKeys(oldDocument, newDocument)) {
-            P removedPosition = remove(oldDocument);
-            if (removedPosition != null) {
-                Assert.equals(removedPosition, position);
-            }
+            remove(oldDocument, position);
             add(newDocument, position, collection);
         }
     }
 
     @Override
     public synchronized boolean canHandle(Document query) {
+        if (canHandleByKey(query)) {
+            return true;
+        }
+        return getSortedEntries() != null && getIndexRange(query) != null;
+    }
 
+    private boolean canHandleByKey(Document query) {
         if (!query.keySet().equals(keySet())) {
             return false;
         }
@@ -180,6 +206,14 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
 
     @Override
     public synchronized Iterable<P> getPositions(Document query) {
+        NavigableMap<KeyValue, P> sortedEntries = getSortedEntries();
+        if (sortedEntries != null) {
+            IndexRange indexRange = getIndexRange(query);
+            if (indexRange != null) {
+                return indexRange.getPositions(sortedEntries);
+            }
+        }
+
         KeyValue queriedKeyValues = getQueriedKeyValues(query);
 
         for (Object queriedValue : queriedKeyValues) {
@@ -230,6 +264,19 @@ public abstract class AbstractUniqueIndex<P> extends Index<P> {
         return List.of(position);
     }
 
+    @Override
+    public synchronized Stream<P> getPositionsInOrder(Document query, Document orderBy) {
+        NavigableMap<KeyValue, P> sortedEntries = getSortedEntries();
+        if (sortedEntries == null) {
+            return null;
+        }
+        IndexRange indexRange = getIndexRangeForSort(query, orderBy);
+        if (indexRange == null) {
+            return null;
+        }
+        return indexRange.stream(sortedEntries, indexRange.getScanDirection(keys(), orderBy) < 0);
+    }
+
     private KeyValue getQueriedKeyValues(Document query) {
         return new KeyValue(keys().stream()
             .map(query::get)
@@ -10,4 +10,12 @@ public interface Cursor {
     boolean isEmpty();
 
     List<Document> takeDocuments(int numberToReturn);
+
+    /**
+     * @return the {@link System#nanoTime()} by which the remaining documents must be taken, as derived from the
+     * {@code maxTimeMS} of the query that opened the cursor, or 0 if there is no time limit
+     */
+    default long getDeadlineNanos() {
+        return 0;
+    }
 }
@@ -1,26 +1,75 @@
 package de.bwaldvogel.mongo.backend;
 
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.exception.CursorNotFoundException;
 
+/**
+ * Keeps track of the open cursors.
+ * <p>
+ * Like in MongoDB, a cursor that was not used for the {@link #setCursorTimeout cursor timeout} is closed by a
+ * background task, unless it was opened with {@code noCursorTimeout}. Otherwise, a client that never closes its
+ * cursors, e.g. because it crashed, keeps the remaining documents of the cursors alive forever.
+ */
 public class CursorRegistry {
 
-    private final ConcurrentMap<Long, Cursor> cursors = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(CursorRegistry.class);
+
+    public static final Duration DEFAULT_CURSOR_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final Duration MAX_REAPER_INTERVAL = Duration.ofMinutes(1);
+
+    // shared by all registries, such that a server does not cost a thread until it has open cursors
+    private static final ScheduledExecutorService reaperExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cursor-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConcurrentMap<Long, RegisteredCursor> cursors = new ConcurrentHashMap<>();
     private final AtomicLong cursorIdCounter = new AtomicLong();
+    private final LongAdder timedOutCursors = new LongAdder();
+    private final LongSupplier nanoTime;
+
+    private volatile Duration cursorTimeout = DEFAULT_CURSOR_TIMEOUT;
+    private volatile ScheduledFuture<?> reaper;
+
+    public CursorRegistry() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime a monotonic time source in nanoseconds, like {@link System#nanoTime()}
+     */
+    public CursorRegistry(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
 
     public long generateCursorId() {
         return cursorIdCounter.incrementAndGet();
     }
 
     public Cursor getCursor(long cursorId) {
-        Cursor cursor = cursors.get(cursorId);
-        if (cursor == null) {
+        RegisteredCursor registeredCursor = cursors.get(cursorId);
+        if (registeredCursor == null) {
             throw new CursorNotFoundException(cursorId);
         }
-        return cursor;
+        registeredCursor.lastUsed = nanoTime.getAsLong();
+        return registeredCursor.cursor;
     }
 
     public boolean remove(Cursor cursor) {
@@ -32,12 +81,96 @@ public class CursorRegistry {
     }
 
     public void add(Cursor cursor) {
-        Cursor previousValue = cursors.put(cursor.getId(), cursor);
+        RegisteredCursor previousValue = cursors.put(cursor.getId(), new RegisteredCursor(cursor, nanoTime.getAsLong()));
         Assert.isNull(previousValue);
+        if (reaper == null) {
+            startReaper();
+        }
+    }
+
+    /**
+     * Excludes the cursor from the cursor timeout, as requested by the {@code noCursorTimeout} option.
+     */
+    public void disableTimeout(long cursorId) {
+        RegisteredCursor registeredCursor = cursors.get(cursorId);
+        if (registeredCursor != null) {
+            registeredCursor.noTimeout = true;
+        }
     }
 
     public int size() {
         return cursors.size();
     }
 
+    public long getNoTimeoutCursors() {
+        return cursors.values().stream().filter(registeredCursor -> registeredCursor.noTimeout).count();
+    }
+
+    public long getTimedOutCursors() {
+        return timedOutCursors.sum();
+    }
+
+    public Duration getCursorTimeout() {
+        return cursorTimeout;
+    }
+
+    public synchronized void setCursorTimeout(Duration cursorTimeout) {
+        Assert.isTrue(!cursorTimeout.isNegative() && !cursorTimeout.isZero(), () -> "Illegal cursor timeout: " + cursorTimeout);
+        this.cursorTimeout = cursorTimeout;
+        if (reaper != null) {
+            reaper.cancel(false);
+            reaper = null;
+            startReaper();
+        }
+    }
+
+    /**
+     * @return the number of cursors that were closed because they were not used for the cursor timeout
+     */
+    public int removeTimedOutCursors() {
+        long now = nanoTime.getAsLong();
+        long timeoutNanos = cursorTimeout.toNanos();
+        int removed = 0;
+        for (Iterator<Entry<Long, RegisteredCursor>> it = cursors.entrySet().iterator(); it.hasNext(); ) {
+            RegisteredCursor registeredCursor = it.next().getValue();
+            if (!registeredCursor.noTimeout && now - registeredCursor.lastUsed > timeoutNanos) {
+                log.info("Closing {} that was not used for {}", registeredCursor.cursor, cursorTimeout);
+                it.remove();
+                removed++;
+            }
+        }
+        timedOutCursors.add(removed);
+        return removed;
+    }
+
+    private synchronized void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        long intervalMillis = Math.min(cursorTimeout.toMillis(), MAX_REAPER_INTERVAL.toMillis());
+        reaper = reaperExecutor.scheduleWithFixedDelay(this::removeTimedOutCursors,
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (reaper != null) {
+            reaper.cancel(false);
+            reaper = null;
+        }
+        cursors.clear();
+    }
+
+    private static final class RegisteredCursor {
+
+        private final Cursor cursor;
+        private volatile long lastUsed;
+        private volatile boolean noTimeout;
+
+        private RegisteredCursor(Cursor cursor, long lastUsed) {
+            this.cursor = cursor;
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
 }
@@ -1,10 +1,12 @@
 package de.bwaldvogel.mongo.backend;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -43,6 +45,126 @@ public class DefaultQueryMatcher implements QueryMatcher {
         return true;
     }
 
+    @Override
+    public Predicate<Document> compile(Document query) {
+        return new CompiledQuery(query);
+    }
+
+    private Predicate<Object> compileQuery(Document query) {
+        List<Predicate<Object>> predicates = new ArrayList<>();
+        for (String key : query.keySet()) {
+            Object queryValue = query.get(key);
+            validateQueryValue(queryValue, key);
+            if (key.equals("$comment")) {
+                log.debug("query comment: '{}'", queryValue);
+                continue;
+            }
+            predicates.add(compileMatch(queryValue, key));
+        }
+
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return value -> allMatch(predicates, value);
+    }
+
+    private Predicate<Object> compileMatch(Object queryValue, String key) {
+        if (QueryFilter.isQueryFilter(key)) {
+            return compileMatch(queryValue, QueryFilter.fromValue(key));
+        }
+
+        List<String> keys = splitKey(key);
+        Predicate<Object> valuePredicate = null;
+        if (keys.stream().noneMatch(subKey -> subKey.startsWith("$"))) {
+            valuePredicate = compileValueMatch(queryValue);
+        }
+        if (valuePredicate == null) {
+            return value -> checkMatch(queryValue, keys, value);
+        }
+        return new FieldPredicate(queryValue, keys, valuePredicate);
+    }
+
+    private Predicate<Object> compileMatch(Object queryValue, QueryFilter filter) {
+        if (filter == QueryFilter.EXPR) {
+            return value -> checkMatch(queryValue, filter, value);
+        }
+
+        if (!(queryValue instanceof List<?> list) || list.isEmpty()
+            || !list.stream().allMatch(Document.class::isInstance)) {
+            // let the interpreter report the error
+            return value -> checkMatch(queryValue, filter, value);
+        }
+
+        List<Predicate<Object>> subqueries = new ArrayList<>();
+        for (Object subqueryValue : list) {
+            subqueries.add(compileQuery((Document) subqueryValue));
+        }
+
+        switch (filter) {
+            case AND:
+                return value -> allMatch(subqueries, value);
+            case OR:
+                return value -> anyMatch(subqueries, value);
+            case NOR:
+                return value -> !anyMatch(subqueries, value);
+            default:
+                throw new MongoServerException("illegal query filter: " + filter + ". must not happen");
+        }
+    }
+
+    /**
+     * Compiles the query value for a single value that is not a collection.
+     *
+     * @return the predicate or {@code null} if the query value must be interpreted for every document
+     */
+    private Predicate<Object> compileValueMatch(Object queryValue) {
+        if (BsonRegularExpression.isRegularExpression(queryValue)) {
+            BsonRegularExpression pattern = BsonRegularExpression.convertToRegularExpression(queryValue);
+            return value -> !Missing.isNullOrMissing(value) && pattern.matcher(value.toString()).find();
+        }
+
+        if (!(queryValue instanceof Document queryObject)) {
+            return value -> Utils.nullAwareEquals(value, queryValue);
+        }
+
+        if (queryObject.isEmpty()) {
+            return null;
+        }
+
+        List<Predicate<Object>> predicates = new ArrayList<>();
+        for (String operator : queryObject.keySet()) {
+            if (!operator.startsWith("$") || Constants.REFERENCE_KEYS.contains(operator) || QueryFilter.isQueryFilter(operator)) {
+                return null;
+            }
+            QueryOperator queryOperator = QueryOperator.fromValue(operator);
+            Object expressionValue = queryObject.get(operator);
+            predicates.add(value -> checkExpressionMatch(value, expressionValue, queryOperator));
+        }
+
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return value -> allMatch(predicates, value);
+    }
+
+    private static boolean allMatch(List<Predicate<Object>> predicates, Object value) {
+        for (Predicate<Object> predicate : predicates) {
+            if (!predicate.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean anyMatch(List<Predicate<Object>> predicates, Object value) {
+        for (Predicate<Object> predicate : predicates) {
+            if (predicate.test(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void validateQueryValue(Object queryValue, String key) {
         if (!(queryValue instanceof Document)) {
             return;
@@ -121,7 +243,7 @@ public class DefaultQueryMatcher implements QueryMatcher {
         }
 
         if (value instanceof List<?>) {
-            if (firstKey.matches("\\d+")) {
+            if (isArrayIndex(firstKey)) {
                 Object listValue = Utils.getFieldValueListSafe(value, firstKey);
                 if (subKeys.isEmpty()) {
                     return checkMatchesValue(queryValue, listValue);
@@ -190,6 +312,19 @@ public class DefaultQueryMatcher implements QueryMatcher {
         return checkMatchesValue(queryValue, documentValue);
     }
 
+    private static boolean isArrayIndex(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean isInQuery(Document queryDocument) {
         return queryDocument.keySet().equals(Set.of(QueryOperator.IN.getValue()));
     }
@@ -433,7 +568,10 @@ public class DefaultQueryMatcher implements QueryMatcher {
         }
 
         QueryOperator queryOperator = QueryOperator.fromValue(operator);
+        return checkExpressionMatch(value, expressionValue, queryOperator);
+    }
 
+    private boolean checkExpressionMatch(Object value, Object expressionValue, QueryOperator queryOperator) {
         switch (queryOperator) {
             case IN:
                 Collection<?> queriedObjects = (Collection<?>) expressionValue;
@@ -456,7 +594,7 @@ public class DefaultQueryMatcher implements QueryMatcher {
             case NOT_EQUALS:
                 return !Utils.nullAwareEquals(value, expressionValue);
             case NOT_IN:
-                return !checkExpressionMatch(value, expressionValue, "$in");
+                return !checkExpressionMatch(value, expressionValue, QueryOperator.IN);
             case EXISTS:
                 return ((value instanceof Missing) != Utils.isTrue(expressionValue));
             case GREATER_THAN:
@@ -567,4 +705,74 @@ public class DefaultQueryMatcher implements QueryMatcher {
         throw new MongoServerNotYetImplementedException(132, QueryOperator.GEO_WITHIN.getValue());
     }
 
+    /**
+     * A query that is translated into a tree of predicates with pre-split keys and resolved operators.
+     * The translation happens when the first document is matched, such that invalid queries fail just
+     * like they do in {@link #matches(Document, Document)}.
+     */
+    private final class CompiledQuery implements Predicate<Document> {
+
+        private final Document query;
+        private Predicate<Object> predicate;
+
+        private CompiledQuery(Document query) {
+            this.query = query;
+        }
+
+        @Override
+        public boolean test(Document document) {
+            if (predicate == null) {
+                predicate = compileQuery(query);
+            }
+            return predicate.test(document);
+        }
+
+        @Override
+        public String toString() {
+            return "CompiledQuery(" + query + ")";
+        }
+    }
+
+    /**
+     * Resolves the value of the key path in subdocuments. Arrays along the path are handed over to the
+     * interpreter since they can be traversed in various ways.
+     */
+    private final class FieldPredicate implements Predicate<Object> {
+
+        private final Object queryValue;
+        private final List<String> keys;
+        private final Predicate<Object> valuePredicate;
+
+        private FieldPredicate(Object queryValue, List<String> keys, Predicate<Object> valuePredicate) {
+            this.queryValue = queryValue;
+            this.keys = keys;
+            this.valuePredicate = valuePredicate;
+        }
+
+        @Override
+        public boolean test(Object document) {
+            Object value = document;
+            int lastIndex = keys.size() - 1;
+            for (int i = 0; i < lastIndex; i++) {
+                if (value instanceof List<?>) {
+                    return checkMatch(queryValue, keys.subList(i, keys.size()), value);
+                }
+                value = Utils.getFieldValueListSafe(value, keys.get(i));
+            }
+
+            if (value instanceof List<?>) {
+                return checkMatch(queryValue, keys.subList(lastIndex, keys.size()), value);
+            }
+
+            Object documentValue = Missing.getInstance();
+            if (value instanceof Document subDocument) {
+                documentValue = subDocument.getOrMissing(keys.get(lastIndex));
+            }
+            if (documentValue instanceof Collection<?>) {
+                return checkMatch(queryValue, keys.subList(lastIndex, keys.size()), value);
+            }
+            return valuePredicate.test(documentValue);
+        }
+    }
+
 }
@@ -28,8 +28,8 @@ public class EmptyIndex<P> extends Index<P> {
     }
 
     @Override
-    public P remove(Document document) {
-        return null;
+    public void remove(Document document, P position) {
+        // ignore
     }
 
     @Override
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.bwaldvogel.mongo.MongoCollection;
 import de.bwaldvogel.mongo.bson.Document;
@@ -20,6 +21,8 @@ public abstract class Index<P> {
     private final List<IndexKey> keys;
     private final boolean sparse;
 
+    private volatile boolean multiKey;
+
     protected Index(String name, List<IndexKey> keys, boolean sparse) {
         this.name = name;
         this.keys = keys;
@@ -123,18 +126,68 @@ public abstract class Index<P> {
         return valuesPerKey;
     }
 
+    /**
+     * Marks the index as multikey if one of the indexed values of the document is an array.
+     * A multikey index can contain several keys for one document and is therefore not used to sort documents.
+     */
+    protected void trackMultiKey(Document document) {
+        if (!multiKey && keys().stream().anyMatch(key -> Utils.getSubdocumentValueCollectionAware(document, key) instanceof Collection)) {
+            multiKey = true;
+        }
+    }
+
+    protected boolean isMultiKey() {
+        return multiKey;
+    }
+
+    IndexRange getIndexRange(Document query) {
+        return IndexRange.fromQuery(keys(), query, isMultiKey());
+    }
+
+    /**
+     * @return the range of the index that yields all documents that can match the query in the given order
+     * or {@code null} if the order cannot be provided by this index
+     */
+    IndexRange getIndexRangeForSort(Document query, Document orderBy) {
+        if (isMultiKey()) {
+            return null;
+        }
+        IndexRange indexRange = getIndexRange(query);
+        if (indexRange == null) {
+            if (isSparse()) {
+                // documents without the key are not part of the index
+                return null;
+            }
+            indexRange = IndexRange.all();
+        }
+        if (indexRange.getScanDirection(keys(), orderBy) == 0) {
+            return null;
+        }
+        return indexRange;
+    }
+
     public abstract P getPosition(Document document);
 
     public abstract void checkAdd(Document document, MongoCollection<P> collection);
 
     public abstract void add(Document document, P position, MongoCollection<P> collection);
 
-    public abstract P remove(Document document);
+    public abstract void remove(Document document, P position);
 
     public abstract boolean canHandle(Document query);
 
     public abstract Iterable<P> getPositions(Document query);
 
+    /**
+     * Returns the positions of all documents that can match the query, in the order that is given by {@code orderBy}.
+     * The positions are determined lazily such that callers can stop after the first documents.
+     *
+     * @return the ordered positions or {@code null} if this index cannot provide the order
+     */
+    public Stream<P> getPositionsInOrder(Document query, Document orderBy) {
+        return null;
+    }
+
     public abstract long getCount();
 
     public boolean isEmpty() {
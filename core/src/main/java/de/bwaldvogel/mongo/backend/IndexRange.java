@@ -0,0 +1,398 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import de.bwaldvogel.mongo.bson.BsonRegularExpression;
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.bson.MaxKey;
+import de.bwaldvogel.mongo.bson.MinKey;
+import de.bwaldvogel.mongo.bson.ObjectId;
+import de.bwaldvogel.mongo.wire.BsonConstants;
+
+/**
+ * A contiguous range of keys of an ordered index that contains all keys that can match a query.
+ * <p>
+ * The range consists of equality conditions on a prefix of the index keys, optionally followed by
+ * a range condition ({@code $gt}, {@code $gte}, {@code $lt}, {@code $lte}) or a regular expression on the next key.
+ * Like all index lookups, the keys in the range are a superset of the matching keys.
+ */
+final class IndexRange {
+
+    private final List<Object> prefix;
+    private final Object lowerBound;
+    private final boolean lowerBoundInclusive;
+    private final Object upperBound;
+    private final boolean upperBoundInclusive;
+    private final String stringPrefix;
+    private final BsonRegularExpression regularExpression;
+
+    private IndexRange(List<Object> prefix) {
+        this(prefix, null, false, null, false, null, null);
+    }
+
+    private IndexRange(List<Object> prefix,
+                       Object lowerBound, boolean lowerBoundInclusive,
+                       Object upperBound, boolean upperBoundInclusive,
+                       String stringPrefix, BsonRegularExpression regularExpression) {
+        this.prefix = prefix;
+        this.lowerBound = lowerBound;
+        this.lowerBoundInclusive = lowerBoundInclusive;
+        this.upperBound = upperBound;
+        this.upperBoundInclusive = upperBoundInclusive;
+        this.stringPrefix = stringPrefix;
+        this.regularExpression = regularExpression;
+    }
+
+    /**
+     * @param keys     the keys of the index
+     * @param query    the query
+     * @param multiKey whether the index contains documents with more than one key value
+     * @return the range of the index that must be scanned for the query or {@code null} if the query does not
+     * restrict the leading key of the index
+     */
+    static IndexRange fromQuery(List<String> keys, Document query, boolean multiKey) {
+        List<Object> prefix = new ArrayList<>();
+        for (String key : keys) {
+            if (!query.containsKey(key)) {
+                break;
+            }
+            Object queryValue = query.get(key);
+            Object equalityValue = getEqualityValue(queryValue);
+            if (equalityValue != null) {
+                prefix.add(Utils.normalizeValue(equalityValue));
+                continue;
+            }
+            IndexRange range = fromRangeQuery(prefix, queryValue, multiKey);
+            if (range != null) {
+                return range;
+            }
+            break;
+        }
+
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        return new IndexRange(prefix);
+    }
+
+    private static Object getEqualityValue(Object queryValue) {
+        if (queryValue instanceof Document document && Utils.containsQueryExpression(document)) {
+            if (document.size() != 1 || !document.containsKey(QueryOperator.EQUAL.getValue())) {
+                return null;
+            }
+            queryValue = document.get(QueryOperator.EQUAL.getValue());
+        }
+        if (Missing.isNullOrMissing(queryValue) || queryValue instanceof Collection) {
+            return null;
+        }
+        if (BsonRegularExpression.isRegularExpression(queryValue)) {
+            return null;
+        }
+        return queryValue;
+    }
+
+    private static IndexRange fromRangeQuery(List<Object> prefix, Object queryValue, boolean multiKey) {
+        if (BsonRegularExpression.isRegularExpression(queryValue)) {
+            BsonRegularExpression regularExpression = BsonRegularExpression.convertToRegularExpression(queryValue);
+            String stringPrefix = getAnchoredPrefix(regularExpression);
+            // regular expressions are only applied to string keys
+            Object lowerBound = stringPrefix != null ? stringPrefix : "";
+            return new IndexRange(prefix, lowerBound, true, null, false, stringPrefix, regularExpression);
+        }
+
+        if (!(queryValue instanceof Document document) || document.isEmpty()) {
+            return null;
+        }
+
+        Object lowerBound = null;
+        boolean lowerBoundInclusive = false;
+        Object upperBound = null;
+        boolean upperBoundInclusive = false;
+        for (Entry<String, Object> entry : document.entrySet()) {
+            Object operand = entry.getValue();
+            if (!isRangeOperand(operand)) {
+                return null;
+            }
+            QueryOperator operator = getRangeOperator(entry.getKey());
+            if (operator == null) {
+                return null;
+            }
+            Object bound = Utils.normalizeValue(operand);
+            switch (operator) {
+                case GREATER_THAN, GREATER_THAN_OR_EQUAL -> {
+                    lowerBound = bound;
+                    lowerBoundInclusive = (operator == QueryOperator.GREATER_THAN_OR_EQUAL);
+                }
+                case LESS_THAN, LESS_THAN_OR_EQUAL -> {
+                    upperBound = bound;
+                    upperBoundInclusive = (operator == QueryOperator.LESS_THAN_OR_EQUAL);
+                }
+                default -> throw new IllegalArgumentException("Unexpected operator: " + operator);
+            }
+        }
+
+        if (lowerBound != null && upperBound != null) {
+            // the bounds of a multikey index can be satisfied by different key values of the same document
+            if (multiKey || ValueComparator.compareTypes(lowerBound, upperBound) != 0) {
+                upperBound = null;
+            }
+        }
+
+        return new IndexRange(prefix, lowerBound, lowerBoundInclusive, upperBound, upperBoundInclusive, null, null);
+    }
+
+    private static QueryOperator getRangeOperator(String key) {
+        for (QueryOperator operator : List.of(QueryOperator.GREATER_THAN, QueryOperator.GREATER_THAN_OR_EQUAL,
+            QueryOperator.LESS_THAN, QueryOperator.LESS_THAN_OR_EQUAL)) {
+            if (operator.getValue().equals(key)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRangeOperand(Object operand) {
+        if (Missing.isNullOrMissing(operand) || operand instanceof Collection || operand instanceof Document) {
+            return false;
+        }
+        if (operand instanceof MinKey || operand instanceof MaxKey) {
+            return false;
+        }
+        return ValueComparator.hasTypeOrder(operand) && !BsonRegularExpression.isRegularExpression(operand);
+    }
+
+    /**
+     * @return the smallest value of the type of the given bound or {@code null} if the minimum is not known
+     */
+    private static Object getMinimumOfType(Object bound) {
+        if (bound instanceof Number) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (bound instanceof String) {
+            return "";
+        } else if (bound instanceof ObjectId) {
+            return new ObjectId(new byte[BsonConstants.LENGTH_OBJECTID]);
+        } else if (bound instanceof Instant) {
+            return Instant.MIN;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Determines the literal prefix of a regular expression that is anchored at the start of the input,
+     * such as {@code ^abc}. Returns {@code null} if there is no such prefix.
+     */
+    static String getAnchoredPrefix(BsonRegularExpression regularExpression) {
+        String options = regularExpression.getOptions();
+        if (options != null && (options.contains("i") || options.contains("m") || options.contains("x"))) {
+            return null;
+        }
+        String pattern = regularExpression.getPattern();
+        if (!pattern.startsWith("^") || pattern.contains("|")) {
+            return null;
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 1; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                if ((c == '?' || c == '*' || c == '{') && !prefix.isEmpty()) {
+                    // the previous character is optional
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        return prefix.toString();
+    }
+
+    static IndexRange all() {
+        return new IndexRange(List.of());
+    }
+
+    /**
+     * Determines whether the keys of this range are in the given sort order when they are scanned in ascending or
+     * descending order. Sort keys that have a fixed value in this range can be skipped.
+     *
+     * @return 1 for an ascending scan, -1 for a descending scan and 0 if the order cannot be provided
+     */
+    int getScanDirection(List<String> keys, Document orderBy) {
+        int direction = 0;
+        int keyIndex = 0;
+        for (Entry<String, Object> entry : orderBy.entrySet()) {
+            String sortKey = entry.getKey();
+            while (keyIndex < prefix.size() && !keys.get(keyIndex).equals(sortKey)) {
+                keyIndex++;
+            }
+            if (keyIndex >= keys.size() || !keys.get(keyIndex).equals(sortKey)) {
+                return 0;
+            }
+            boolean fixedValue = keyIndex < prefix.size();
+            keyIndex++;
+            if (fixedValue) {
+                continue;
+            }
+            if (!(entry.getValue() instanceof Number sortValue)) {
+                return 0;
+            }
+            int sortDirection = sortValue.intValue() > 0 ? 1 : -1;
+            if (direction != 0 && direction != sortDirection) {
+                return 0;
+            }
+            direction = sortDirection;
+        }
+        return direction != 0 ? direction : 1;
+    }
+
+    /**
+     * @return the positions of all entries in this range, where a document with several key values in the range
+     * is only returned once
+     */
+    <P> Set<P> getPositions(NavigableMap<KeyValue, P> entries) {
+        return stream(entries, false).collect(StreamUtils.toLinkedHashSet());
+    }
+
+    /**
+     * @return a lazy stream of the values of all entries in this range
+     */
+    <V> Stream<V> stream(NavigableMap<KeyValue, V> entries, boolean descending) {
+        Stream<Entry<KeyValue, V>> entryStream;
+        if (descending) {
+            KeyValue endKey = getEndKey();
+            NavigableMap<KeyValue, V> head = endKey != null ? entries.headMap(endKey, true) : entries;
+            entryStream = head.descendingMap().entrySet().stream()
+                .takeWhile(entry -> !isBeforeStart(entry.getKey()));
+        } else {
+            KeyValue startKey = getStartKey();
+            NavigableMap<KeyValue, V> tail = startKey != null ? entries.tailMap(startKey, true) : entries;
+            entryStream = tail.entrySet().stream()
+                .takeWhile(entry -> !isBeyond(entry.getKey()));
+        }
+        return entryStream
+            .filter(entry -> contains(entry.getKey()))
+            .map(Entry::getValue);
+    }
+
+    private KeyValue getEndKey() {
+        if (prefix.isEmpty() && !hasBounds()) {
+            return null;
+        }
+        List<Object> endKey = new ArrayList<>(prefix);
+        endKey.add(upperBound != null ? upperBound : MaxKey.getInstance());
+        return new KeyValue(endKey);
+    }
+
+    private KeyValue getStartKey() {
+        List<Object> startKey = new ArrayList<>(prefix);
+        if (lowerBound != null) {
+            startKey.add(lowerBound);
+        } else if (upperBound != null) {
+            Object minimum = getMinimumOfType(upperBound);
+            if (minimum != null) {
+                startKey.add(minimum);
+            }
+        }
+        if (startKey.isEmpty()) {
+            return null;
+        }
+        return new KeyValue(startKey);
+    }
+
+    private boolean hasBounds() {
+        return lowerBound != null || upperBound != null;
+    }
+
+    private Object getTypeBound() {
+        return lowerBound != null ? lowerBound : upperBound;
+    }
+
+    private boolean isBeyond(KeyValue keyValue) {
+        for (int i = 0; i < prefix.size(); i++) {
+            if (KeyValueComparator.compareValues(keyValue.get(i), prefix.get(i)) != 0) {
+                // the scan starts at the prefix
+                return true;
+            }
+        }
+        if (!hasBounds()) {
+            return false;
+        }
+        Object value = keyValue.get(prefix.size());
+        if (compareTypes(value, getTypeBound()) > 0) {
+            return true;
+        }
+        if (upperBound != null) {
+            int cmp = KeyValueComparator.compareValues(value, upperBound);
+            if (cmp > 0 || (cmp == 0 && !upperBoundInclusive)) {
+                return true;
+            }
+        }
+        return stringPrefix != null && value instanceof String string && !string.startsWith(stringPrefix);
+    }
+
+    private boolean isBeforeStart(KeyValue keyValue) {
+        for (int i = 0; i < prefix.size(); i++) {
+            if (KeyValueComparator.compareValues(keyValue.get(i), prefix.get(i)) != 0) {
+                // the descending scan starts at the end of the prefix
+                return true;
+            }
+        }
+        if (!hasBounds()) {
+            return false;
+        }
+        Object value = keyValue.get(prefix.size());
+        if (compareTypes(value, getTypeBound()) < 0) {
+            return true;
+        }
+        if (lowerBound != null) {
+            int cmp = KeyValueComparator.compareValues(value, lowerBound);
+            if (cmp < 0 || (cmp == 0 && !lowerBoundInclusive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(KeyValue keyValue) {
+        if (!hasBounds()) {
+            return true;
+        }
+        Object value = keyValue.get(prefix.size());
+        if (compareTypes(value, getTypeBound()) != 0) {
+            return false;
+        }
+        if (lowerBound != null) {
+            int cmp = KeyValueComparator.compareValues(value, lowerBound);
+            if (cmp < 0 || (cmp == 0 && !lowerBoundInclusive)) {
+                return false;
+            }
+        }
+        if (upperBound != null) {
+            int cmp = KeyValueComparator.compareValues(value, upperBound);
+            if (cmp > 0 || (cmp == 0 && !upperBoundInclusive)) {
+                return false;
+            }
+        }
+        if (stringPrefix != null && !((String) value).startsWith(stringPrefix)) {
+            return false;
+        }
+        return regularExpression == null || regularExpression.matcher((String) value).find();
+    }
+
+    private static int compareTypes(Object value, Object bound) {
+        if (!ValueComparator.hasTypeOrder(value)) {
+            return 1;
+        }
+        return ValueComparator.compareTypes(value, bound);
+    }
+
+}
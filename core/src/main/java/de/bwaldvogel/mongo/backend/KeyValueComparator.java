@@ -0,0 +1,101 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Objects;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.bson.Json;
+import de.bwaldvogel.mongo.bson.MaxKey;
+
+/**
+ * Orders normalized {@link KeyValue}s element by element with the semantics of {@link ValueComparator}.
+ * <p>
+ * Unlike {@link ValueComparator}, this comparator is consistent with {@link KeyValue#equals(Object)} so that it can
+ * be used to key sorted maps. Values that are considered equal by {@link ValueComparator} but are not equal (e.g.
+ * documents with a different key order) are ordered by their JSON representation. Values of types without a sort
+ * order, or containing such values, are placed after all other values but {@link MaxKey}.
+ */
+public final class KeyValueComparator implements Comparator<KeyValue> {
+
+    private static final KeyValueComparator INSTANCE = new KeyValueComparator();
+
+    private KeyValueComparator() {
+    }
+
+    public static KeyValueComparator getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public int compare(KeyValue keyValue1, KeyValue keyValue2) {
+        int size = Math.min(keyValue1.size(), keyValue2.size());
+        for (int i = 0; i < size; i++) {
+            int cmp = compareValues(keyValue1.get(i), keyValue2.get(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(keyValue1.size(), keyValue2.size());
+    }
+
+    static int compareValues(Object value1, Object value2) {
+        // NaN is left to ValueComparator so that it is ordered the same way as against integral numbers, which never
+        // take this shortcut. Any other pair of doubles compares exactly with Double.compare, including infinities and
+        // values beyond the long range that ValueComparator would truncate to long.
+        if (value1 instanceof Double double1 && value2 instanceof Double double2
+            && !Double.isNaN(double1) && !Double.isNaN(double2)) {
+            return Double.compare(double1, double2);
+        }
+        if (value1 instanceof String string1 && value2 instanceof String string2) {
+            return string1.compareTo(string2);
+        }
+
+        int rank1 = getRank(value1);
+        int rank2 = getRank(value2);
+        if (rank1 != rank2) {
+            return Integer.compare(rank1, rank2);
+        }
+
+        int cmp;
+        if (rank1 == 0) {
+            cmp = ValueComparator.ascWithoutListHandling().compare(value1, value2);
+        } else {
+            cmp = value1.getClass().getName().compareTo(value2.getClass().getName());
+        }
+        if (cmp != 0 || Objects.equals(value1, value2)) {
+            return cmp;
+        }
+
+        cmp = Json.toCompactJsonValue(value1).compareTo(Json.toCompactJsonValue(value2));
+        if (cmp != 0) {
+            return cmp;
+        }
+        return value1.getClass().getName().compareTo(value2.getClass().getName());
+    }
+
+    private static int getRank(Object value) {
+        if (value instanceof MaxKey) {
+            return 2;
+        } else if (!hasTypeOrder(value)) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    // ValueComparator fails for values without a sort order, also when they are embedded in documents or lists
+    private static boolean hasTypeOrder(Object value) {
+        if (!ValueComparator.hasTypeOrder(value)) {
+            return false;
+        }
+        if (value instanceof Document document) {
+            return document.values().stream().allMatch(KeyValueComparator::hasTypeOrder);
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().allMatch(KeyValueComparator::hasTypeOrder);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,73 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+/**
+ * A lock-free histogram of latencies in microseconds with logarithmic buckets.
+ * Bucket {@code i > 0} counts the latencies in {@code [2^(i-1), 2^i)} microseconds and bucket 0 counts the
+ * latencies below one microsecond. This is the layout of the histograms that MongoDB reports in
+ * {@code serverStatus.opLatencies}.
+ */
+final class LatencyHistogram {
+
+    // the last bucket counts all latencies of 2^38 microseconds (about three days) or more
+    private static final int NUMBER_OF_BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long micros) {
+        buckets[bucketIndex(micros)].increment();
+        totalMicros.add(micros);
+        operations.increment();
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros <= 0) {
+            return 0;
+        }
+        int index = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(index, NUMBER_OF_BUCKETS - 1);
+    }
+
+    static long bucketLowerBound(int index) {
+        return index == 0 ? 0 : 1L << (index - 1);
+    }
+
+    long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    long getOperations() {
+        return operations.sum();
+    }
+
+    /**
+     * @return the total latency, the number of operations and the non-empty buckets with their lower bound
+     */
+    Document toDocument() {
+        List<Document> histogram = new ArrayList<>();
+        for (int i = 0; i < buckets.length; i++) {
+            long count = buckets[i].sum();
+            if (count > 0) {
+                histogram.add(new Document("micros", Long.valueOf(bucketLowerBound(i)))
+                    .append("count", Long.valueOf(count)));
+            }
+        }
+        return new Document("latency", Long.valueOf(getTotalMicros()))
+            .append("ops", Long.valueOf(getOperations()))
+            .append("histogram", histogram);
+    }
+
+}
@@ -0,0 +1,208 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.MaxTimeMSExpiredException;
+import de.bwaldvogel.mongo.exception.OperationInterruptedException;
+import io.netty.channel.Channel;
+
+/**
+ * An operation that is currently executed by the server, as reported by {@code currentOp}.
+ * <p>
+ * While the operation runs, it is bound to the executing thread. Loops that may run for a long time call
+ * {@link #checkForInterrupt()} or {@link #documentExamined()}, such that an operation that was
+ * {@link #kill() killed} or that exceeded its {@code maxTimeMS} stops at the next document instead of running to
+ * completion.
+ */
+public final class Operation {
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    // the deadline is checked after this number of checks only, as reading the clock is not for free
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final int opId;
+    private final Channel channel;
+    private final String op;
+    private final String namespace;
+    private final Document command;
+    private final Instant startTime;
+    private final long startNanos;
+
+    private Operation previous;
+
+    // only written by the executing thread
+    private volatile long docsExamined;
+
+    // only accessed by the executing thread
+    private long interruptChecks;
+
+    // the System.nanoTime() by which the operation must finish or 0 if there is no time limit,
+    // only accessed by the executing thread
+    private long deadlineNanos;
+
+    private volatile boolean killed;
+
+    /**
+     * @param maxTimeMillis the time limit of the operation or 0 if there is none
+     */
+    Operation(int opId, Channel channel, String op, String namespace, Document command, Clock clock, long maxTimeMillis) {
+        this.opId = opId;
+        this.channel = channel;
+        this.op = op;
+        this.namespace = namespace;
+        this.command = command;
+        this.startTime = Instant.now(clock);
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = maxTimeMillis > 0 ? startNanos + TimeUnit.MILLISECONDS.toNanos(maxTimeMillis) : 0;
+    }
+
+    /**
+     * @return the operation that is executed by the current thread or null if there is none
+     */
+    public static Operation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks whether the operation of the current thread should stop. This is cheap enough to be called for every
+     * document that is processed, as the time limit is only checked for every {@value #DEADLINE_CHECK_INTERVAL}th call.
+     *
+     * @throws OperationInterruptedException if the operation of the current thread was killed
+     * @throws MaxTimeMSExpiredException     if the operation of the current thread exceeded its time limit
+     */
+    public static void checkForInterrupt() {
+        Operation operation = CURRENT.get();
+        if (operation != null) {
+            operation.throwIfKilled();
+            if (++operation.interruptChecks % DEADLINE_CHECK_INTERVAL == 0) {
+                operation.throwIfDeadlineExceeded();
+            }
+        }
+    }
+
+    /**
+     * Counts a document that was examined by the operation of the current thread.
+     *
+     * @throws OperationInterruptedException if the operation was killed
+     * @throws MaxTimeMSExpiredException     if the operation exceeded its time limit
+     */
+    public static void documentExamined() {
+        Operation operation = CURRENT.get();
+        if (operation != null) {
+            long docsExamined = ++operation.docsExamined;
+            operation.throwIfKilled();
+            if (docsExamined % DEADLINE_CHECK_INTERVAL == 0) {
+                operation.throwIfDeadlineExceeded();
+            }
+        }
+    }
+
+    void bind() {
+        previous = CURRENT.get();
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    private void throwIfKilled() {
+        if (killed) {
+            throw new OperationInterruptedException();
+        }
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} by which the operation must finish or 0 if it has no time limit
+     */
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * Applies the deadline of an earlier operation, like the query whose cursor is continued by a getMore, if it is
+     * earlier than the own deadline of this operation.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} by which the operation must finish or 0 if there is none
+     * @throws MaxTimeMSExpiredException if the deadline has already passed
+     */
+    void applyDeadline(long deadlineNanos) {
+        if (deadlineNanos != 0 && (this.deadlineNanos == 0 || deadlineNanos - this.deadlineNanos < 0)) {
+            this.deadlineNanos = deadlineNanos;
+        }
+        throwIfDeadlineExceeded();
+    }
+
+    private void throwIfDeadlineExceeded() {
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new MaxTimeMSExpiredException();
+        }
+    }
+
+    public int getOpId() {
+        return opId;
+    }
+
+    Channel getChannel() {
+        return channel;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public long getDocsExamined() {
+        return docsExamined;
+    }
+
+    public boolean isKilled() {
+        return killed;
+    }
+
+    void kill() {
+        killed = true;
+    }
+
+    Document toDocument(int connectionId) {
+        Duration runningTime = Duration.ofNanos(System.nanoTime() - startNanos);
+        Document document = new Document();
+        document.put("type", "op");
+        if (connectionId > 0) {
+            document.put("desc", "conn" + connectionId);
+            document.put("connectionId", Integer.valueOf(connectionId));
+            SocketAddress remoteAddress = channel.remoteAddress();
+            if (remoteAddress instanceof InetSocketAddress inetSocketAddress) {
+                document.put("client", inetSocketAddress.getAddress().getHostAddress() + ":" + inetSocketAddress.getPort());
+            }
+        }
+        document.put("active", Boolean.TRUE);
+        document.put("currentOpTime", startTime.plus(runningTime).toString());
+        document.put("opid", Integer.valueOf(opId));
+        document.put("secs_running", Long.valueOf(runningTime.getSeconds()));
+        document.put("microsecs_running", Long.valueOf(runningTime.toNanos() / 1000));
+        document.put("op", op);
+        document.put("ns", namespace);
+        document.put("command", command);
+        document.put("docsExamined", Long.valueOf(getDocsExamined()));
+        document.put("numYields", Integer.valueOf(0));
+        document.put("killPending", Boolean.valueOf(isKilled()));
+        return document;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(opid: " + opId + ", ns: " + namespace + ")";
+    }
+
+}
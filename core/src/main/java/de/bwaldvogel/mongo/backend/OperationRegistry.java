@@ -0,0 +1,139 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.BadValueException;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Keeps track of the operations that are currently executed, such that they can be listed with {@code currentOp}
+ * and interrupted with {@code killOp}.
+ */
+public class OperationRegistry {
+
+    private static final AttributeKey<Integer> CONNECTION_ID = AttributeKey.valueOf(OperationRegistry.class, "connectionId");
+
+    private final Map<Integer, Operation> operations = new ConcurrentHashMap<>();
+    private final AtomicInteger opIdSequence = new AtomicInteger();
+    private final AtomicInteger connectionIdSequence = new AtomicInteger();
+    private final QueryMatcher matcher = new DefaultQueryMatcher();
+    private final Clock clock;
+
+    public OperationRegistry(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a new operation and binds it to the current thread until it is {@link #finish(Operation) finished}.
+     * The time limit of the operation is taken from the {@code maxTimeMS} field of the query.
+     */
+    Operation start(Channel channel, String databaseName, String command, Document query) {
+        long maxTimeMillis = getMaxTimeMillis(query);
+        Operation operation = new Operation(opIdSequence.incrementAndGet(), channel, getOperationType(command),
+            getNamespace(databaseName, command, query), query, clock, maxTimeMillis);
+        operations.put(Integer.valueOf(operation.getOpId()), operation);
+        operation.bind();
+        return operation;
+    }
+
+    void finish(Operation operation) {
+        operation.unbind();
+        operations.remove(Integer.valueOf(operation.getOpId()));
+    }
+
+    private int getConnectionId(Channel channel) {
+        if (channel == null) {
+            return 0;
+        }
+        Integer connectionId = channel.attr(CONNECTION_ID).get();
+        if (connectionId == null) {
+            Integer newConnectionId = Integer.valueOf(connectionIdSequence.incrementAndGet());
+            connectionId = channel.attr(CONNECTION_ID).setIfAbsent(newConnectionId);
+            if (connectionId == null) {
+                connectionId = newConnectionId;
+            }
+        }
+        return connectionId.intValue();
+    }
+
+    private static long getMaxTimeMillis(Document query) {
+        if (query == null) {
+            return 0;
+        }
+        Object maxTimeMS = query.get("maxTimeMS");
+        if (maxTimeMS == null) {
+            return 0;
+        }
+        if (!(maxTimeMS instanceof Number number) || number.doubleValue() != Math.floor(number.doubleValue())) {
+            throw new BadValueException("maxTimeMS must be an integer");
+        }
+        long maxTimeMillis = number.longValue();
+        if (maxTimeMillis < 0 || maxTimeMillis > Integer.MAX_VALUE) {
+            throw new BadValueException(maxTimeMillis + " value for maxTimeMS is out of range [0, " + Integer.MAX_VALUE + "]");
+        }
+        return maxTimeMillis;
+    }
+
+    private static String getOperationType(String command) {
+        switch (command) {
+            case "find":
+                return "query";
+            case "getMore":
+                return "getmore";
+            case "insert":
+            case "update":
+                return command;
+            case "delete":
+                return "remove";
+            default:
+                return "command";
+        }
+    }
+
+    private static String getNamespace(String databaseName, String command, Document query) {
+        if (query != null && query.get(command) instanceof String collectionName) {
+            return databaseName + "." + collectionName;
+        }
+        return databaseName + ".$cmd";
+    }
+
+    /**
+     * @param filter the fields that the reported operations must match, e.g. {@code {ns: "db.collection"}}
+     */
+    public List<Document> getCurrentOperations(Document filter) {
+        List<Document> currentOperations = new ArrayList<>();
+        operations.values().stream()
+            .sorted(Comparator.comparingInt(Operation::getOpId))
+            .map(operation -> operation.toDocument(getConnectionId(operation.getChannel())))
+            .filter(document -> filter == null || matcher.matches(document, filter))
+            .forEach(currentOperations::add);
+        return currentOperations;
+    }
+
+    /**
+     * Marks the operation as killed. The operation stops when it checks for the interrupt for the next time.
+     *
+     * @return true if the operation was found
+     */
+    public boolean kill(int opId) {
+        Operation operation = operations.get(Integer.valueOf(opId));
+        if (operation == null) {
+            return false;
+        }
+        operation.kill();
+        return true;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+}
@@ -1,11 +1,18 @@
 package de.bwaldvogel.mongo.backend;
 
+import java.util.function.Predicate;
+
 import de.bwaldvogel.mongo.bson.Document;
 
 public interface QueryMatcher {
 
     boolean matches(Document document, Document query);
 
+    /**
+     * Translates the query once into a predicate that can be applied to many documents.
+     */
+    Predicate<Document> compile(Document query);
+
     boolean matchesValue(Object queryValue, Object value);
 
     Integer matchPosition(Document document, Document query);
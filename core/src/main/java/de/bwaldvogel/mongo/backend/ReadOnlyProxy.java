@@ -29,7 +29,8 @@ public class ReadOnlyProxy implements MongoBackend {
         "serverstatus",
         "buildinfo",
         "getlasterror",
-        "getmore"
+        "getmore",
+        "currentop"
     );
 
     private final MongoBackend backend;
@@ -118,6 +119,11 @@ public class ReadOnlyProxy implements MongoBackend {
         return backend.getServerStatus();
     }
 
+    @Override
+    public ServerMetrics getMetrics() {
+        return backend.getMetrics();
+    }
+
     @Override
     public void close() {
         backend.close();
@@ -0,0 +1,215 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+/**
+ * Counts the operations, network traffic and command latencies of a server with striped counters, such that
+ * concurrent requests do not contend on them. The values are reported in {@code serverStatus} with the layout
+ * of MongoDB, i.e. in {@code opcounters}, {@code network}, {@code opLatencies} and {@code metrics.commands}.
+ */
+public class ServerMetrics {
+
+    static final String UNKNOWN_COMMAND = "<UNKNOWN>";
+
+    private static final Set<String> READ_COMMANDS = Set.of("find", "aggregate", "count", "distinct", "getMore");
+    private static final Set<String> WRITE_COMMANDS = Set.of("insert", "update", "delete", "findAndModify");
+
+    // commands are dispatched case-insensitively, so the metrics are reported by the name of the dispatched command
+    private static final Map<String, String> COMMAND_NAMES = Stream.of(
+            "aggregate", "buildInfo", "collStats", "connectionStatus", "count", "create", "createIndexes",
+            "currentOp", "dbStats", "delete", "distinct", "drop", "dropDatabase", "dropIndexes", "endSessions",
+            "find", "findAndModify", "getCmdLineOpts", "getFreeMonitoringStatus", "getLastError", "getLog",
+            "getMore", "hello", "hostInfo", "insert", "isMaster", "killCursors", "killOp", "listCollections",
+            "listDatabases", "listIndexes", "ping", "renameCollection", "replSetGetStatus", "resetError",
+            "serverStatus", "update", "validate", "whatsmyuri")
+        .collect(Collectors.toUnmodifiableMap(command -> command.toLowerCase(Locale.ROOT), command -> command));
+
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder getMores = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    private final LatencyHistogram readLatencies = new LatencyHistogram();
+    private final LatencyHistogram writeLatencies = new LatencyHistogram();
+    private final LatencyHistogram commandLatencies = new LatencyHistogram();
+
+    private final Map<String, CommandMetrics> commandMetrics = new ConcurrentHashMap<>();
+
+    public void countBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void countBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    public void countRequest() {
+        requests.increment();
+    }
+
+    void recordQuery(long durationNanos) {
+        queries.increment();
+        readLatencies.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    /**
+     * @param command the name of the command as sent by the client or {@link #UNKNOWN_COMMAND} if the command
+     *                does not exist
+     */
+    void recordCommand(String command, Document query, long durationNanos, boolean failed) {
+        command = normalizeCommandName(command);
+        countOperations(command, query);
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        if (READ_COMMANDS.contains(command)) {
+            readLatencies.record(micros);
+        } else if (WRITE_COMMANDS.contains(command)) {
+            writeLatencies.record(micros);
+        } else {
+            commandLatencies.record(micros);
+        }
+
+        commandMetrics.computeIfAbsent(command, k -> new CommandMetrics()).record(micros, failed);
+    }
+
+    static String normalizeCommandName(String command) {
+        if (command.equals(UNKNOWN_COMMAND)) {
+            return command;
+        }
+        String lowerCaseCommand = command.toLowerCase(Locale.ROOT);
+        return COMMAND_NAMES.getOrDefault(lowerCaseCommand, lowerCaseCommand);
+    }
+
+    private void countOperations(String command, Document query) {
+        switch (command) {
+            case "insert":
+                inserts.add(countStatements(query, "documents"));
+                break;
+            case "update":
+                updates.add(countStatements(query, "updates"));
+                break;
+            case "delete":
+                deletes.add(countStatements(query, "deletes"));
+                break;
+            case "find":
+                queries.increment();
+                break;
+            case "getMore":
+                getMores.increment();
+                break;
+            default:
+                commands.increment();
+                break;
+        }
+    }
+
+    private static int countStatements(Document query, String key) {
+        if (query != null && query.get(key) instanceof Collection<?> statements) {
+            return statements.size();
+        }
+        return 0;
+    }
+
+    public long getInserts() {
+        return inserts.sum();
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getDeletes() {
+        return deletes.sum();
+    }
+
+    public long getGetMores() {
+        return getMores.sum();
+    }
+
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    void appendTo(Document serverStatus, Document metrics) {
+        Document opcounters = new Document();
+        opcounters.put("insert", Long.valueOf(getInserts()));
+        opcounters.put("query", Long.valueOf(getQueries()));
+        opcounters.put("update", Long.valueOf(getUpdates()));
+        opcounters.put("delete", Long.valueOf(getDeletes()));
+        opcounters.put("getmore", Long.valueOf(getGetMores()));
+        opcounters.put("command", Long.valueOf(getCommands()));
+        serverStatus.put("opcounters", opcounters);
+
+        Document network = new Document();
+        network.put("bytesIn", Long.valueOf(getBytesIn()));
+        network.put("bytesOut", Long.valueOf(getBytesOut()));
+        network.put("numRequests", Long.valueOf(getRequests()));
+        serverStatus.put("network", network);
+
+        Document opLatencies = new Document();
+        opLatencies.put("reads", readLatencies.toDocument());
+        opLatencies.put("writes", writeLatencies.toDocument());
+        opLatencies.put("commands", commandLatencies.toDocument());
+        serverStatus.put("opLatencies", opLatencies);
+
+        Document commandsDocument = new Document();
+        new TreeMap<>(commandMetrics).forEach((command, commandMetric) -> commandsDocument.put(command, commandMetric.toDocument()));
+        metrics.put("commands", commandsDocument);
+    }
+
+    private static final class CommandMetrics {
+
+        private final LongAdder failed = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private void record(long micros, boolean failed) {
+            latencies.record(micros);
+            if (failed) {
+                this.failed.increment();
+            }
+        }
+
+        private Document toDocument() {
+            Document document = new Document();
+            document.put("failed", Long.valueOf(failed.sum()));
+            document.put("total", Long.valueOf(latencies.getOperations()));
+            document.put("latency", latencies.toDocument());
+            return document;
+        }
+
+    }
+
+}
@@ -1,9 +1,13 @@
 package de.bwaldvogel.mongo.backend;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.function.BinaryOperator;
 import java.util.stream.Collector;
@@ -28,4 +32,78 @@ final class StreamUtils {
         return Collectors.toCollection(LinkedHashSet::new);
     }
 
+    /**
+     * Collects the first {@code maxSize} elements in the order of the comparator into a sorted list.
+     * The memory usage is proportional to {@code maxSize} rather than to the number of elements.
+     * Like a stable sort, elements that compare equal keep their encounter order.
+     */
+    static <T> Collector<T, ?, List<T>> toSortedList(Comparator<? super T> comparator, int maxSize) {
+        Assert.isTrue(maxSize > 0, () -> "Illegal max size: " + maxSize);
+        return Collector.of(
+            () -> new TopElements<T>(comparator, maxSize),
+            TopElements::add,
+            TopElements::merge,
+            TopElements::toSortedList);
+    }
+
+    private static final class TopElements<T> {
+
+        private final Comparator<Element<T>> elementComparator;
+        private final int maxSize;
+        // the greatest element is at the head, so that it can be replaced by a smaller one
+        private final PriorityQueue<Element<T>> queue;
+        private long sequenceNumber;
+
+        private TopElements(Comparator<? super T> comparator, int maxSize) {
+            this.elementComparator = Comparator.<Element<T>, T> comparing(element -> element.value, comparator)
+                .thenComparingLong(element -> element.sequenceNumber);
+            this.maxSize = maxSize;
+            this.queue = new PriorityQueue<>(elementComparator.reversed());
+        }
+
+        private void add(T value) {
+            add(new Element<>(value, sequenceNumber++));
+        }
+
+        private void add(Element<T> element) {
+            if (queue.size() < maxSize) {
+                queue.add(element);
+            } else if (elementComparator.compare(element, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(element);
+            }
+        }
+
+        private TopElements<T> merge(TopElements<T> other) {
+            for (Element<T> element : other.queue) {
+                add(new Element<>(element.value, sequenceNumber + element.sequenceNumber));
+            }
+            sequenceNumber += other.sequenceNumber;
+            return this;
+        }
+
+        private List<T> toSortedList() {
+            List<Element<T>> elements = new ArrayList<>(queue);
+            elements.sort(elementComparator);
+            List<T> values = new ArrayList<>(elements.size());
+            for (Element<T> element : elements) {
+                values.add(element.value);
+            }
+            return values;
+        }
+
+    }
+
+    private static final class Element<T> {
+
+        private final T value;
+        private final long sequenceNumber;
+
+        private Element(T value, long sequenceNumber) {
+            this.value = value;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+    }
+
 }
@@ -0,0 +1,66 @@
+package de.bwaldvogel.mongo.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+/**
+ * A cursor that pulls its documents lazily from a query pipeline, such that the documents are only
+ * filtered and projected when they are requested.
+ * <p>
+ * The pipeline is advanced by an action that is passed to the given read lock, which runs it while the documents
+ * of the collection are guarded against concurrent modification.
+ * <p>
+ * The time limit of the query that opened the cursor also applies to the getMores that continue it.
+ */
+public class StreamingCursor extends AbstractCursor {
+
+    private final Iterator<Document> documents;
+    private final Consumer<Runnable> readLock;
+    private final long deadlineNanos;
+
+    public StreamingCursor(long cursorId, Iterator<Document> documents, Consumer<Runnable> readLock) {
+        this(cursorId, documents, readLock, 0);
+    }
+
+    /**
+     * @param deadlineNanos the {@link System#nanoTime()} by which the documents must be taken or 0 if there is no
+     *                      time limit
+     */
+    public StreamingCursor(long cursorId, Iterator<Document> documents, Consumer<Runnable> readLock,
+                           long deadlineNanos) {
+        super(cursorId);
+        this.documents = documents;
+        this.readLock = readLock;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        boolean[] empty = new boolean[1];
+        readLock.accept(() -> empty[0] = !documents.hasNext());
+        return empty[0];
+    }
+
+    @Override
+    public List<Document> takeDocuments(int numberToReturn) {
+        Assert.isTrue(numberToReturn > 0, () -> "Illegal number to return: " + numberToReturn);
+        List<Document> result = new ArrayList<>();
+        readLock.accept(() -> {
+            while (result.size() < numberToReturn && documents.hasNext()) {
+                result.add(documents.next());
+            }
+        });
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+}
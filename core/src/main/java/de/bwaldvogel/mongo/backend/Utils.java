@@ -23,8 +23,6 @@ import de.bwaldvogel.mongo.exception.MongoServerError;
 import de.bwaldvogel.mongo.exception.MongoServerException;
 import de.bwaldvogel.mongo.exception.PathNotViableException;
 import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 public class Utils {
 
@@ -169,14 +167,18 @@ public class Utils {
     }
 
     static int calculateSize(Document document) {
-        ByteBuf buffer = Unpooled.buffer();
         try {
-            BsonEncoder.encodeDocument(document, buffer);
-            return buffer.writerIndex();
+            return BsonEncoder.calculateEncodedSize(document);
+        } catch (RuntimeException e) {
+            throw new MongoServerException("Failed to calculate document size", e);
+        }
+    }
+
+    static int calculateSizeDifference(Document oldDocument, Document newDocument) {
+        try {
+            return BsonEncoder.calculateEncodedSizeDifference(oldDocument, newDocument);
         } catch (RuntimeException e) {
             throw new MongoServerException("Failed to calculate document size", e);
-        } finally {
-            buffer.release();
         }
     }
 
@@ -414,6 +416,32 @@ public class Utils {
         }
     }
 
+    /**
+     * Prepares a path of a document that shares its embedded documents and lists with another document for
+     * modification: every embedded document along the path, including a document at the end of the path, is
+     * replaced by a shallow copy. A list on the path is copied deeply as a whole, as positional operators and array
+     * filters can modify any of its elements. All other embedded values remain shared.
+     * <p>
+     * This relies on the invariant that embedded documents are never mutated in place: an update only replaces or
+     * removes the fields of the documents along the path that it modifies, and the documents below remain shared.
+     */
+    static void copyPathForModification(Document document, String path) {
+        Document current = document;
+        for (String fragment : splitPath(path)) {
+            Object value = current.get(fragment);
+            if (value instanceof Document subDocument) {
+                Document copy = subDocument.clone();
+                current.put(fragment, copy);
+                current = copy;
+            } else {
+                if (value != null) {
+                    current.put(fragment, Document.cloneDeeply(value));
+                }
+                return;
+            }
+        }
+    }
+
     public static void validateFieldNames(Document document) {
         validateFieldNames(document, null);
     }
@@ -279,6 +279,13 @@ public class ValueComparator implements Comparator<Object> {
         return 0;
     }
 
+    static boolean hasTypeOrder(Object value) {
+        if (Missing.isNullOrMissing(value)) {
+            return true;
+        }
+        return SORT_PRIORITY.stream().anyMatch(type -> type.isInstance(value));
+    }
+
     private static int getTypeOrder(Object obj) {
         for (int idx = 0; idx < SORT_PRIORITY.size(); idx++) {
             if (SORT_PRIORITY.get(idx).isAssignableFrom(obj.getClass())) {
@@ -17,6 +17,7 @@ import de.bwaldvogel.mongo.MongoDatabase;
 import de.bwaldvogel.mongo.backend.Assert;
 import de.bwaldvogel.mongo.backend.CollectionUtils;
 import de.bwaldvogel.mongo.backend.DatabaseResolver;
+import de.bwaldvogel.mongo.backend.Operation;
 import de.bwaldvogel.mongo.backend.aggregation.stage.AddFieldsStage;
 import de.bwaldvogel.mongo.backend.aggregation.stage.AggregationStage;
 import de.bwaldvogel.mongo.backend.aggregation.stage.BucketStage;
@@ -201,7 +202,7 @@ public class Aggregation {
             stream = stream.map(this::addAllVariables);
         }
         for (AggregationStage stage : stages) {
-            stream = stage.apply(stream);
+            stream = stage.apply(stream).peek(document -> Operation.checkForInterrupt());
         }
         if (hasVariables()) {
             stream = stream.map(this::removeAllVariables);
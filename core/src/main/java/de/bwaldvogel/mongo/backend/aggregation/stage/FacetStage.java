@@ -10,6 +10,7 @@ import java.util.stream.Stream;
 import de.bwaldvogel.mongo.MongoCollection;
 import de.bwaldvogel.mongo.MongoDatabase;
 import de.bwaldvogel.mongo.backend.DatabaseResolver;
+import de.bwaldvogel.mongo.backend.Operation;
 import de.bwaldvogel.mongo.backend.aggregation.Aggregation;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.oplog.Oplog;
@@ -36,6 +37,7 @@ public class FacetStage implements AggregationStage {
         List<Document> allDocuments = stream.collect(Collectors.toList());
         Document result = new Document();
         for (Entry<String, Aggregation> entry : facets.entrySet()) {
+            Operation.checkForInterrupt();
             Aggregation aggregation = entry.getValue();
             List<Document> documents = aggregation.runStages(allDocuments.stream());
             result.put(entry.getKey(), documents);
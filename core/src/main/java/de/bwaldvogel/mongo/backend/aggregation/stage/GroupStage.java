@@ -13,6 +13,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import de.bwaldvogel.mongo.backend.Missing;
+import de.bwaldvogel.mongo.backend.Operation;
 import de.bwaldvogel.mongo.backend.ValueComparator;
 import de.bwaldvogel.mongo.backend.aggregation.Expression;
 import de.bwaldvogel.mongo.backend.aggregation.accumulator.Accumulator;
@@ -41,6 +42,7 @@ public class GroupStage implements AggregationStage {
     public Stream<Document> apply(Stream<Document> stream) {
         Map<Object, Collection<Accumulator>> accumulatorsPerKey = new TreeMap<>(ValueComparator.asc());
         stream.forEach(document -> {
+            Operation.checkForInterrupt();
             Object key = Expression.evaluateDocument(idExpression, document);
             if (key instanceof Missing) {
                 key = null;
@@ -60,6 +62,7 @@ public class GroupStage implements AggregationStage {
         List<Document> result = new ArrayList<>();
 
         for (Entry<Object, Collection<Accumulator>> entry : accumulatorsPerKey.entrySet()) {
+            Operation.checkForInterrupt();
             Document groupResult = new Document();
             groupResult.put(ID_FIELD, entry.getKey());
 
@@ -1,18 +1,17 @@
 package de.bwaldvogel.mongo.backend.aggregation.stage;
 
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import de.bwaldvogel.mongo.backend.DefaultQueryMatcher;
-import de.bwaldvogel.mongo.backend.QueryMatcher;
 import de.bwaldvogel.mongo.bson.Document;
 
 public class MatchStage implements AggregationStage {
 
-    private final QueryMatcher queryMatcher = new DefaultQueryMatcher();
-    private final Document query;
+    private final Predicate<Document> query;
 
     public MatchStage(Document query) {
-        this.query = query;
+        this.query = new DefaultQueryMatcher().compile(query);
     }
 
     @Override
@@ -22,6 +21,6 @@ public class MatchStage implements AggregationStage {
 
     @Override
     public Stream<Document> apply(Stream<Document> stream) {
-        return stream.filter(document -> queryMatcher.matches(document, query));
+        return stream.filter(query);
     }
 }
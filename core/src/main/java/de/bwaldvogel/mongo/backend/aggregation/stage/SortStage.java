@@ -3,6 +3,7 @@ package de.bwaldvogel.mongo.backend.aggregation.stage;
 import java.util.stream.Stream;
 
 import de.bwaldvogel.mongo.backend.DocumentComparator;
+import de.bwaldvogel.mongo.backend.Operation;
 import de.bwaldvogel.mongo.bson.Document;
 
 public class SortStage implements AggregationStage {
@@ -20,7 +21,8 @@ public class SortStage implements AggregationStage {
 
     @Override
     public Stream<Document> apply(Stream<Document> stream) {
-        return stream.sorted(documentComparator);
+        // the documents are collected before they are sorted, so this is where a timed out sort can be stopped
+        return stream.peek(document -> Operation.checkForInterrupt()).sorted(documentComparator);
     }
 
 }
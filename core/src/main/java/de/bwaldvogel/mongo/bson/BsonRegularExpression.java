@@ -1,6 +1,5 @@
 package de.bwaldvogel.mongo.bson;
 
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,7 +15,7 @@ public class BsonRegularExpression implements Bson {
     private final String pattern;
     private final String options;
 
-    private transient final AtomicReference<Pattern> compiledPattern = new AtomicReference<>(null);
+    private transient volatile Pattern compiledPattern;
 
     public BsonRegularExpression(String pattern, String options) {
         this.pattern = pattern;
@@ -71,16 +70,17 @@ public class BsonRegularExpression implements Bson {
     }
 
     private Pattern toPattern() {
-        Pattern pattern = compiledPattern.get();
+        Pattern pattern = compiledPattern;
         if (pattern == null) {
-            pattern = createPattern();
-            compiledPattern.lazySet(pattern);
+            pattern = PatternCache.getInstance().getPattern(this.pattern, options, this::createPattern);
+            compiledPattern = pattern;
         }
         return pattern;
     }
 
     Pattern createPattern() {
         int flags = 0;
+        String options = this.options != null ? this.options : "";
         for (char flag : options.toCharArray()) {
             switch (flag) {
                 case 'i':
@@ -0,0 +1,367 @@
+package de.bwaldvogel.mongo.bson;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * An insertion-ordered map that stores its entries in two parallel arrays of keys and values, which are searched
+ * linearly. For the few fields of a typical document, this needs a fraction of the memory of a {@link LinkedHashMap},
+ * which allocates a table and an entry object with four references per field.
+ * <p>
+ * Once the map grows beyond {@link #MAX_COMPACT_SIZE} entries, it promotes itself to a {@link LinkedHashMap},
+ * such that lookups in large documents stay constant-time.
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+
+    static final int MAX_COMPACT_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+    private int size;
+    private int modCount;
+
+    // the map to which all operations are delegated once the map exceeded the compact size
+    private LinkedHashMap<String, Object> promoted;
+
+    CompactMap() {
+    }
+
+    CompactMap(CompactMap other) {
+        if (other.promoted != null) {
+            promoted = new LinkedHashMap<>(other.promoted);
+        } else if (other.size > 0) {
+            keys = Arrays.copyOf(other.keys, other.size);
+            values = Arrays.copyOf(other.values, other.size);
+            size = other.size;
+        }
+    }
+
+    boolean isPromoted() {
+        return promoted != null;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        if (promoted != null) {
+            return promoted.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (promoted != null) {
+            return promoted.containsKey(key);
+        }
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (promoted != null) {
+            return promoted.containsValue(value);
+        }
+        for (int i = 0; i < size; i++) {
+            if (Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Objects.requireNonNull(key, "key must not be null");
+        if (promoted != null) {
+            return promoted.put(key, value);
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previousValue = values[index];
+            values[index] = value;
+            return previousValue;
+        }
+        if (size == MAX_COMPACT_SIZE) {
+            promote();
+            return promoted.put(key, value);
+        }
+        if (size == keys.length) {
+            int capacity = Math.min(Math.max(INITIAL_CAPACITY, size * 2), MAX_COMPACT_SIZE);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    private void promote() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>(size * 4);
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], values[i]);
+        }
+        promoted = map;
+        keys = NO_KEYS;
+        values = NO_VALUES;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (promoted != null) {
+            return promoted.remove(key);
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previousValue = values[index];
+        removeAt(index);
+        return previousValue;
+    }
+
+    private void removeAt(int index) {
+        int numMoved = size - index - 1;
+        if (numMoved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, numMoved);
+            System.arraycopy(values, index + 1, values, index, numMoved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if (promoted != null) {
+            promoted.clear();
+            return;
+        }
+        keys = NO_KEYS;
+        values = NO_VALUES;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        if (promoted != null) {
+            promoted.forEach(action);
+            return;
+        }
+        int expectedModCount = modCount;
+        for (int i = 0; i < size; i++) {
+            action.accept(keys[i], values[i]);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Replaces every key by the key that the given function returns for it, which must be equal to the key.
+     * This is not a structural modification, since neither the order nor the entries of the map change.
+     */
+    void replaceKeys(UnaryOperator<String> function) {
+        if (promoted != null) {
+            // the keys of a hash table cannot be replaced, hence it is rebuilt if any key is replaced
+            String[] promotedKeys = promoted.keySet().toArray(NO_KEYS);
+            boolean anyKeyReplaced = false;
+            for (int i = 0; i < promotedKeys.length; i++) {
+                String key = function.apply(promotedKeys[i]);
+                anyKeyReplaced |= key != promotedKeys[i];
+                promotedKeys[i] = key;
+            }
+            if (anyKeyReplaced) {
+                LinkedHashMap<String, Object> map = new LinkedHashMap<>(promotedKeys.length * 2);
+                for (String key : promotedKeys) {
+                    map.put(key, promoted.get(key));
+                }
+                promoted = map;
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            keys[i] = function.apply(keys[i]);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (promoted != null) {
+            return promoted.entrySet();
+        }
+        return new EntrySet();
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            if (promoted != null) {
+                return promoted.entrySet().iterator();
+            }
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactMap.this.clear();
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            checkForComodification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new CompactEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount || promoted != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+    }
+
+    private final class CompactEntry implements Entry<String, Object> {
+
+        private final String key;
+        private int index;
+
+        private CompactEntry(int index) {
+            this.key = keys[index];
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        // entries in front of this one might have been removed or the map was promoted in the meantime
+        private int currentIndex() {
+            if (promoted != null) {
+                return -1;
+            }
+            if (index >= size || keys[index] != key) {
+                index = indexOf(key);
+            }
+            return index;
+        }
+
+        @Override
+        public Object getValue() {
+            int currentIndex = currentIndex();
+            if (currentIndex < 0) {
+                return get(key);
+            }
+            return values[currentIndex];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            int currentIndex = currentIndex();
+            if (currentIndex < 0) {
+                return put(key, value);
+            }
+            Object previousValue = values[currentIndex];
+            values[currentIndex] = value;
+            return previousValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry<?, ?> other)) {
+                return false;
+            }
+            return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+
+    }
+
+}
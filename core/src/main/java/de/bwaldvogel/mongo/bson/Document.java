@@ -1,5 +1,9 @@
 package de.bwaldvogel.mongo.bson;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -7,17 +11,36 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import de.bwaldvogel.mongo.backend.Missing;
+import io.netty.buffer.ByteBuf;
 
 public final class Document implements Map<String, Object>, Bson {
 
     private static final long serialVersionUID = 1L;
 
-    private final LinkedHashMap<String, Object> documentAsMap = new LinkedHashMap<>();
+    // Documents that were persisted by older versions contain the fields as a LinkedHashMap in 'documentAsMap'.
+    // Now the fields are written as key-value pairs after the serial fields, as many as 'fieldCount' says,
+    // such that the fields don't need to be copied when a document is serialized.
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("documentAsMap", LinkedHashMap.class),
+        new ObjectStreamField("rawBson", RawBson.class),
+        new ObjectStreamField("fieldCount", int.class),
+    };
+
+    // only reassigned when the document is deserialized
+    private CompactMap documentAsMap;
+
+    // the encoded fields as long as the document was not materialized
+    private volatile RawBson rawBson;
+
+    // set for stored documents that were not materialized yet, guarded by documentAsMap
+    private boolean internFieldNamesWhenMaterialized;
 
     public Document() {
+        this.documentAsMap = new CompactMap();
     }
 
     public Document(String key, Object value) {
@@ -30,6 +53,77 @@ public final class Document implements Map<String, Object>, Bson {
         putAll(map);
     }
 
+    /**
+     * Creates a document whose fields are decoded from the BSON encoded bytes at the given offset
+     * when they are accessed for the first time. Embedded documents are again decoded lazily, such
+     * that the parts of a document that are never read are never materialized.
+     * <p>
+     * The byte array must contain a valid BSON document and must not be modified afterwards.
+     */
+    public static Document fromRawBson(byte[] bson, int offset) {
+        return new Document(new RawBson(bson, offset));
+    }
+
+    private Document(RawBson rawBson) {
+        this();
+        this.rawBson = rawBson;
+    }
+
+    private Document(CompactMap documentAsMap) {
+        this.documentAsMap = documentAsMap;
+    }
+
+    public boolean isMaterialized() {
+        return rawBson == null;
+    }
+
+    /**
+     * Writes the original BSON encoding if the document was not materialized yet.
+     *
+     * @return {@code false} if the document needs to be encoded field by field
+     */
+    public boolean writeRawBson(ByteBuf out) {
+        RawBson raw = rawBson;
+        if (raw == null) {
+            return false;
+        }
+        raw.writeTo(out);
+        return true;
+    }
+
+    /**
+     * @return the size of the original BSON encoding or -1 if the document was already materialized
+     */
+    public int getRawBsonSize() {
+        RawBson raw = rawBson;
+        if (raw == null) {
+            return -1;
+        }
+        return raw.length();
+    }
+
+    private void materialize() {
+        if (rawBson == null) {
+            return;
+        }
+        synchronized (documentAsMap) {
+            RawBson raw = rawBson;
+            if (raw != null) {
+                try {
+                    raw.decodeInto(documentAsMap);
+                    if (internFieldNamesWhenMaterialized) {
+                        // the embedded documents only share the bytes of this stored document
+                        internMaterializedFieldNames(null, false);
+                    }
+                } catch (RuntimeException e) {
+                    documentAsMap.clear();
+                    throw e;
+                }
+                rawBson = null;
+            }
+        }
+    }
+
     public void cloneInto(Document targetDocument) {
         for (Entry<String, Object> entry : entrySet()) {
             targetDocument.put(entry.getKey(), cloneDeeply(entry.getValue()));
@@ -41,11 +135,15 @@ public final class Document implements Map<String, Object>, Bson {
     }
 
     @SuppressWarnings("unchecked")
-    private static <T> T cloneDeeply(T object) {
+    public static <T> T cloneDeeply(T object) {
         if (object == null) {
             return null;
         } else if (object instanceof Document document) {
             Document clone = document.clone();
+            if (!clone.isMaterialized()) {
+                // the encoded bytes are immutable, hence a lazy clone is already a deep copy
+                return (T) clone;
+            }
             for (String key : document.keySet()) {
                 clone.put(key, cloneDeeply(clone.get(key)));
             }
@@ -65,6 +163,58 @@ public final class Document implements Map<String, Object>, Bson {
         }
     }
 
+    /**
+     * Prepares this document to be stored. The field names of this document and of its embedded documents are
+     * replaced by their {@linkplain FieldNameInterner interned} instances, such that the field names of queries and
+     * other transient documents do not take up the bounded dictionary. A document that was not materialized yet
+     * interns its field names when it is materialized. Its encoded bytes are copied if they are part of a larger
+     * array, like the body of the command that it was sent with, such that the stored document does not retain it.
+     *
+     * @param previousVersion the previous version of this document, which was already prepared, or {@code null}.
+     *                        Values that are shared with the previous version are skipped.
+     */
+    public void prepareForStorage(Document previousVersion) {
+        prepareForStorage(previousVersion, true);
+    }
+
+    private void prepareForStorage(Document previousVersion, boolean compactRawBson) {
+        if (rawBson != null) {
+            synchronized (documentAsMap) {
+                RawBson raw = rawBson;
+                if (raw != null) {
+                    if (compactRawBson) {
+                        rawBson = raw.compact();
+                    }
+                    internFieldNamesWhenMaterialized = true;
+                    return;
+                }
+            }
+        }
+        internMaterializedFieldNames(previousVersion, compactRawBson);
+    }
+
+    private void internMaterializedFieldNames(Document previousVersion, boolean compactRawBson) {
+        documentAsMap.replaceKeys(FieldNameInterner.getInstance()::intern);
+        documentAsMap.forEach((key, value) -> {
+            Object previousValue = previousVersion != null ? previousVersion.get(key) : null;
+            prepareForStorage(value, previousValue, compactRawBson);
+        });
+    }
+
+    private static void prepareForStorage(Object value, Object previousValue, boolean compactRawBson) {
+        if (value == previousValue) {
+            return;
+        }
+        if (value instanceof Document document) {
+            document.prepareForStorage(previousValue instanceof Document previousDocument ? previousDocument : null,
+                compactRawBson);
+        } else if (value instanceof Collection<?> collection) {
+            for (Object element : collection) {
+                prepareForStorage(element, null, compactRawBson);
+            }
+        }
+    }
+
     public Document append(String key, Object value) {
         put(key, value);
         return this;
@@ -77,11 +227,13 @@ public final class Document implements Map<String, Object>, Bson {
 
     @Override
     public boolean containsValue(Object value) {
+        materialize();
         return documentAsMap.containsValue(value);
     }
 
     @Override
     public Object get(Object key) {
+        materialize();
         return documentAsMap.get(key);
     }
 
@@ -91,26 +243,31 @@ public final class Document implements Map<String, Object>, Bson {
 
     @Override
     public void clear() {
+        materialize();
         documentAsMap.clear();
     }
 
     @Override
     public int size() {
+        materialize();
         return documentAsMap.size();
     }
 
     @Override
     public boolean isEmpty() {
+        materialize();
         return documentAsMap.isEmpty();
     }
 
     @Override
     public boolean containsKey(Object key) {
+        materialize();
         return documentAsMap.containsKey(key);
     }
 
     @Override
     public Object put(String key, Object value) {
+        materialize();
         return documentAsMap.put(key, value);
     }
 
@@ -122,35 +279,49 @@ public final class Document implements Map<String, Object>, Bson {
 
     @Override
     public void putAll(Map<? extends String, ?> m) {
+        materialize();
         documentAsMap.putAll(m);
     }
 
     @Override
     public Object remove(Object key) {
+        materialize();
         return documentAsMap.remove(key);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Document clone() {
-        return new Document((Map<String, Object>) documentAsMap.clone());
+        RawBson raw = rawBson;
+        if (raw != null) {
+            return new Document(raw);
+        }
+        return new Document(new CompactMap(documentAsMap));
     }
 
     @Override
     public Set<String> keySet() {
+        materialize();
         return documentAsMap.keySet();
     }
 
     @Override
     public Collection<Object> values() {
+        materialize();
         return documentAsMap.values();
     }
 
     @Override
     public Set<Entry<String, Object>> entrySet() {
+        materialize();
         return documentAsMap.entrySet();
     }
 
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        materialize();
+        documentAsMap.forEach(action);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) {
@@ -162,6 +333,7 @@ public final class Document implements Map<String, Object>, Bson {
         if (!(o instanceof Document)) {
             return false;
         }
+        materialize();
         List<String> keys = new ArrayList<>(keySet());
         List<String> otherKeys = new ArrayList<>(((Document) o).keySet());
         if (!keys.equals(otherKeys)) {
@@ -172,6 +344,7 @@ public final class Document implements Map<String, Object>, Bson {
 
     @Override
     public int hashCode() {
+        materialize();
         return documentAsMap.hashCode();
     }
 
@@ -185,6 +358,7 @@ public final class Document implements Map<String, Object>, Bson {
     }
 
     public String toString(boolean compactKey, String prefix, String suffix) {
+        materialize();
         return documentAsMap.entrySet().stream()
             .map(entry -> writeKey(entry.getKey(), compactKey) + " " + Json.toJsonValue(entry.getValue(), compactKey, prefix, suffix))
             .collect(Collectors.joining(", ", prefix, suffix));
@@ -201,4 +375,35 @@ public final class Document implements Map<String, Object>, Bson {
     public void merge(Document value) {
         putAll(value);
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        synchronized (documentAsMap) {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("documentAsMap", null);
+            fields.put("rawBson", rawBson);
+            fields.put("fieldCount", documentAsMap.size());
+            out.writeFields();
+            for (Entry<String, Object> entry : documentAsMap.entrySet()) {
+                out.writeObject(entry.getKey());
+                out.writeObject(entry.getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        documentAsMap = new CompactMap();
+        FieldNameInterner fieldNameInterner = FieldNameInterner.getInstance();
+        Map<String, Object> map = (Map<String, Object>) fields.get("documentAsMap", null);
+        if (map != null) {
+            map.forEach((key, value) -> documentAsMap.put(fieldNameInterner.intern(key), value));
+        }
+        int fieldCount = fields.get("fieldCount", 0);
+        for (int i = 0; i < fieldCount; i++) {
+            String key = (String) in.readObject();
+            documentAsMap.put(fieldNameInterner.intern(key), in.readObject());
+        }
+        rawBson = (RawBson) fields.get("rawBson", null);
+    }
 }
@@ -0,0 +1,92 @@
+package de.bwaldvogel.mongo.bson;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded dictionary of field names, such that the documents of a collection share a single {@link String}
+ * instance per field name instead of holding a copy of it per document.
+ * <p>
+ * Field names are interned when a document is stored and when it is deserialized, but not for queries and other
+ * documents that are only decoded from a request. Once the dictionary is full, or for field names that are unusually
+ * long, the given instance is returned as is.
+ */
+public final class FieldNameInterner {
+
+    static final int DEFAULT_MAX_SIZE = 10_000;
+    static final int MAX_FIELD_NAME_LENGTH = 64;
+
+    // object header, hash, coder and reference to the value array of a String with compressed oops
+    private static final int STRING_OVERHEAD = 24;
+    // object header and length of a byte array
+    private static final int ARRAY_OVERHEAD = 16;
+
+    private static final FieldNameInterner INSTANCE = new FieldNameInterner(DEFAULT_MAX_SIZE);
+
+    private final ConcurrentMap<String, String> fieldNames = new ConcurrentHashMap<>();
+    private final LongAdder deduplicatedFieldNames = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+    private final int maxSize;
+
+    FieldNameInterner(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static FieldNameInterner getInstance() {
+        return INSTANCE;
+    }
+
+    public String intern(String fieldName) {
+        if (fieldName.length() > MAX_FIELD_NAME_LENGTH) {
+            return fieldName;
+        }
+        String internedFieldName = fieldNames.get(fieldName);
+        if (internedFieldName == null) {
+            if (fieldNames.size() >= maxSize) {
+                return fieldName;
+            }
+            internedFieldName = fieldNames.putIfAbsent(fieldName, fieldName);
+            if (internedFieldName == null) {
+                return fieldName;
+            }
+        }
+        if (internedFieldName != fieldName) {
+            deduplicatedFieldNames.increment();
+            deduplicatedBytes.add(estimateSize(fieldName));
+        }
+        return internedFieldName;
+    }
+
+    private static long estimateSize(String fieldName) {
+        // assumes compact strings with one byte per character, which holds for most field names
+        return STRING_OVERHEAD + align(ARRAY_OVERHEAD + fieldName.length());
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    public int size() {
+        return fieldNames.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of field names that were replaced by an equal, already interned instance
+     */
+    public long getDeduplicatedFieldNames() {
+        return deduplicatedFieldNames.sum();
+    }
+
+    /**
+     * @return the estimated number of heap bytes of the field names that were replaced by an interned instance
+     */
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.sum();
+    }
+
+}
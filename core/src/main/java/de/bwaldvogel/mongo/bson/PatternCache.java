@@ -0,0 +1,106 @@
+package de.bwaldvogel.mongo.bson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded cache of compiled regular expressions that is shared by all {@link BsonRegularExpression}s.
+ * Queries that are sent repeatedly or that contain the same expression in several places compile it only once.
+ */
+public final class PatternCache {
+
+    static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final PatternCache INSTANCE = new PatternCache(DEFAULT_MAX_SIZE);
+
+    private final Map<Key, Pattern> patterns;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PatternCache(int maxSize) {
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static PatternCache getInstance() {
+        return INSTANCE;
+    }
+
+    Pattern getPattern(String pattern, String options, Supplier<Pattern> patternSupplier) {
+        Key key = new Key(pattern, options);
+        synchronized (patterns) {
+            Pattern compiledPattern = patterns.get(key);
+            if (compiledPattern != null) {
+                hits.increment();
+                return compiledPattern;
+            }
+        }
+
+        misses.increment();
+        Pattern compiledPattern = patternSupplier.get();
+        synchronized (patterns) {
+            patterns.put(key, compiledPattern);
+        }
+        return compiledPattern;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (patterns) {
+            patterns.clear();
+        }
+    }
+
+    private static final class Key {
+
+        private final String pattern;
+        private final String options;
+
+        private Key(String pattern, String options) {
+            this.pattern = pattern;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(pattern, other.pattern) && Objects.equals(options, other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pattern, options);
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package de.bwaldvogel.mongo.bson;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+import de.bwaldvogel.mongo.wire.bson.BsonDecoder;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The BSON encoding of a document that was not materialized yet.
+ * Embedded documents share the byte array of their enclosing document, which is never modified.
+ */
+final class RawBson implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+    private final int offset;
+
+    RawBson(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.offset = offset;
+    }
+
+    int length() {
+        return (bytes[offset] & 0xFF)
+            | (bytes[offset + 1] & 0xFF) << 8
+            | (bytes[offset + 2] & 0xFF) << 16
+            | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    void decodeInto(Map<String, Object> target) {
+        BsonDecoder.decodeFields(bytes, offset, target);
+    }
+
+    void writeTo(ByteBuf out) {
+        out.writeBytes(bytes, offset, length());
+    }
+
+    /**
+     * @return an instance that does not share the byte array with an enclosing document
+     */
+    RawBson compact() {
+        int length = length();
+        if (offset != 0 || length != bytes.length) {
+            return new RawBson(Arrays.copyOfRange(bytes, offset, offset + length), 0);
+        }
+        return this;
+    }
+
+    private Object writeReplace() {
+        // an embedded document must not serialize the bytes of its enclosing document
+        return compact();
+    }
+
+}
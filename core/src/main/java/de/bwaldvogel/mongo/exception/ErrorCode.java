@@ -10,6 +10,7 @@ public enum ErrorCode {
     ConflictingUpdateOperators(40),
     CursorNotFound(43),
     NamespaceExists(48),
+    MaxTimeMSExpired(50),
     DollarPrefixedFieldName(52),
     InvalidIdField(53),
     NotSingleValueField(54),
@@ -21,6 +22,7 @@ public enum ErrorCode {
     CannotIndexParallelArrays(171),
     ConversionFailure(241),
     DuplicateKey(11000),
+    Interrupted(11601),
     MergeStageNoMatchingDocument(13113),
 
     _15998(15998) {
@@ -0,0 +1,10 @@
+package de.bwaldvogel.mongo.exception;
+
+public class MaxTimeMSExpiredException extends MongoServerError {
+
+    private static final long serialVersionUID = 1L;
+
+    public MaxTimeMSExpiredException() {
+        super(ErrorCode.MaxTimeMSExpired, "operation exceeded time limit");
+    }
+}
@@ -0,0 +1,10 @@
+package de.bwaldvogel.mongo.exception;
+
+public class OperationInterruptedException extends MongoServerError {
+
+    private static final long serialVersionUID = 1L;
+
+    public OperationInterruptedException() {
+        super(ErrorCode.Interrupted, "operation was interrupted");
+    }
+}
@@ -161,8 +161,9 @@ public class CollectionBackedOplog implements Oplog {
     }
 
     private Document toOplogInsertDocument(String namespace, Document document) {
+        // updates replace the embedded documents of a stored document instead of modifying them
         return toOplogDocument(OperationType.INSERT, namespace)
-            .append(OplogDocumentFields.O, document.cloneDeeply());
+            .append(OplogDocumentFields.O, document.clone());
     }
 
     private Document toOplogUpdateDocument(String namespace, Document query, Object id) {
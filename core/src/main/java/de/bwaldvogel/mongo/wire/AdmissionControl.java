@@ -0,0 +1,202 @@
+package de.bwaldvogel.mongo.wire;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.bwaldvogel.mongo.backend.Assert;
+import de.bwaldvogel.mongo.bson.Document;
+
+/**
+ * Limits the number of connections and the number of requests that are handled at the same time.
+ * <p>
+ * Connections above the limit are closed right after they were accepted. Requests are not rejected: a channel
+ * that reached a request limit stops reading from its socket, such that the client is slowed down by TCP
+ * flow control until the pending requests were answered. The same holds for a channel whose pending replies
+ * exceed the write buffer of the channel. Requests that were already received are always handled.
+ * <p>
+ * When a request finishes, the channels that wait for a free request slot are resumed in the order in which they
+ * stopped reading, but only as many as there are free slots. Once no request is in flight, all of them are resumed,
+ * such that a resumed channel that does not send a request cannot hold back the others.
+ * <p>
+ * The counters are reported in {@code serverStatus.connections}.
+ */
+public class AdmissionControl {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final int maxConnections;
+    private final int maxInFlightRequestsPerConnection;
+    private final int maxInFlightRequests;
+
+    private final AtomicInteger currentConnections = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final LongAdder totalCreatedConnections = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder pausedReads = new LongAdder();
+
+    // guarded by itself
+    private final Set<Runnable> pausedChannels = new LinkedHashSet<>();
+
+    public AdmissionControl() {
+        this(UNLIMITED, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * @param maxConnections                   the maximum number of open connections
+     * @param maxInFlightRequestsPerConnection the maximum number of requests of a single connection that are
+     *                                         handled or waiting to be handled
+     * @param maxInFlightRequests              the maximum number of requests of all connections that are handled
+     *                                         or waiting to be handled
+     */
+    public AdmissionControl(int maxConnections, int maxInFlightRequestsPerConnection, int maxInFlightRequests) {
+        Assert.isTrue(maxConnections > 0, () -> "Illegal maximum number of connections: " + maxConnections);
+        Assert.isTrue(maxInFlightRequestsPerConnection > 0,
+            () -> "Illegal maximum number of in-flight requests per connection: " + maxInFlightRequestsPerConnection);
+        Assert.isTrue(maxInFlightRequests > 0, () -> "Illegal maximum number of in-flight requests: " + maxInFlightRequests);
+        this.maxConnections = maxConnections;
+        this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * @return true if the connection is admitted, false if the maximum number of connections is reached
+     */
+    boolean tryOpenConnection() {
+        if (currentConnections.incrementAndGet() > maxConnections) {
+            currentConnections.decrementAndGet();
+            rejectedConnections.increment();
+            return false;
+        }
+        totalCreatedConnections.increment();
+        return true;
+    }
+
+    void connectionClosed() {
+        currentConnections.decrementAndGet();
+    }
+
+    void requestStarted() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    void requestFinished() {
+        int remainingRequests = inFlightRequests.decrementAndGet();
+        if (remainingRequests == 0) {
+            synchronized (inFlightRequests) {
+                inFlightRequests.notifyAll();
+            }
+        }
+        int freeSlots = remainingRequests == 0 ? Integer.MAX_VALUE : maxInFlightRequests - remainingRequests;
+        for (Runnable resumeReading : takePausedChannels(freeSlots)) {
+            resumeReading.run();
+        }
+    }
+
+    private List<Runnable> takePausedChannels(int maxChannels) {
+        List<Runnable> channels = new ArrayList<>();
+        synchronized (pausedChannels) {
+            Iterator<Runnable> iterator = pausedChannels.iterator();
+            while (channels.size() < maxChannels && iterator.hasNext()) {
+                channels.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        return channels;
+    }
+
+    boolean canStartRequest(int inFlightRequestsOfConnection) {
+        return inFlightRequestsOfConnection < maxInFlightRequestsPerConnection
+            && hasFreeRequestSlot();
+    }
+
+    boolean hasFreeRequestSlot() {
+        return inFlightRequests.get() < maxInFlightRequests;
+    }
+
+    /**
+     * Registers a channel that waits for a free request slot. The callback is invoked once, when the channel
+     * is resumed, unless the channel is unregistered before.
+     */
+    void registerPausedChannel(Runnable resumeReading) {
+        synchronized (pausedChannels) {
+            pausedChannels.add(resumeReading);
+        }
+    }
+
+    void unregisterPausedChannel(Runnable resumeReading) {
+        synchronized (pausedChannels) {
+            pausedChannels.remove(resumeReading);
+        }
+    }
+
+    /**
+     * Waits until no request is in flight, e.g. to let the pending requests finish before the server is stopped.
+     *
+     * @return true if no request is in flight, false if the timeout elapsed before
+     */
+    public boolean awaitNoInFlightRequests(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (inFlightRequests) {
+            while (inFlightRequests.get() > 0) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(inFlightRequests, remainingNanos);
+            }
+        }
+        return true;
+    }
+
+    void countPausedRead() {
+        pausedReads.increment();
+    }
+
+    public int getCurrentConnections() {
+        return currentConnections.get();
+    }
+
+    public long getTotalCreatedConnections() {
+        return totalCreatedConnections.sum();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * @return how often a channel stopped reading because a limit was reached
+     */
+    public long getPausedReads() {
+        return pausedReads.sum();
+    }
+
+    Document getConnectionStatus() {
+        int current = getCurrentConnections();
+        Document connections = new Document();
+        connections.put("current", Integer.valueOf(current));
+        connections.put("available", Integer.valueOf(maxConnections - current));
+        connections.put("totalCreated", Long.valueOf(getTotalCreatedConnections()));
+        connections.put("rejected", Long.valueOf(getRejectedConnections()));
+        connections.put("inFlightRequests", Integer.valueOf(getInFlightRequests()));
+        connections.put("pausedReads", Long.valueOf(getPausedReads()));
+        return connections;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(connections: " + getCurrentConnections()
+            + ", inFlightRequests: " + getInFlightRequests() + ")";
+    }
+
+}
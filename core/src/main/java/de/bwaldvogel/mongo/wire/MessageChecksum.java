@@ -0,0 +1,43 @@
+package de.bwaldvogel.mongo.wire;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Calculates the CRC-32C checksum of {@code OP_MSG} messages directly on the NIO buffers of a {@link ByteBuf}.
+ */
+final class MessageChecksum {
+
+    static final int LENGTH = 4;
+
+    private MessageChecksum() {
+    }
+
+    static int calculate(ByteBuf buffer, int index, int length) {
+        return update(new CRC32C(), buffer, index, length);
+    }
+
+    /**
+     * Calculates the checksum of a message whose length field was already consumed.
+     *
+     * @param messageLength the value of the length field, which is covered by the checksum
+     */
+    static int calculate(int messageLength, ByteBuf buffer, int index, int length) {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(messageLength);
+        crc32c.update(messageLength >>> 8);
+        crc32c.update(messageLength >>> 16);
+        crc32c.update(messageLength >>> 24);
+        return update(crc32c, buffer, index, length);
+    }
+
+    private static int update(CRC32C crc32c, ByteBuf buffer, int index, int length) {
+        for (ByteBuffer nioBuffer : buffer.nioBuffers(index, length)) {
+            crc32c.update(nioBuffer);
+        }
+        return (int) crc32c.getValue();
+    }
+
+}
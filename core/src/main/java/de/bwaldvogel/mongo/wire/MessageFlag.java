@@ -20,4 +20,8 @@ public enum MessageFlag {
         return flags - value;
     }
 
+    public int addTo(int flags) {
+        return flags | value;
+    }
+
 }
@@ -4,6 +4,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -11,15 +13,20 @@ import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.MongoBackend;
 import de.bwaldvogel.mongo.backend.QueryResult;
+import de.bwaldvogel.mongo.backend.ServerMetrics;
 import de.bwaldvogel.mongo.backend.Utils;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.exception.MongoServerError;
 import de.bwaldvogel.mongo.exception.MongoServerException;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
 import de.bwaldvogel.mongo.wire.message.ClientRequest;
 import de.bwaldvogel.mongo.wire.message.MessageHeader;
 import de.bwaldvogel.mongo.wire.message.MongoMessage;
 import de.bwaldvogel.mongo.wire.message.MongoQuery;
 import de.bwaldvogel.mongo.wire.message.MongoReply;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.group.ChannelGroup;
@@ -33,13 +40,63 @@ public class MongoDatabaseHandler extends SimpleChannelInboundHandler<ClientRequ
 
     private final ChannelGroup channelGroup;
 
+    private final Executor requestExecutor;
+
+    private final CompressionContext compressionContext;
+
+    private final AdmissionControl admissionControl;
+
+    private final ServerMetrics metrics;
+
+    // the requests of this channel that are handled or waiting to be handled
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    private volatile Runnable resumeReading;
+
+    private boolean admitted;
+
     public MongoDatabaseHandler(MongoBackend mongoBackend, ChannelGroup channelGroup) {
+        this(mongoBackend, channelGroup, null, null);
+    }
+
+    /**
+     * @param requestExecutor    executes the requests of the channel in order or {@code null} to execute them
+     *                           on the event loop
+     * @param compressionContext negotiates the compressors in the handshake or {@code null} to disable compression
+     */
+    public MongoDatabaseHandler(MongoBackend mongoBackend, ChannelGroup channelGroup, Executor requestExecutor,
+                                CompressionContext compressionContext) {
+        this(mongoBackend, channelGroup, requestExecutor, compressionContext, null);
+    }
+
+    /**
+     * @param requestExecutor    executes the requests of the channel in order or {@code null} to execute them
+     *                           on the event loop
+     * @param compressionContext negotiates the compressors in the handshake or {@code null} to disable compression
+     * @param admissionControl   limits the connections and in-flight requests or {@code null} for no limits
+     */
+    public MongoDatabaseHandler(MongoBackend mongoBackend, ChannelGroup channelGroup, Executor requestExecutor,
+                                CompressionContext compressionContext, AdmissionControl admissionControl) {
         this.channelGroup = channelGroup;
         this.mongoBackend = mongoBackend;
+        this.requestExecutor = requestExecutor;
+        this.compressionContext = compressionContext;
+        this.admissionControl = admissionControl;
+        this.metrics = mongoBackend.getMetrics();
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (admissionControl != null) {
+            if (!admissionControl.tryOpenConnection()) {
+                log.warn("rejecting client {}: too many open connections", ctx.channel());
+                ctx.close();
+                return;
+            }
+            Channel channel = ctx.channel();
+            resumeReading = () -> updateAutoRead(channel);
+        }
+        admitted = true;
         channelGroup.add(ctx.channel());
         log.info("client {} connected", ctx.channel());
         super.channelActive(ctx);
@@ -47,30 +104,211 @@ public class MongoDatabaseHandler extends SimpleChannelInboundHandler<ClientRequ
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (!admitted) {
+            super.channelInactive(ctx);
+            return;
+        }
         log.info("channel {} closed", ctx.channel());
+        if (admissionControl != null) {
+            admissionControl.unregisterPausedChannel(resumeReading);
+            admissionControl.connectionClosed();
+        }
         channelGroup.remove(ctx.channel());
-        mongoBackend.handleClose(ctx.channel());
+        if (requestExecutor != null) {
+            try {
+                // close after the pending requests of this channel
+                requestExecutor.execute(() -> mongoBackend.handleClose(ctx.channel()));
+            } catch (RejectedExecutionException e) {
+                mongoBackend.handleClose(ctx.channel());
+            }
+        } else {
+            mongoBackend.handleClose(ctx.channel());
+        }
         super.channelInactive(ctx);
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (admissionControl != null) {
+            // stop reading requests while the replies pile up in the write buffer
+            updateAutoRead(ctx.channel());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, ClientRequest object) {
+        if (metrics != null) {
+            metrics.countRequest();
+        }
+        requestStarted(ctx.channel());
+
+        if (requestExecutor == null) {
+            handleRequestAndFinish(ctx, object);
+            return;
+        }
+
+        try {
+            requestExecutor.execute(() -> {
+                try {
+                    handleRequestAndFinish(ctx, object);
+                } catch (RuntimeException e) {
+                    ctx.fireExceptionCaught(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            requestFinished(ctx.channel());
+            throw e;
+        }
+    }
+
+    private void handleRequestAndFinish(ChannelHandlerContext ctx, ClientRequest object) {
+        ChannelFuture replyFuture = null;
+        try {
+            replyFuture = handleRequest(ctx, object);
+        } finally {
+            // the request is finished when its reply was written
+            if (replyFuture == null) {
+                requestFinished(ctx.channel());
+            } else if (admissionControl != null) {
+                replyFuture.addListener(future -> requestFinished(ctx.channel()));
+            }
+        }
+    }
+
+    /**
+     * @return the future of the written reply or null if the request is not answered
+     */
+    private ChannelFuture handleRequest(ChannelHandlerContext ctx, ClientRequest object) {
+        // replies that are written from the request executor are passed to the event loop of the channel
         if (object instanceof MongoQuery mongoQuery) {
             MongoReply mongoReply = handleQuery(mongoQuery);
-            ctx.channel().writeAndFlush(mongoReply);
+            return ctx.channel().writeAndFlush(mongoReply);
         } else if (object instanceof MongoMessage mongoMessage) {
-            MongoMessage response = handleMessage(mongoMessage);
-            ctx.channel().writeAndFlush(response);
+            if (mongoMessage.isMoreToCome()) {
+                handleUnacknowledgedMessage(mongoMessage);
+                return null;
+            } else {
+                return writeResponse(ctx, mongoMessage, handleMessage(mongoMessage));
+            }
         } else {
             throw new MongoServerException("unknown message: " + object);
         }
     }
 
+    private void requestStarted(Channel channel) {
+        if (admissionControl == null) {
+            return;
+        }
+        admissionControl.requestStarted();
+        if (!admissionControl.canStartRequest(inFlightRequests.incrementAndGet())) {
+            updateAutoRead(channel);
+        }
+    }
+
+    private void requestFinished(Channel channel) {
+        if (admissionControl == null) {
+            return;
+        }
+        inFlightRequests.decrementAndGet();
+        admissionControl.requestFinished();
+        if (!channel.config().isAutoRead()) {
+            updateAutoRead(channel);
+        }
+    }
+
+    private void updateAutoRead(Channel channel) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(() -> updateAutoRead(channel));
+            return;
+        }
+
+        if (!channel.isActive()) {
+            admissionControl.unregisterPausedChannel(resumeReading);
+            return;
+        }
+
+        // register before checking the limits, such that a request that finishes in between is not missed
+        admissionControl.registerPausedChannel(resumeReading);
+        boolean read = channel.isWritable() && admissionControl.canStartRequest(inFlightRequests.get());
+        if (read || admissionControl.hasFreeRequestSlot()) {
+            // a channel that waits for its own requests or for its write buffer is resumed by these events
+            admissionControl.unregisterPausedChannel(resumeReading);
+        }
+
+        ChannelConfig config = channel.config();
+        if (config.isAutoRead() != read) {
+            if (!read) {
+                admissionControl.countPausedRead();
+                log.debug("stop reading from {}", channel);
+            }
+            config.setAutoRead(read);
+        }
+    }
+
+    private void handleUnacknowledgedMessage(MongoMessage message) {
+        // the client does not wait for a reply, so it is not even created
+        try {
+            mongoBackend.handleMessage(message);
+        } catch (RuntimeException e) {
+            log.error("failed to handle unacknowledged {}", message.getDocument(), e);
+        }
+    }
+
+    private ChannelFuture writeResponse(ChannelHandlerContext ctx, MongoMessage request, MongoMessage response) {
+        if (!isExhaustible(request, response)) {
+            return ctx.channel().writeAndFlush(response);
+        }
+
+        // exhaust cursor: the next batch is sent as soon as the current one was written,
+        // without waiting for the client to send another getMore
+        MongoMessage streamedResponse = new MongoMessage(response.getChannel(), response.getHeader(),
+            response.getDocument(), MessageFlag.MORE_TO_COME.addTo(response.getFlags()));
+        // the next reply responds to the previous reply
+        MongoMessage nextRequest = new MongoMessage(request.getChannel(),
+            new MessageHeader(response.getHeader().getRequestID(), 0), request.getDocument(), request.getFlags());
+
+        return ctx.channel().writeAndFlush(streamedResponse).addListener(future -> {
+            if (!future.isSuccess()) {
+                log.debug("Stopped to stream the exhaust cursor of {}", ctx.channel(), future.cause());
+                return;
+            }
+            // every batch counts as a request, such that an exhaust cursor is subject to the same limits
+            requestStarted(ctx.channel());
+            Executor executor = requestExecutor != null ? requestExecutor : ctx.channel().eventLoop();
+            try {
+                executor.execute(() -> {
+                    try {
+                        handleRequestAndFinish(ctx, nextRequest);
+                    } catch (RuntimeException e) {
+                        ctx.fireExceptionCaught(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                requestFinished(ctx.channel());
+                throw e;
+            }
+        });
+    }
+
+    private static boolean isExhaustible(MongoMessage request, MongoMessage response) {
+        if (!request.isExhaustAllowed() || !request.getDocument().containsKey("getMore")) {
+            return false;
+        }
+        Document document = response.getDocument();
+        if (!Utils.isTrue(document.get("ok")) || !(document.get("cursor") instanceof Document cursor)) {
+            return false;
+        }
+        return cursor.get("id") instanceof Number cursorId && cursorId.longValue() != 0;
+    }
+
     // visible for testing
     MongoMessage handleMessage(MongoMessage message) {
         Document document = null;
         try {
             document = mongoBackend.handleMessage(message);
+            negotiateCompression(message.getDocument(), document);
+            addConnectionStatus(message.getDocument(), document);
         } catch (MongoServerException e) {
             log.error("failed to handle {}", message.getDocument(), e);
             document = errorResponse(e, Collections.emptyMap());
@@ -100,6 +338,29 @@ public class MongoDatabaseHandler extends SimpleChannelInboundHandler<ClientRequ
             queryResult != null ? queryResult.getCursorId() : 0);
     }
 
+    private void negotiateCompression(Document query, Document response) {
+        if (compressionContext == null || response == null || !Utils.isTrue(response.get("ok"))) {
+            return;
+        }
+        String command = query.keySet().iterator().next();
+        if (!command.equalsIgnoreCase("ismaster") && !command.equals("hello")) {
+            return;
+        }
+        if (query.get("compression") instanceof Collection<?> requestedCompressors) {
+            response.put("compression", compressionContext.negotiate(requestedCompressors));
+        }
+    }
+
+    private void addConnectionStatus(Document query, Document response) {
+        if (admissionControl == null || response == null || !Utils.isTrue(response.get("ok"))) {
+            return;
+        }
+        String command = query.keySet().iterator().next();
+        if (command.equals("serverStatus")) {
+            response.put("connections", admissionControl.getConnectionStatus());
+        }
+    }
+
     private MessageHeader createResponseHeader(ClientRequest request) {
         return new MessageHeader(idSequence.incrementAndGet(), request.getHeader().getRequestID());
     }
@@ -130,7 +391,9 @@ public class MongoDatabaseHandler extends SimpleChannelInboundHandler<ClientRequ
 
             switch (command) {
                 case "serverStatus":
-                    return mongoBackend.getServerStatus();
+                    Document serverStatus = mongoBackend.getServerStatus();
+                    addConnectionStatus(query.getQuery(), serverStatus);
+                    return serverStatus;
 
                 case "ping":
                     Document response = new Document();
@@ -143,7 +406,10 @@ public class MongoDatabaseHandler extends SimpleChannelInboundHandler<ClientRequ
                         command = ((Document) query.getQuery().get("$query")).keySet().iterator().next();
                         actualQuery = (Document) actualQuery.get("$query");
                     }
-                    return mongoBackend.handleCommand(query.getChannel(), query.getDatabaseName(), command, actualQuery);
+                    Document commandResponse = mongoBackend.handleCommand(query.getChannel(), query.getDatabaseName(), command, actualQuery);
+                    negotiateCompression(actualQuery, commandResponse);
+                    addConnectionStatus(actualQuery, commandResponse);
+                    return commandResponse;
             }
         }
 
@@ -5,6 +5,9 @@ import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressor;
+import de.bwaldvogel.mongo.wire.compression.OpCompressed;
 import de.bwaldvogel.mongo.wire.message.MongoMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -14,15 +17,73 @@ public class MongoWireMessageEncoder extends MessageToByteEncoder<MongoMessage>
 
     private static final Logger log = LoggerFactory.getLogger(MongoWireMessageEncoder.class);
 
+    // header, flag bits and section kind
+    private static final int HEADER_LENGTH = 21;
+
+    private final CompressionContext compressionContext;
+    private final boolean writeChecksums;
+
+    public MongoWireMessageEncoder() {
+        this(null);
+    }
+
+    /**
+     * @param compressionContext the compression state of the channel or {@code null} to never compress
+     */
+    public MongoWireMessageEncoder(CompressionContext compressionContext) {
+        this(compressionContext, false);
+    }
+
+    /**
+     * @param compressionContext the compression state of the channel or {@code null} to never compress
+     * @param writeChecksums     whether a CRC-32C checksum is appended to every message
+     */
+    public MongoWireMessageEncoder(CompressionContext compressionContext, boolean writeChecksums) {
+        this.compressionContext = compressionContext;
+        this.writeChecksums = writeChecksums;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MongoMessage message, boolean preferDirect) throws Exception {
+        if (compressionContext != null && compressionContext.isCompressedReply(message.getHeader().getResponseTo())) {
+            return super.allocateBuffer(ctx, message, preferDirect);
+        }
+        return OutputBuffers.allocate(ctx.alloc(), calculateMessageSize(message));
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, MongoMessage message, ByteBuf buf) {
+        MessageCompressor compressor = null;
+        if (compressionContext != null) {
+            compressor = compressionContext.removeCompressorForReply(message.getHeader().getResponseTo());
+        }
+
+        if (compressor == null) {
+            encodeUncompressed(ctx, message, buf);
+            return;
+        }
+
+        ByteBuf uncompressed = OutputBuffers.allocate(ctx.alloc(), calculateMessageSize(message));
+        try {
+            encodeUncompressed(ctx, message, uncompressed);
+            OpCompressed.encode(uncompressed, compressor, buf);
+        } finally {
+            uncompressed.release();
+        }
+    }
+
+    private void encodeUncompressed(ChannelHandlerContext ctx, MongoMessage message, ByteBuf buf) {
         buf.writeIntLE(0); // write length later
 
         buf.writeIntLE(message.getHeader().getRequestID());
         buf.writeIntLE(message.getHeader().getResponseTo());
         buf.writeIntLE(OpCode.OP_MSG.getId());
 
-        buf.writeIntLE(message.getFlags());
+        int flags = message.getFlags();
+        if (writeChecksums) {
+            flags = MessageFlag.CHECKSUM_PRESENT.addTo(flags);
+        }
+        buf.writeIntLE(flags);
         buf.writeByte(MongoMessage.SECTION_KIND_BODY);
 
         Document document = message.getDocument();
@@ -38,6 +99,24 @@ public class MongoWireMessageEncoder extends MessageToByteEncoder<MongoMessage>
 
         // now set the length
         int writerIndex = buf.writerIndex();
-        buf.setIntLE(0, writerIndex);
+        if (writeChecksums) {
+            buf.setIntLE(0, writerIndex + MessageChecksum.LENGTH);
+            buf.writeIntLE(MessageChecksum.calculate(buf, 0, writerIndex));
+        } else {
+            buf.setIntLE(0, writerIndex);
+        }
+    }
+
+    /**
+     * @return the size of the uncompressed message or -1 if it cannot be encoded
+     */
+    private int calculateMessageSize(MongoMessage message) {
+        try {
+            int checksumLength = writeChecksums ? MessageChecksum.LENGTH : 0;
+            return HEADER_LENGTH + BsonEncoder.calculateEncodedSize(message.getDocument()) + checksumLength;
+        } catch (RuntimeException e) {
+            // let the encoding fail with the actual error
+            return -1;
+        }
     }
 }
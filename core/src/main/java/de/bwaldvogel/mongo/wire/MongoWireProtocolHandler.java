@@ -13,11 +13,16 @@ import org.slf4j.LoggerFactory;
 import de.bwaldvogel.mongo.backend.Assert;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.wire.bson.BsonDecoder;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressor;
+import de.bwaldvogel.mongo.wire.compression.OpCompressed;
 import de.bwaldvogel.mongo.wire.message.ClientRequest;
 import de.bwaldvogel.mongo.wire.message.MessageHeader;
 import de.bwaldvogel.mongo.wire.message.MongoMessage;
 import de.bwaldvogel.mongo.wire.message.MongoQuery;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
@@ -38,10 +43,32 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
     private static final int LENGTH_FIELD_LENGTH = 4;
     private static final int LENGTH_ADJUSTMENT = -LENGTH_FIELD_LENGTH;
     private static final int INITIAL_BYTES_TO_STRIP = 0;
-    private static final int CHECKSUM_LENGTH = 4;
+    private static final int CHECKSUM_LENGTH = MessageChecksum.LENGTH;
+
+    private final CompressionContext compressionContext;
+    private final boolean verifyChecksums;
 
     public MongoWireProtocolHandler() {
+        this(null);
+    }
+
+    /**
+     * @param compressionContext the compressors that were negotiated for the channel or {@code null} to reject
+     *                           compressed messages
+     */
+    public MongoWireProtocolHandler(CompressionContext compressionContext) {
+        this(compressionContext, false);
+    }
+
+    /**
+     * @param compressionContext the compressors that were negotiated for the channel or {@code null} to reject
+     *                           compressed messages
+     * @param verifyChecksums    whether the CRC-32C checksums of {@code OP_MSG} messages are verified or ignored
+     */
+    public MongoWireProtocolHandler(CompressionContext compressionContext, boolean verifyChecksums) {
         super(MAX_FRAME_LENGTH, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH, LENGTH_ADJUSTMENT, INITIAL_BYTES_TO_STRIP);
+        this.compressionContext = compressionContext;
+        this.verifyChecksums = verifyChecksums;
     }
 
     @Override
@@ -79,7 +106,19 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
 
         final Channel channel = ctx.channel();
         final ClientRequest request;
+        if (opCode == OpCode.OP_COMPRESSED) {
+            request = handleCompressedMessage(channel, header, in);
+        } else {
+            request = decodeRequest(channel, header, opCode, in);
+        }
+
+        log.debug("{}", request);
 
+        return request;
+    }
+
+    private ClientRequest decodeRequest(Channel channel, MessageHeader header, OpCode opCode, ByteBuf in) throws IOException {
+        final ClientRequest request;
         switch (opCode) {
             case OP_QUERY:
                 request = handleQuery(channel, header, in);
@@ -95,8 +134,50 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
             throw new IOException();
         }
 
-        log.debug("{}", request);
+        return request;
+    }
+
+    private ClientRequest handleCompressedMessage(Channel channel, MessageHeader header, ByteBuf buffer) throws IOException {
+        int originalOpCodeId = buffer.readIntLE();
+        int uncompressedSize = buffer.readIntLE();
+        byte compressorId = buffer.readByte();
 
+        OpCode originalOpCode = OpCode.getById(originalOpCodeId);
+        if (originalOpCode == null || originalOpCode == OpCode.OP_COMPRESSED) {
+            throw new IOException("opCode " + originalOpCodeId + " not supported");
+        }
+
+        if (uncompressedSize < 0 || uncompressedSize > MAX_MESSAGE_SIZE_BYTES) {
+            throw new IOException("message too large: " + uncompressedSize + " bytes");
+        }
+
+        MessageCompressor compressor = null;
+        if (compressionContext != null) {
+            compressor = compressionContext.getNegotiatedCompressor(compressorId);
+        }
+        if (compressor == null) {
+            throw new IOException("compressor " + compressorId + " was not negotiated");
+        }
+
+        byte[] uncompressed = compressor.decompress(ByteBufUtil.getBytes(buffer), uncompressedSize);
+        buffer.skipBytes(buffer.readableBytes());
+
+        // restore the header fields such that offsets are the same as in an uncompressed message
+        int headerLengthWithoutLength = OpCompressed.HEADER_LENGTH - LENGTH_FIELD_LENGTH;
+        ByteBuf uncompressedBuffer = Unpooled.buffer(headerLengthWithoutLength + uncompressedSize);
+        uncompressedBuffer.writeIntLE(header.getRequestID());
+        uncompressedBuffer.writeIntLE(header.getResponseTo());
+        uncompressedBuffer.writeIntLE(originalOpCodeId);
+        uncompressedBuffer.writeBytes(uncompressed);
+        uncompressedBuffer.readerIndex(headerLengthWithoutLength);
+
+        MessageHeader uncompressedHeader = new MessageHeader(OpCompressed.HEADER_LENGTH + uncompressedSize,
+            header.getRequestID(), header.getResponseTo());
+        ClientRequest request = decodeRequest(channel, uncompressedHeader, originalOpCode, uncompressedBuffer);
+        // there is no reply that could be compressed
+        if (!(request instanceof MongoMessage message && message.isMoreToCome())) {
+            compressionContext.registerCompressedRequest(header.getRequestID(), compressor);
+        }
         return request;
     }
 
@@ -133,7 +214,7 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
         return mongoQuery;
     }
 
-    private ClientRequest handleMessage(Channel channel, MessageHeader header, ByteBuf buffer) {
+    private ClientRequest handleMessage(Channel channel, MessageHeader header, ByteBuf buffer) throws IOException {
         int flagBits = buffer.readIntLE();
 
         Set<MessageFlag> flags = EnumSet.noneOf(MessageFlag.class);
@@ -142,6 +223,14 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
             flags.add(MessageFlag.CHECKSUM_PRESENT);
         }
 
+        int messageFlags = 0;
+        for (MessageFlag flag : List.of(MessageFlag.MORE_TO_COME, MessageFlag.EXHAUST_ALLOWED)) {
+            if (flag.isSet(flagBits)) {
+                flagBits = flag.removeFrom(flagBits);
+                messageFlags = flag.addTo(messageFlags);
+            }
+        }
+
         if (flagBits != 0) {
             throw new UnsupportedOperationException("flags=" + flagBits + " not yet supported");
         }
@@ -149,6 +238,9 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
         int expectedPayloadSize = header.getTotalLength() - LENGTH_FIELD_LENGTH;
         if (flags.contains(MessageFlag.CHECKSUM_PRESENT)) {
             expectedPayloadSize -= CHECKSUM_LENGTH;
+            if (verifyChecksums) {
+                verifyChecksum(header, buffer, expectedPayloadSize);
+            }
         }
 
         Document body = null;
@@ -170,7 +262,9 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
 
         if (flags.contains(MessageFlag.CHECKSUM_PRESENT)) {
             int checksum = buffer.readIntLE();
-            log.trace("Ignoring checksum {}", checksum);
+            if (!verifyChecksums) {
+                log.trace("Ignoring checksum {}", checksum);
+            }
         }
 
         Assert.notNull(body);
@@ -179,7 +273,17 @@ public class MongoWireProtocolHandler extends LengthFieldBasedFrameDecoder {
             Assert.isNull(old);
         }
 
-        return new MongoMessage(channel, header, body);
+        return new MongoMessage(channel, header, body, messageFlags);
+    }
+
+    // the buffer starts after the length field of the message
+    private static void verifyChecksum(MessageHeader header, ByteBuf buffer, int checksumIndex) throws IOException {
+        int expectedChecksum = buffer.getIntLE(checksumIndex);
+        int actualChecksum = MessageChecksum.calculate(header.getTotalLength(), buffer, 0, checksumIndex);
+        if (actualChecksum != expectedChecksum) {
+            throw new IOException("checksum mismatch in message " + header.getRequestID() + ": expected 0x"
+                + Integer.toHexString(expectedChecksum) + " but was 0x" + Integer.toHexString(actualChecksum));
+        }
     }
 
     private void decodeKindDocumentSequence(ByteBuf buffer, Document documentSequence) {
@@ -7,6 +7,9 @@ import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressor;
+import de.bwaldvogel.mongo.wire.compression.OpCompressed;
 import de.bwaldvogel.mongo.wire.message.MongoReply;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
@@ -16,8 +19,52 @@ public class MongoWireReplyEncoder extends MessageToByteEncoder<MongoReply> {
 
     private static final Logger log = LoggerFactory.getLogger(MongoWireReplyEncoder.class);
 
+    // header, flags, cursor id, starting from and number returned
+    private static final int HEADER_LENGTH = 36;
+
+    private final CompressionContext compressionContext;
+
+    public MongoWireReplyEncoder() {
+        this(null);
+    }
+
+    /**
+     * @param compressionContext the compression state of the channel or {@code null} to never compress
+     */
+    public MongoWireReplyEncoder(CompressionContext compressionContext) {
+        this.compressionContext = compressionContext;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MongoReply reply, boolean preferDirect) throws Exception {
+        if (compressionContext != null && compressionContext.isCompressedReply(reply.getHeader().getResponseTo())) {
+            return super.allocateBuffer(ctx, reply, preferDirect);
+        }
+        return OutputBuffers.allocate(ctx.alloc(), calculateMessageSize(reply));
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, MongoReply reply, ByteBuf buf) {
+        MessageCompressor compressor = null;
+        if (compressionContext != null) {
+            compressor = compressionContext.removeCompressorForReply(reply.getHeader().getResponseTo());
+        }
+
+        if (compressor == null) {
+            encodeUncompressed(ctx, reply, buf);
+            return;
+        }
+
+        ByteBuf uncompressed = OutputBuffers.allocate(ctx.alloc(), calculateMessageSize(reply));
+        try {
+            encodeUncompressed(ctx, reply, uncompressed);
+            OpCompressed.encode(uncompressed, compressor, buf);
+        } finally {
+            uncompressed.release();
+        }
+    }
+
+    private void encodeUncompressed(ChannelHandlerContext ctx, MongoReply reply, ByteBuf buf) {
         buf.writeIntLE(0); // write length later
 
         buf.writeIntLE(reply.getHeader().getRequestID());
@@ -46,4 +93,20 @@ public class MongoWireReplyEncoder extends MessageToByteEncoder<MongoReply> {
         final int writerIndex = buf.writerIndex();
         buf.setIntLE(0, writerIndex);
     }
+
+    /**
+     * @return the size of the uncompressed message or -1 if it cannot be encoded
+     */
+    private static int calculateMessageSize(MongoReply reply) {
+        try {
+            int size = HEADER_LENGTH;
+            for (Document document : reply.getDocuments()) {
+                size += BsonEncoder.calculateEncodedSize(document);
+            }
+            return size;
+        } catch (RuntimeException e) {
+            // let the encoding fail with the actual error
+            return -1;
+        }
+    }
 }
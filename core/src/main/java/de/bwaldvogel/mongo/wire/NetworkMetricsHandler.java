@@ -0,0 +1,42 @@
+package de.bwaldvogel.mongo.wire;
+
+import java.util.Objects;
+
+import de.bwaldvogel.mongo.backend.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Counts the bytes that are received from and written to the clients. The handler is shared by all channels of
+ * a server and is placed in front of the message decoder and encoders, such that it sees the (possibly
+ * compressed) messages but not the TLS records.
+ */
+@Sharable
+public class NetworkMetricsHandler extends ChannelDuplexHandler {
+
+    private final ServerMetrics metrics;
+
+    public NetworkMetricsHandler(ServerMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf buffer) {
+            metrics.countBytesIn(buffer.readableBytes());
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf buffer) {
+            metrics.countBytesOut(buffer.readableBytes());
+        }
+        super.write(ctx, msg, promise);
+    }
+
+}
@@ -25,6 +25,8 @@ public enum OpCode {
     @Deprecated(/* no longer supported */)
     OP_KILL_CURSORS(2007), // Tell database client is done with a cursor
 
+    OP_COMPRESSED(2012), // Wraps other opcodes using compression
+
     OP_MSG(2013); // Send a message using the format introduced in MongoDB 3.6
 
     private final int id;
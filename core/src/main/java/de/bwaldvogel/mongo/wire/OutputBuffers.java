@@ -0,0 +1,40 @@
+package de.bwaldvogel.mongo.wire;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+/**
+ * Allocates the output buffers of the encoders with the size of the encoded message up front,
+ * such that large replies are not copied over and over again while the buffer grows.
+ */
+final class OutputBuffers {
+
+    // larger messages are written into a composite of pooled chunks instead of a single contiguous buffer
+    static final int COMPOSITE_THRESHOLD = 4 * 1024 * 1024;
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    private OutputBuffers() {
+    }
+
+    /**
+     * @param size the expected number of bytes or -1 if it is unknown
+     */
+    static ByteBuf allocate(ByteBufAllocator allocator, int size) {
+        if (size < 0) {
+            return allocator.ioBuffer();
+        }
+        if (size <= COMPOSITE_THRESHOLD) {
+            return allocator.ioBuffer(size);
+        }
+        CompositeByteBuf buffer = allocator.compositeBuffer(Integer.MAX_VALUE);
+        for (int remaining = size; remaining > 0; remaining -= CHUNK_SIZE) {
+            int length = Math.min(remaining, CHUNK_SIZE);
+            // the chunk counts towards the capacity of the composite buffer only with its readable bytes
+            ByteBuf chunk = allocator.ioBuffer(length, length).writerIndex(length);
+            buffer.addComponent(false, chunk);
+        }
+        return buffer;
+    }
+
+}
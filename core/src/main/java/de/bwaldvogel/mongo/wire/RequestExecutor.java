@@ -0,0 +1,125 @@
+package de.bwaldvogel.mongo.wire;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches client requests to an {@link Executor}, such that a slow request does not block the
+ * Netty event loop that is shared by many channels.
+ * <p>
+ * Every channel obtains its own {@link #newChannelExecutor() channel executor}. The requests of a
+ * channel are executed one after another in the order they were received, while requests of
+ * different channels can be executed concurrently.
+ */
+public class RequestExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestExecutor.class);
+
+    private final Executor executor;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final LongAdder completedRequests = new LongAdder();
+
+    public RequestExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    public Executor newChannelExecutor() {
+        return new ChannelExecutor();
+    }
+
+    /**
+     * @return the number of requests that were received but not yet started
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the highest number of requests that were waiting at the same time
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of requests that are currently executed
+     */
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    public long getCompletedRequests() {
+        return completedRequests.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(queueDepth: " + getQueueDepth() + ", active: " + getActiveRequests() + ")";
+    }
+
+    private final class ChannelExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        @Override
+        public void execute(Runnable task) {
+            int depth = queueDepth.incrementAndGet();
+            maxQueueDepth.accumulateAndGet(depth, Math::max);
+            tasks.add(task);
+            try {
+                schedule();
+            } catch (RuntimeException e) {
+                if (tasks.remove(task)) {
+                    queueDepth.decrementAndGet();
+                }
+                throw e;
+            }
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::runNextTask);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        private void runNextTask() {
+            try {
+                Runnable task = tasks.poll();
+                if (task != null) {
+                    queueDepth.decrementAndGet();
+                    activeRequests.incrementAndGet();
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Failed to execute request", e);
+                    } finally {
+                        activeRequests.decrementAndGet();
+                        completedRequests.increment();
+                    }
+                }
+            } finally {
+                // run one task at a time to be fair to the other channels
+                scheduled.set(false);
+                schedule();
+            }
+        }
+    }
+
+}
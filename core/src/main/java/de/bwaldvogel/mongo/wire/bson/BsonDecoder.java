@@ -3,7 +3,10 @@ package de.bwaldvogel.mongo.wire.bson;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import de.bwaldvogel.mongo.backend.Assert;
@@ -19,47 +22,66 @@ import de.bwaldvogel.mongo.bson.MinKey;
 import de.bwaldvogel.mongo.bson.ObjectId;
 import de.bwaldvogel.mongo.wire.BsonConstants;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
 public final class BsonDecoder {
 
     private BsonDecoder() {
     }
 
+    /**
+     * Decodes the BSON document at the current reader index of the buffer.
+     * <p>
+     * The document is validated and its encoded bytes are copied once into a byte array.
+     * The returned document is {@linkplain Document#fromRawBson(byte[], int) lazily materialized}
+     * from this array, such that fields that are never read are never decoded.
+     */
     public static Document decodeBson(ByteBuf buffer) {
-        final int totalObjectLength = buffer.readIntLE();
-        final int length = totalObjectLength - 4;
-        if (buffer.readableBytes() < length) {
-            throw new IllegalArgumentException("Too few bytes to read: " + buffer.readableBytes() + ". Expected: " + length);
-        }
-        if (length > BsonConstants.MAX_BSON_OBJECT_SIZE) {
-            throw new IllegalArgumentException("BSON object too large: " + length + " bytes");
-        }
-
-        Document document = new Document();
         int start = buffer.readerIndex();
-        while (buffer.readerIndex() - start < length) {
+        skipDocument(buffer, false);
+        int totalObjectLength = buffer.readerIndex() - start;
+        byte[] bson = ByteBufUtil.getBytes(buffer, start, totalObjectLength);
+        return Document.fromRawBson(bson, 0);
+    }
+
+    /**
+     * Decodes the fields of the (already validated) BSON document that starts at the given offset.
+     * Embedded documents are not decoded but reference the same byte array.
+     */
+    public static void decodeFields(byte[] bson, int offset, Map<String, Object> target) {
+        ByteBuf buffer = Unpooled.wrappedBuffer(bson);
+        buffer.readerIndex(offset + 4);
+        while (true) {
             byte type = buffer.readByte();
             if (type == BsonConstants.TERMINATING_BYTE) {
-                return document;
+                return;
             }
             String name = decodeCString(buffer);
-            Object value = decodeValue(type, buffer);
-            Object existingValue = document.put(name, value);
+            Object value = decodeValue(type, buffer, bson);
+            Object existingValue = target.put(name, value);
             Assert.isNull(existingValue, () -> "Document already contains field '" + name + "'");
         }
-        throw new IllegalArgumentException("illegal BSON object. Terminating byte not found. totalObjectLength = " + totalObjectLength);
     }
 
     public static Object decodeValue(byte type, ByteBuf buffer) {
+        return decodeValue(type, buffer, null);
+    }
+
+    /**
+     * @param source the byte array that backs the buffer at index zero or {@code null}
+     *               if embedded documents need to be copied
+     */
+    private static Object decodeValue(byte type, ByteBuf buffer, byte[] source) {
         switch (type) {
             case BsonConstants.TYPE_DOUBLE:
                 return Double.valueOf(Double.longBitsToDouble(buffer.readLongLE()));
             case BsonConstants.TYPE_UTF8_STRING:
                 return decodeString(buffer);
             case BsonConstants.TYPE_EMBEDDED_DOCUMENT:
-                return decodeBson(buffer);
+                return decodeEmbeddedDocument(buffer, source);
             case BsonConstants.TYPE_ARRAY:
-                return decodeArray(buffer);
+                return decodeArray(buffer, source);
             case BsonConstants.TYPE_DATA:
                 return decodeBinary(buffer);
             case BsonConstants.TYPE_UNDEFINED:
@@ -100,13 +122,28 @@ public final class BsonDecoder {
         return new BsonRegularExpression(regex, options);
     }
 
-    private static List<Object> decodeArray(ByteBuf buffer) {
+    private static Document decodeEmbeddedDocument(ByteBuf buffer, byte[] source) {
+        if (source == null) {
+            return decodeBson(buffer);
+        }
+        int offset = buffer.readerIndex();
+        buffer.skipBytes(buffer.getIntLE(offset));
+        return Document.fromRawBson(source, offset);
+    }
+
+    private static List<Object> decodeArray(ByteBuf buffer, byte[] source) {
         List<Object> array = new ArrayList<>();
-        Document arrayObject = decodeBson(buffer);
-        for (String key : arrayObject.keySet()) {
-            array.add(arrayObject.get(key));
+        int start = buffer.readerIndex();
+        int totalObjectLength = buffer.readIntLE();
+        while (buffer.readerIndex() - start < totalObjectLength) {
+            byte type = buffer.readByte();
+            if (type == BsonConstants.TERMINATING_BYTE) {
+                return array;
+            }
+            skipCString(buffer);
+            array.add(decodeValue(type, buffer, source));
         }
-        return array;
+        throw new IllegalArgumentException("illegal BSON array. Terminating byte not found. totalObjectLength = " + totalObjectLength);
     }
 
     private static ObjectId decodeObjectId(ByteBuf buffer) {
@@ -117,9 +154,8 @@ public final class BsonDecoder {
 
     private static String decodeString(ByteBuf buffer) {
         int length = buffer.readIntLE();
-        byte[] data = new byte[length - 1];
-        buffer.readBytes(data);
-        String value = new String(data, StandardCharsets.UTF_8);
+        String value = buffer.toString(buffer.readerIndex(), length - 1, StandardCharsets.UTF_8);
+        buffer.skipBytes(length - 1);
         byte trail = buffer.readByte();
         if (trail != BsonConstants.STRING_TERMINATION) {
             throw new IllegalArgumentException("Unexpected trailing byte: " + trail);
@@ -165,6 +201,135 @@ public final class BsonDecoder {
         }
     }
 
+    private static void skipCString(ByteBuf buffer) {
+        int length = buffer.bytesBefore(BsonConstants.STRING_TERMINATION);
+        if (length < 0)
+            throw new IllegalArgumentException("string termination not found");
+        buffer.skipBytes(length + 1);
+    }
+
+    private static void skipString(ByteBuf buffer) {
+        int length = buffer.readIntLE();
+        if (length <= 0) {
+            throw new IllegalArgumentException("Illegal string length: " + length);
+        }
+        buffer.skipBytes(length - 1);
+        byte trail = buffer.readByte();
+        if (trail != BsonConstants.STRING_TERMINATION) {
+            throw new IllegalArgumentException("Unexpected trailing byte: " + trail);
+        }
+    }
+
+    /**
+     * Walks over the document without decoding it and fails if it is not well-formed or contains a field twice,
+     * such that a lazily decoded document cannot fail later on.
+     */
+    private static void skipDocument(ByteBuf buffer, boolean array) {
+        int start = buffer.readerIndex();
+        final int totalObjectLength = buffer.readIntLE();
+        final int length = totalObjectLength - 4;
+        if (buffer.readableBytes() < length) {
+            throw new IllegalArgumentException("Too few bytes to read: " + buffer.readableBytes() + ". Expected: " + length);
+        }
+        if (length > BsonConstants.MAX_BSON_OBJECT_SIZE) {
+            throw new IllegalArgumentException("BSON object too large: " + length + " bytes");
+        }
+
+        Set<String> fieldNames = null;
+        while (buffer.readerIndex() - start < totalObjectLength) {
+            byte type = buffer.readByte();
+            if (type == BsonConstants.TERMINATING_BYTE) {
+                if (buffer.readerIndex() - start != totalObjectLength) {
+                    throw new IllegalArgumentException("illegal BSON object. Terminating byte found at "
+                        + (buffer.readerIndex() - start) + " but totalObjectLength = " + totalObjectLength);
+                }
+                return;
+            }
+            if (array) {
+                skipCString(buffer);
+            } else {
+                String name = decodeCString(buffer);
+                if (fieldNames == null) {
+                    fieldNames = new HashSet<>();
+                }
+                if (!fieldNames.add(name)) {
+                    throw new IllegalArgumentException("Document already contains field '" + name + "'");
+                }
+            }
+            skipValue(type, buffer);
+        }
+        throw new IllegalArgumentException("illegal BSON object. Terminating byte not found. totalObjectLength = " + totalObjectLength);
+    }
+
+    private static void skipValue(byte type, ByteBuf buffer) {
+        switch (type) {
+            case BsonConstants.TYPE_DOUBLE:
+            case BsonConstants.TYPE_UTC_DATETIME:
+            case BsonConstants.TYPE_TIMESTAMP:
+            case BsonConstants.TYPE_INT64:
+                buffer.skipBytes(8);
+                break;
+            case BsonConstants.TYPE_UTF8_STRING:
+            case BsonConstants.TYPE_JAVASCRIPT_CODE:
+                skipString(buffer);
+                break;
+            case BsonConstants.TYPE_EMBEDDED_DOCUMENT:
+                skipDocument(buffer, false);
+                break;
+            case BsonConstants.TYPE_ARRAY:
+                skipDocument(buffer, true);
+                break;
+            case BsonConstants.TYPE_DATA:
+                skipBinary(buffer);
+                break;
+            case BsonConstants.TYPE_UNDEFINED:
+            case BsonConstants.TYPE_NULL:
+            case BsonConstants.TYPE_MAX_KEY:
+            case BsonConstants.TYPE_MIN_KEY:
+                break;
+            case BsonConstants.TYPE_OBJECT_ID:
+                buffer.skipBytes(BsonConstants.LENGTH_OBJECTID);
+                break;
+            case BsonConstants.TYPE_BOOLEAN:
+                decodeBoolean(buffer);
+                break;
+            case BsonConstants.TYPE_REGEX:
+                skipCString(buffer);
+                skipCString(buffer);
+                break;
+            case BsonConstants.TYPE_INT32:
+                buffer.skipBytes(4);
+                break;
+            case BsonConstants.TYPE_DECIMAL128:
+                buffer.skipBytes(16);
+                break;
+            case BsonConstants.TYPE_JAVASCRIPT_CODE_WITH_SCOPE:
+                throw new IllegalArgumentException("unhandled type: 0x" + Integer.toHexString(type));
+            default:
+                throw new IllegalArgumentException("unknown type: 0x" + Integer.toHexString(type));
+        }
+    }
+
+    private static void skipBinary(ByteBuf buffer) {
+        int length = buffer.readIntLE();
+        int subtype = buffer.readByte();
+        switch (subtype) {
+            case BsonConstants.BINARY_SUBTYPE_GENERIC:
+            case BsonConstants.BINARY_SUBTYPE_USER_DEFINED:
+                buffer.skipBytes(length);
+                break;
+            case BsonConstants.BINARY_SUBTYPE_OLD_UUID:
+            case BsonConstants.BINARY_SUBTYPE_UUID:
+                if (length != BsonConstants.LENGTH_UUID) {
+                    throw new IllegalArgumentException("Illegal length: " + length);
+                }
+                buffer.skipBytes(length);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown subtype: " + subtype);
+        }
+    }
+
     private static Object decodeBoolean(ByteBuf buffer) {
         byte value = buffer.readByte();
         switch (value) {
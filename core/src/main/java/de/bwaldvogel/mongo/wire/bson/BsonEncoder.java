@@ -2,9 +2,8 @@ package de.bwaldvogel.mongo.wire.bson;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -21,45 +20,85 @@ import de.bwaldvogel.mongo.bson.MinKey;
 import de.bwaldvogel.mongo.bson.ObjectId;
 import de.bwaldvogel.mongo.wire.BsonConstants;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 public class BsonEncoder {
 
+    // the encoded keys of the first array elements, including the terminating byte
+    private static final byte[][] ARRAY_INDEX_KEYS = createArrayIndexKeys(1000);
+
     private BsonEncoder() {
     }
 
     public static void encodeDocument(Map<String, ?> document, ByteBuf out) {
+        if (document instanceof Document lazyDocument && lazyDocument.writeRawBson(out)) {
+            return;
+        }
         int indexBefore = out.writerIndex();
         out.writeIntLE(0); // total number of bytes will be written later
 
-        for (String key : document.keySet()) {
-            encodeValue(key, document.get(key), out);
+        for (Map.Entry<String, ?> entry : document.entrySet()) {
+            Object value = entry.getValue();
+            byte type = determineType(value);
+            out.writeByte(type);
+            encodeCString(entry.getKey(), out);
+            encodeValue(type, value, out);
         }
 
         out.writeByte(BsonConstants.TERMINATING_BYTE);
-        int indexAfter = out.writerIndex();
-        out.writerIndex(indexBefore);
-        out.writeIntLE(indexAfter - indexBefore);
-        out.writerIndex(indexAfter);
+        out.setIntLE(indexBefore, out.writerIndex() - indexBefore);
+    }
+
+    private static void encodeArray(Collection<?> array, ByteBuf out) {
+        int indexBefore = out.writerIndex();
+        out.writeIntLE(0); // total number of bytes will be written later
+
+        int index = 0;
+        for (Object value : array) {
+            byte type = determineType(value);
+            out.writeByte(type);
+            encodeArrayIndex(index++, out);
+            encodeValue(type, value, out);
+        }
+
+        out.writeByte(BsonConstants.TERMINATING_BYTE);
+        out.setIntLE(indexBefore, out.writerIndex() - indexBefore);
+    }
+
+    private static void encodeArrayIndex(int index, ByteBuf out) {
+        if (index < ARRAY_INDEX_KEYS.length) {
+            out.writeBytes(ARRAY_INDEX_KEYS[index]);
+        } else {
+            ByteBufUtil.writeAscii(out, Integer.toString(index));
+            out.writeByte(BsonConstants.STRING_TERMINATION);
+        }
+    }
+
+    private static byte[][] createArrayIndexKeys(int size) {
+        byte[][] keys = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            byte[] digits = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+            keys[i] = Arrays.copyOf(digits, digits.length + 1);
+        }
+        return keys;
     }
 
     private static void encodeCString(String data, ByteBuf buffer) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
-        buffer.writeBytes(bytes);
+        writeUtf8(data, ByteBufUtil.utf8Bytes(data), buffer);
         buffer.writeByte(BsonConstants.STRING_TERMINATION);
     }
 
     private static void encodeString(String data, ByteBuf buffer) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
-        buffer.writeIntLE(bytes.length + 1);
-        buffer.writeBytes(bytes);
+        int length = ByteBufUtil.utf8Bytes(data);
+        buffer.writeIntLE(length + 1);
+        writeUtf8(data, length, buffer);
         buffer.writeByte(BsonConstants.STRING_TERMINATION);
     }
 
-    private static void encodeValue(String key, Object value, ByteBuf buffer) {
-        byte type = determineType(value);
-        buffer.writeByte(type);
-        encodeCString(key, buffer);
-        encodeValue(type, value, buffer);
+    private static void writeUtf8(String data, int length, ByteBuf buffer) {
+        // reserve the exact length; ByteBufUtil.writeUtf8 would reserve three bytes per character
+        // and grow a buffer that was allocated with the size of the encoded message
+        ByteBufUtil.reserveAndWriteUtf8(buffer, data, length);
     }
 
     public static void encodeValue(byte type, Object value, ByteBuf buffer) {
@@ -76,12 +115,7 @@ public class BsonEncoder {
                 encodeDocument(valueAsMap, buffer);
                 break;
             case BsonConstants.TYPE_ARRAY:
-                Document document = new Document();
-                List<?> array = collectionToList(value);
-                for (int i = 0; i < array.size(); i++) {
-                    document.put(String.valueOf(i), array.get(i));
-                }
-                encodeDocument(document, buffer);
+                encodeArray((Collection<?>) value, buffer);
                 break;
             case BsonConstants.TYPE_DATA:
                 if (value instanceof BinData) {
@@ -163,6 +197,160 @@ public class BsonEncoder {
         }
     }
 
+    /**
+     * Calculates the number of bytes that {@link #encodeDocument(Map, ByteBuf)} writes, without encoding the document.
+     */
+    public static int calculateEncodedSize(Map<String, ?> document) {
+        if (document instanceof Document lazyDocument) {
+            int rawBsonSize = lazyDocument.getRawBsonSize();
+            if (rawBsonSize >= 0) {
+                return rawBsonSize;
+            }
+        }
+        int size = 4 + 1; // length and terminating byte
+        for (Map.Entry<String, ?> entry : document.entrySet()) {
+            size += calculateEncodedElementSize(entry.getKey(), entry.getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Calculates by how many bytes the encoded size of the new document differs from the one of the old document.
+     * <p>
+     * Values that are shared by both documents cancel out without being measured, and embedded documents that differ
+     * are compared recursively. If the new document was derived from the old one by copying the modified paths only,
+     * only these paths are measured.
+     */
+    public static int calculateEncodedSizeDifference(Map<String, ?> oldDocument, Map<String, ?> newDocument) {
+        if (oldDocument == newDocument) {
+            return 0;
+        }
+        if (isRawBson(oldDocument) || isRawBson(newDocument)) {
+            // the size of a document that was not materialized yet is known without decoding it
+            return calculateEncodedSize(newDocument) - calculateEncodedSize(oldDocument);
+        }
+        int difference = 0;
+        for (Map.Entry<String, ?> entry : newDocument.entrySet()) {
+            String key = entry.getKey();
+            Object newValue = entry.getValue();
+            if (oldDocument.containsKey(key)) {
+                difference += calculateEncodedSizeDifference(oldDocument.get(key), newValue);
+            } else {
+                difference += calculateEncodedElementSize(key, newValue);
+            }
+        }
+        for (Map.Entry<String, ?> entry : oldDocument.entrySet()) {
+            if (!newDocument.containsKey(entry.getKey())) {
+                difference -= calculateEncodedElementSize(entry.getKey(), entry.getValue());
+            }
+        }
+        return difference;
+    }
+
+    private static int calculateEncodedSizeDifference(Object oldValue, Object newValue) {
+        if (oldValue == newValue) {
+            return 0;
+        }
+        byte oldType = determineType(oldValue);
+        byte newType = determineType(newValue);
+        if (oldType == BsonConstants.TYPE_EMBEDDED_DOCUMENT && newType == BsonConstants.TYPE_EMBEDDED_DOCUMENT) {
+            @SuppressWarnings("unchecked")
+            Map<String, ?> oldDocument = (Map<String, ?>) oldValue;
+            @SuppressWarnings("unchecked")
+            Map<String, ?> newDocument = (Map<String, ?>) newValue;
+            return calculateEncodedSizeDifference(oldDocument, newDocument);
+        }
+        return calculateEncodedSize(newType, newValue) - calculateEncodedSize(oldType, oldValue);
+    }
+
+    /**
+     * Calculates the number of bytes of the encoded value, without its type and field name.
+     */
+    public static int calculateEncodedValueSize(Object value) {
+        return calculateEncodedSize(determineType(value), value);
+    }
+
+    private static boolean isRawBson(Map<String, ?> document) {
+        return document instanceof Document lazyDocument && !lazyDocument.isMaterialized();
+    }
+
+    private static int calculateEncodedElementSize(String key, Object value) {
+        return 1 + ByteBufUtil.utf8Bytes(key) + 1 + calculateEncodedSize(determineType(value), value);
+    }
+
+    private static int calculateEncodedArraySize(Collection<?> array) {
+        int size = 4 + 1; // length and terminating byte
+        int index = 0;
+        for (Object value : array) {
+            byte type = determineType(value);
+            size += 1 + arrayIndexLength(index++) + calculateEncodedSize(type, value);
+        }
+        return size;
+    }
+
+    private static int arrayIndexLength(int index) {
+        if (index < ARRAY_INDEX_KEYS.length) {
+            return ARRAY_INDEX_KEYS[index].length;
+        }
+        int digits = 1;
+        for (int value = index; value >= 10; value /= 10) {
+            digits++;
+        }
+        return digits + 1;
+    }
+
+    private static int calculateEncodedStringSize(String data) {
+        return 4 + ByteBufUtil.utf8Bytes(data) + 1;
+    }
+
+    private static int calculateEncodedSize(byte type, Object value) {
+        switch (type) {
+            case BsonConstants.TYPE_DOUBLE:
+            case BsonConstants.TYPE_UTC_DATETIME:
+            case BsonConstants.TYPE_TIMESTAMP:
+            case BsonConstants.TYPE_INT64:
+                return 8;
+            case BsonConstants.TYPE_UTF8_STRING:
+                return calculateEncodedStringSize(value.toString());
+            case BsonConstants.TYPE_EMBEDDED_DOCUMENT:
+                @SuppressWarnings("unchecked")
+                Map<String, ?> valueAsMap = (Map<String, ?>) value;
+                return calculateEncodedSize(valueAsMap);
+            case BsonConstants.TYPE_ARRAY:
+                return calculateEncodedArraySize((Collection<?>) value);
+            case BsonConstants.TYPE_DATA:
+                if (value instanceof BinData) {
+                    return 4 + 1 + ((BinData) value).getData().length;
+                } else if (value instanceof UUID || value instanceof LegacyUUID) {
+                    return 4 + 1 + BsonConstants.LENGTH_UUID;
+                } else {
+                    throw new IllegalArgumentException("Unknown data: " + value.getClass());
+                }
+            case BsonConstants.TYPE_OBJECT_ID:
+                return BsonConstants.LENGTH_OBJECTID;
+            case BsonConstants.TYPE_BOOLEAN:
+                return 1;
+            case BsonConstants.TYPE_REGEX:
+                BsonRegularExpression pattern = (BsonRegularExpression) value;
+                return ByteBufUtil.utf8Bytes(pattern.getPattern()) + 1 + ByteBufUtil.utf8Bytes(pattern.getOptions()) + 1;
+            case BsonConstants.TYPE_INT32:
+                return 4;
+            case BsonConstants.TYPE_DECIMAL128:
+                return 16;
+            case BsonConstants.TYPE_MAX_KEY:
+            case BsonConstants.TYPE_MIN_KEY:
+            case BsonConstants.TYPE_UNDEFINED:
+            case BsonConstants.TYPE_NULL:
+                return 0;
+            case BsonConstants.TYPE_JAVASCRIPT_CODE:
+                return calculateEncodedStringSize(((BsonJavaScript) value).getCode());
+            case BsonConstants.TYPE_JAVASCRIPT_CODE_WITH_SCOPE:
+                throw new IllegalArgumentException("unhandled type: " + value.getClass());
+            default:
+                throw new IllegalArgumentException("unknown type: " + value.getClass());
+        }
+    }
+
     public static byte determineType(Object value) {
         if (value == null) {
             return BsonConstants.TYPE_NULL;
@@ -205,12 +393,4 @@ public class BsonEncoder {
         }
     }
 
-    private static List<?> collectionToList(Object value) {
-        if (value instanceof List<?>) {
-            return (List<?>) value;
-        } else {
-            return new ArrayList<>((Collection<?>) value);
-        }
-    }
-
 }
@@ -0,0 +1,71 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The compression state of a single channel. It negotiates the compressors in the handshake and remembers the
+ * compressor of every compressed request, such that the reply is compressed the same way.
+ */
+public class CompressionContext {
+
+    private final List<MessageCompressor> enabledCompressors;
+    private final Map<Integer, MessageCompressor> compressedRequests = new ConcurrentHashMap<>();
+    private volatile List<MessageCompressor> negotiatedCompressors = List.of();
+
+    public CompressionContext(List<MessageCompressor> enabledCompressors) {
+        this.enabledCompressors = List.copyOf(enabledCompressors);
+    }
+
+    /**
+     * @param requestedCompressors the names of the compressors that the client requested in the handshake
+     * @return the names of the enabled compressors in the order of the client's preference
+     */
+    public List<String> negotiate(Collection<?> requestedCompressors) {
+        List<MessageCompressor> compressors = new ArrayList<>();
+        for (Object requestedCompressor : requestedCompressors) {
+            for (MessageCompressor compressor : enabledCompressors) {
+                if (compressor.getName().equals(requestedCompressor) && !compressors.contains(compressor)) {
+                    compressors.add(compressor);
+                }
+            }
+        }
+        negotiatedCompressors = List.copyOf(compressors);
+        List<String> compressorNames = new ArrayList<>();
+        for (MessageCompressor compressor : compressors) {
+            compressorNames.add(compressor.getName());
+        }
+        return compressorNames;
+    }
+
+    /**
+     * @return the compressor with the given id or {@code null} if it was not negotiated in the handshake
+     */
+    public MessageCompressor getNegotiatedCompressor(byte compressorId) {
+        for (MessageCompressor compressor : negotiatedCompressors) {
+            if (compressor.getId() == compressorId) {
+                return compressor;
+            }
+        }
+        return null;
+    }
+
+    public void registerCompressedRequest(int requestId, MessageCompressor compressor) {
+        compressedRequests.put(Integer.valueOf(requestId), compressor);
+    }
+
+    public boolean isCompressedReply(int responseTo) {
+        return compressedRequests.containsKey(Integer.valueOf(responseTo));
+    }
+
+    /**
+     * @return the compressor of the request the reply responds to or {@code null} if the reply is not compressed
+     */
+    public MessageCompressor removeCompressorForReply(int responseTo) {
+        return compressedRequests.remove(Integer.valueOf(responseTo));
+    }
+
+}
@@ -0,0 +1,24 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+/**
+ * A compressor for messages that are wrapped in {@code OP_COMPRESSED}.
+ *
+ * @see <a href="https://github.com/mongodb/specifications/blob/master/source/compression/OP_COMPRESSED.md">OP_COMPRESSED</a>
+ */
+public interface MessageCompressor {
+
+    /**
+     * @return the name that is used to negotiate the compressor in the handshake
+     */
+    String getName();
+
+    /**
+     * @return the id that identifies the compressor in {@code OP_COMPRESSED}
+     */
+    byte getId();
+
+    byte[] compress(byte[] data);
+
+    byte[] decompress(byte[] data, int uncompressedSize);
+
+}
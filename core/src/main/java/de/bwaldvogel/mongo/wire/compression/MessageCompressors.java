@@ -0,0 +1,76 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The compressors that are available at runtime. zlib is always available, snappy and zstd are available if
+ * {@code org.xerial.snappy:snappy-java} and {@code com.github.luben:zstd-jni} are on the classpath.
+ */
+public final class MessageCompressors {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageCompressors.class);
+
+    private static final List<MessageCompressor> AVAILABLE_COMPRESSORS = detectAvailableCompressors();
+
+    private MessageCompressors() {
+    }
+
+    /**
+     * @return the available compressors in the order of preference
+     */
+    public static List<MessageCompressor> getAvailableCompressors() {
+        return AVAILABLE_COMPRESSORS;
+    }
+
+    /**
+     * @return the compressor or {@code null} if the compressor is unknown or not available
+     */
+    public static MessageCompressor getByName(String name) {
+        for (MessageCompressor compressor : AVAILABLE_COMPRESSORS) {
+            if (compressor.getName().equals(name)) {
+                return compressor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the compressor or {@code null} if the compressor is unknown or not available
+     */
+    public static MessageCompressor getById(byte id) {
+        for (MessageCompressor compressor : AVAILABLE_COMPRESSORS) {
+            if (compressor.getId() == id) {
+                return compressor;
+            }
+        }
+        return null;
+    }
+
+    private static List<MessageCompressor> detectAvailableCompressors() {
+        List<MessageCompressor> compressors = new ArrayList<>();
+        addIfAvailable(compressors, SnappyCompressor.NAME, SnappyCompressor::new);
+        addIfAvailable(compressors, ZstdCompressor.NAME, ZstdCompressor::new);
+        compressors.add(new ZlibCompressor());
+        return Collections.unmodifiableList(compressors);
+    }
+
+    private static void addIfAvailable(List<MessageCompressor> compressors, String name,
+                                       Supplier<MessageCompressor> compressorSupplier) {
+        try {
+            MessageCompressor compressor = compressorSupplier.get();
+            // fails if the library or its native code is not available
+            byte[] data = new byte[] { 1, 2, 3 };
+            compressor.decompress(compressor.compress(data), data.length);
+            compressors.add(compressor);
+        } catch (LinkageError | RuntimeException e) {
+            log.debug("Compressor '{}' is not available", name, e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import de.bwaldvogel.mongo.wire.OpCode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Writes messages in the {@code OP_COMPRESSED} format.
+ */
+public final class OpCompressed {
+
+    public static final int HEADER_LENGTH = 16;
+
+    private OpCompressed() {
+    }
+
+    /**
+     * @param message the complete uncompressed message including its header
+     * @param compressor the compressor of the message body
+     * @param out the buffer that the compressed message is written to
+     */
+    public static void encode(ByteBuf message, MessageCompressor compressor, ByteBuf out) {
+        int messageStart = message.readerIndex();
+        int requestId = message.getIntLE(messageStart + 4);
+        int responseTo = message.getIntLE(messageStart + 8);
+        int originalOpCode = message.getIntLE(messageStart + 12);
+        byte[] body = ByteBufUtil.getBytes(message, messageStart + HEADER_LENGTH, message.readableBytes() - HEADER_LENGTH);
+        byte[] compressedBody = compressor.compress(body);
+
+        int start = out.writerIndex();
+        out.writeIntLE(0); // write length later
+        out.writeIntLE(requestId);
+        out.writeIntLE(responseTo);
+        out.writeIntLE(OpCode.OP_COMPRESSED.getId());
+        out.writeIntLE(originalOpCode);
+        out.writeIntLE(body.length);
+        out.writeByte(compressor.getId());
+        out.writeBytes(compressedBody);
+        out.setIntLE(start, out.writerIndex() - start);
+    }
+
+}
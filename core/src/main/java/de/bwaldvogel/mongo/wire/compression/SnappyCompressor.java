@@ -0,0 +1,47 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import java.io.IOException;
+
+import org.xerial.snappy.Snappy;
+
+import de.bwaldvogel.mongo.exception.MongoServerException;
+
+class SnappyCompressor implements MessageCompressor {
+
+    static final String NAME = "snappy";
+    static final byte ID = 1;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        try {
+            return Snappy.compress(data);
+        } catch (IOException e) {
+            throw new MongoServerException("Failed to compress message", e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int uncompressedSize) {
+        try {
+            byte[] uncompressed = new byte[uncompressedSize];
+            int length = Snappy.uncompress(data, 0, data.length, uncompressed, 0);
+            if (length != uncompressedSize) {
+                throw new MongoServerException("Expected " + uncompressedSize + " uncompressed bytes but got " + length);
+            }
+            return uncompressed;
+        } catch (IOException e) {
+            throw new MongoServerException("Failed to decompress message", e);
+        }
+    }
+
+}
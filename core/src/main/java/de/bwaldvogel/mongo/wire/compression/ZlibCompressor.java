@@ -0,0 +1,70 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import de.bwaldvogel.mongo.exception.MongoServerException;
+
+class ZlibCompressor implements MessageCompressor {
+
+    static final String NAME = "zlib";
+    static final byte ID = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(data.length / 2, 64));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int uncompressedSize) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] uncompressed = new byte[uncompressedSize];
+            int offset = 0;
+            while (offset < uncompressedSize && !inflater.finished()) {
+                int length = inflater.inflate(uncompressed, offset, uncompressedSize - offset);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != uncompressedSize) {
+                throw new MongoServerException("Expected " + uncompressedSize + " uncompressed bytes but got " + offset);
+            }
+            return uncompressed;
+        } catch (DataFormatException e) {
+            throw new MongoServerException("Failed to decompress message", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import com.github.luben.zstd.Zstd;
+
+import de.bwaldvogel.mongo.exception.MongoServerException;
+
+class ZstdCompressor implements MessageCompressor {
+
+    static final String NAME = "zstd";
+    static final byte ID = 3;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        return Zstd.compress(data);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int uncompressedSize) {
+        byte[] uncompressed = Zstd.decompress(data, uncompressedSize);
+        if (uncompressed.length != uncompressedSize) {
+            throw new MongoServerException("Expected " + uncompressedSize + " uncompressed bytes but got " + uncompressed.length);
+        }
+        return uncompressed;
+    }
+
+}
@@ -1,6 +1,7 @@
 package de.bwaldvogel.mongo.wire.message;
 
 import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.wire.MessageFlag;
 import io.netty.channel.Channel;
 
 public class MongoMessage extends ClientRequest {
@@ -9,11 +10,16 @@ public class MongoMessage extends ClientRequest {
     public static final int SECTION_KIND_DOCUMENT_SEQUENCE = 1;
 
     private final Document document;
-    private final int flags = 0;
+    private final int flags;
 
     public MongoMessage(Channel channel, MessageHeader header, Document document) {
+        this(channel, header, document, 0);
+    }
+
+    public MongoMessage(Channel channel, MessageHeader header, Document document, int flags) {
         super(channel, header, null);
         this.document = document;
+        this.flags = flags;
     }
 
     public Document getDocument() {
@@ -24,6 +30,17 @@ public class MongoMessage extends ClientRequest {
         return flags;
     }
 
+    /**
+     * @return {@code true} if the sender does not wait for a reply to this message
+     */
+    public boolean isMoreToCome() {
+        return MessageFlag.MORE_TO_COME.isSet(flags);
+    }
+
+    public boolean isExhaustAllowed() {
+        return MessageFlag.EXHAUST_ALLOWED.isSet(flags);
+    }
+
     @Override
     public String getDatabaseName() {
         return (String) document.get("$db");
@@ -34,6 +51,9 @@ public class MongoMessage extends ClientRequest {
         StringBuilder sb = new StringBuilder();
         sb.append(getClass().getSimpleName()).append("(");
         sb.append("header: ").append(getHeader());
+        if (flags != 0) {
+            sb.append(", flags: ").append(flags);
+        }
         sb.append(", collection: ").append(getFullCollectionName());
         sb.append(", document: ").append(document);
         sb.append(")");
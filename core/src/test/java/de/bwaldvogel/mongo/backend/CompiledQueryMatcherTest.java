@@ -0,0 +1,51 @@
+package de.bwaldvogel.mongo.backend;
+
+import static de.bwaldvogel.mongo.TestUtils.json;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.BadValueException;
+
+/**
+ * Runs all matcher tests against compiled queries.
+ */
+class CompiledQueryMatcherTest extends DefaultQueryMatcherTest {
+
+    @Override
+    QueryMatcher createMatcher() {
+        return new DefaultQueryMatcher() {
+            @Override
+            public boolean matches(Document document, Document query) {
+                return compile(query).test(document);
+            }
+        };
+    }
+
+    @Test
+    void testCompiledQueryIsReusable() throws Exception {
+        Predicate<Document> query = new DefaultQueryMatcher().compile(json("'a.b': {$gte: 2, $lt: 5}, c: {$regex: '^x'}"));
+
+        assertThat(query.test(json("a: {b: 2}, c: 'xyz'"))).isTrue();
+        assertThat(query.test(json("a: {b: 5}, c: 'xyz'"))).isFalse();
+        assertThat(query.test(json("a: [{b: 1}, {b: 3}], c: 'xyz'"))).isTrue();
+        assertThat(query.test(json("a: {b: [1, 3]}, c: 'xyz'"))).isTrue();
+        assertThat(query.test(json("a: {b: 3}, c: 'abc'"))).isFalse();
+        assertThat(query.test(json("a: {b: 3}"))).isFalse();
+        assertThat(query.test(json("a: 3, c: 'xyz'"))).isFalse();
+    }
+
+    @Test
+    void testCompileInvalidQueryFailsOnFirstDocument() throws Exception {
+        Predicate<Document> query = new DefaultQueryMatcher().compile(json("$foo: 1"));
+
+        assertThatExceptionOfType(BadValueException.class)
+            .isThrownBy(() -> query.test(json("")))
+            .withMessageStartingWith("[Error 2] unknown top level operator: $foo.");
+    }
+
+}
@@ -0,0 +1,95 @@
+package de.bwaldvogel.mongo.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.CursorNotFoundException;
+
+class CursorRegistryTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final CursorRegistry cursorRegistry = new CursorRegistry(nanoTime::get);
+
+    @AfterEach
+    void closeCursorRegistry() {
+        cursorRegistry.close();
+    }
+
+    @Test
+    void testRemoveTimedOutCursors() throws Exception {
+        nanoTime.set(1000L);
+        Cursor unusedCursor = createCursor();
+        Cursor usedCursor = createCursor();
+        Cursor noTimeoutCursor = createCursor();
+        cursorRegistry.disableTimeout(noTimeoutCursor.getId());
+
+        nanoTime.set(1000L + Duration.ofMinutes(5).toNanos());
+        assertThat(cursorRegistry.getCursor(usedCursor.getId())).isSameAs(usedCursor);
+
+        nanoTime.set(1000L + Duration.ofMinutes(10).toNanos());
+        assertThat(cursorRegistry.removeTimedOutCursors()).isZero();
+
+        nanoTime.set(1001L + Duration.ofMinutes(10).toNanos());
+        assertThat(cursorRegistry.removeTimedOutCursors()).isEqualTo(1);
+        assertThat(cursorRegistry.size()).isEqualTo(2);
+        assertThat(cursorRegistry.getTimedOutCursors()).isEqualTo(1);
+        assertThat(cursorRegistry.getNoTimeoutCursors()).isEqualTo(1);
+
+        assertThatExceptionOfType(CursorNotFoundException.class)
+            .isThrownBy(() -> cursorRegistry.getCursor(unusedCursor.getId()));
+
+        nanoTime.set(1000L + Duration.ofHours(1).toNanos());
+        assertThat(cursorRegistry.removeTimedOutCursors()).isEqualTo(1);
+        assertThat(cursorRegistry.getCursor(noTimeoutCursor.getId())).isSameAs(noTimeoutCursor);
+        assertThat(cursorRegistry.getTimedOutCursors()).isEqualTo(2);
+    }
+
+    @Test
+    void testReaperClosesIdleCursors() throws Exception {
+        nanoTime.set(0L);
+        cursorRegistry.setCursorTimeout(Duration.ofMillis(10));
+        createCursor();
+
+        nanoTime.set(Duration.ofMillis(100).toNanos());
+        for (int i = 0; i < 100 && cursorRegistry.size() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(cursorRegistry.size()).isZero();
+        assertThat(cursorRegistry.getTimedOutCursors()).isEqualTo(1);
+    }
+
+    @Test
+    void testRemoveTimedOutCursors_nanoTimeOverflow() throws Exception {
+        nanoTime.set(Long.MAX_VALUE - Duration.ofMinutes(1).toNanos());
+        createCursor();
+
+        nanoTime.set(Long.MIN_VALUE);
+        assertThat(cursorRegistry.removeTimedOutCursors()).isZero();
+
+        nanoTime.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThat(cursorRegistry.removeTimedOutCursors()).isEqualTo(1);
+    }
+
+    @Test
+    void testIllegalCursorTimeout() throws Exception {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> cursorRegistry.setCursorTimeout(Duration.ZERO))
+            .withMessage("Illegal cursor timeout: PT0S");
+    }
+
+    private Cursor createCursor() {
+        Cursor cursor = new InMemoryCursor(cursorRegistry.generateCursorId(), List.of(new Document("_id", 1)));
+        cursorRegistry.add(cursor);
+        return cursor;
+    }
+
+}
@@ -42,7 +42,11 @@ import de.bwaldvogel.mongo.exception.MongoServerNotYetImplementedException;
 
 class DefaultQueryMatcherTest {
 
-    private final QueryMatcher matcher = new DefaultQueryMatcher();
+    private final QueryMatcher matcher = createMatcher();
+
+    QueryMatcher createMatcher() {
+        return new DefaultQueryMatcher();
+    }
 
     @Test
     void testMatchesSimple() throws Exception {
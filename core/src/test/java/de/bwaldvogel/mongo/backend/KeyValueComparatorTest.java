@@ -0,0 +1,79 @@
+package de.bwaldvogel.mongo.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.BsonJavaScript;
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.bson.ObjectId;
+
+class KeyValueComparatorTest {
+
+    private final KeyValueComparator comparator = KeyValueComparator.getInstance();
+
+    @Test
+    void testCompare() throws Exception {
+        assertThat(comparator.compare(new KeyValue(1.0), new KeyValue(1.0))).isZero();
+        assertThat(comparator.compare(new KeyValue(1.0), new KeyValue(2.0))).isNegative();
+        assertThat(comparator.compare(new KeyValue(3.0), new KeyValue(Long.MAX_VALUE))).isNegative();
+        assertThat(comparator.compare(new KeyValue("abc"), new KeyValue("abd"))).isNegative();
+        assertThat(comparator.compare(new KeyValue(10.0), new KeyValue("abc"))).isNegative();
+        assertThat(comparator.compare(new KeyValue((Object) null), new KeyValue(10.0))).isNegative();
+        assertThat(comparator.compare(new KeyValue("a", 2.0), new KeyValue("a", 1.0))).isPositive();
+        assertThat(comparator.compare(new KeyValue("a"), new KeyValue("a", 1.0))).isNegative();
+        assertThat(comparator.compare(new KeyValue(new ObjectId()), new KeyValue(true))).isNegative();
+    }
+
+    @Test
+    void testCompare_doubles() throws Exception {
+        assertThat(comparator.compare(new KeyValue(3e9 + 0.25), new KeyValue(3e9 + 0.5))).isNegative();
+        assertThat(comparator.compare(new KeyValue(-1e300), new KeyValue(1e300))).isNegative();
+        assertThat(comparator.compare(new KeyValue(1e300), new KeyValue(Double.POSITIVE_INFINITY))).isNegative();
+        assertThat(comparator.compare(new KeyValue(Double.NaN), new KeyValue(Double.NaN))).isZero();
+        assertThat(comparator.compare(new KeyValue(Double.NaN), new KeyValue(1.5)))
+            .isEqualTo(comparator.compare(new KeyValue(Double.NaN), new KeyValue(1)));
+    }
+
+    @Test
+    void testCompare_isConsistentWithEquals() throws Exception {
+        KeyValue document1 = new KeyValue(new Document("a", 1.0).append("b", 2.0));
+        KeyValue document2 = new KeyValue(new Document("b", 2.0).append("a", 1.0));
+        assertThat(comparator.compare(document1, document2)).isNotZero();
+        assertThat(comparator.compare(document1, document2)).isEqualTo(-comparator.compare(document2, document1));
+
+        KeyValue list1 = new KeyValue(List.of(1.0, 2.0));
+        KeyValue list2 = new KeyValue(List.of(2.0, 1.0));
+        assertThat(comparator.compare(list1, list2)).isNegative();
+    }
+
+    @Test
+    void testCompare_valuesWithoutSortOrder() throws Exception {
+        TreeSet<KeyValue> keyValues = new TreeSet<>(comparator);
+        keyValues.add(new KeyValue(new BsonJavaScript("b")));
+        keyValues.add(new KeyValue(1.0));
+        keyValues.add(new KeyValue(new BsonJavaScript("a")));
+        keyValues.add(new KeyValue("x"));
+
+        assertThat(keyValues)
+            .hasSize(4)
+            .startsWith(new KeyValue(1.0), new KeyValue("x"));
+    }
+
+    @Test
+    void testCompare_embeddedValuesWithoutSortOrder() throws Exception {
+        KeyValue document1 = new KeyValue(new Document("a", new BsonJavaScript("a")));
+        KeyValue document2 = new KeyValue(new Document("a", new BsonJavaScript("b")));
+        KeyValue list = new KeyValue(List.of(new BsonJavaScript("a")));
+
+        assertThat(comparator.compare(document1, document2)).isNegative();
+        assertThat(comparator.compare(document2, document1)).isPositive();
+        assertThat(comparator.compare(document1, new KeyValue(new Document("a", 1.0)))).isPositive();
+        assertThat(comparator.compare(list, new KeyValue(List.of(1.0)))).isPositive();
+        assertThat(comparator.compare(list, list)).isZero();
+    }
+
+}
@@ -0,0 +1,56 @@
+package de.bwaldvogel.mongo.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketIndex() throws Exception {
+        assertThat(LatencyHistogram.bucketIndex(-1)).isEqualTo(0);
+        assertThat(LatencyHistogram.bucketIndex(0)).isEqualTo(0);
+        assertThat(LatencyHistogram.bucketIndex(1)).isEqualTo(1);
+        assertThat(LatencyHistogram.bucketIndex(2)).isEqualTo(2);
+        assertThat(LatencyHistogram.bucketIndex(3)).isEqualTo(2);
+        assertThat(LatencyHistogram.bucketIndex(4)).isEqualTo(3);
+        assertThat(LatencyHistogram.bucketIndex(1023)).isEqualTo(10);
+        assertThat(LatencyHistogram.bucketIndex(1024)).isEqualTo(11);
+        assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE)).isEqualTo(39);
+    }
+
+    @Test
+    void testBucketLowerBound() throws Exception {
+        assertThat(LatencyHistogram.bucketLowerBound(0)).isEqualTo(0);
+        assertThat(LatencyHistogram.bucketLowerBound(1)).isEqualTo(1);
+        assertThat(LatencyHistogram.bucketLowerBound(11)).isEqualTo(1024);
+        for (long micros : List.of(1L, 5L, 100L, 65_536L, 1_000_000L)) {
+            assertThat(LatencyHistogram.bucketLowerBound(LatencyHistogram.bucketIndex(micros)))
+                .isLessThanOrEqualTo(micros)
+                .isGreaterThan(micros / 2);
+        }
+    }
+
+    @Test
+    void testToDocument() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.toDocument()).isEqualTo(new Document("latency", 0L)
+            .append("ops", 0L)
+            .append("histogram", List.of()));
+
+        histogram.record(3);
+        histogram.record(2);
+        histogram.record(1500);
+
+        assertThat(histogram.toDocument()).isEqualTo(new Document("latency", 1505L)
+            .append("ops", 3L)
+            .append("histogram", List.of(
+                new Document("micros", 2L).append("count", 2L),
+                new Document("micros", 1024L).append("count", 1L))));
+    }
+
+}
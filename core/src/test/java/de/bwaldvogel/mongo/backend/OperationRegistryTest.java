@@ -0,0 +1,143 @@
+package de.bwaldvogel.mongo.backend;
+
+import static de.bwaldvogel.mongo.TestUtils.json;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Clock;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.BadValueException;
+import de.bwaldvogel.mongo.exception.MaxTimeMSExpiredException;
+import de.bwaldvogel.mongo.exception.OperationInterruptedException;
+
+class OperationRegistryTest {
+
+    private final OperationRegistry registry = new OperationRegistry(Clock.systemUTC());
+
+    @Test
+    void testStartAndFinish() throws Exception {
+        assertThat(Operation.current()).isNull();
+
+        Operation operation = registry.start(null, "testdb", "find", json("find: 'collection'"));
+        assertThat(Operation.current()).isSameAs(operation);
+        assertThat(operation.getNamespace()).isEqualTo("testdb.collection");
+        assertThat(registry.size()).isEqualTo(1);
+
+        registry.finish(operation);
+        assertThat(Operation.current()).isNull();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void testNestedOperations() throws Exception {
+        Operation outer = registry.start(null, "testdb", "aggregate", json("aggregate: 'collection'"));
+        Operation inner = registry.start(null, "testdb", "find", json("find: 'other'"));
+        assertThat(Operation.current()).isSameAs(inner);
+
+        registry.finish(inner);
+        assertThat(Operation.current()).isSameAs(outer);
+
+        registry.finish(outer);
+        assertThat(Operation.current()).isNull();
+    }
+
+    @Test
+    void testGetCurrentOperations() throws Exception {
+        Operation find = registry.start(null, "testdb", "find", json("find: 'collection'"));
+        Operation ping = registry.start(null, "admin", "ping", json("ping: 1"));
+        try {
+            Operation.documentExamined();
+
+            List<Document> operations = registry.getCurrentOperations(new Document());
+            assertThat(operations).extracting(document -> document.get("opid"))
+                .containsExactly(find.getOpId(), ping.getOpId());
+            assertThat(operations.get(1).get("op")).isEqualTo("command");
+            assertThat(operations.get(1).get("ns")).isEqualTo("admin.$cmd");
+            assertThat(operations.get(1).get("docsExamined")).isEqualTo(1L);
+
+            assertThat(registry.getCurrentOperations(json("op: 'query'")))
+                .extracting(document -> document.get("ns"))
+                .containsExactly("testdb.collection");
+        } finally {
+            registry.finish(ping);
+            registry.finish(find);
+        }
+    }
+
+    @Test
+    void testKill() throws Exception {
+        Operation operation = registry.start(null, "testdb", "find", json("find: 'collection'"));
+        try {
+            Operation.documentExamined();
+            Operation.checkForInterrupt();
+
+            assertThat(registry.kill(operation.getOpId())).isTrue();
+            assertThat(registry.kill(operation.getOpId() + 1)).isFalse();
+            assertThat(registry.getCurrentOperations(null).get(0).get("killPending")).isEqualTo(true);
+
+            assertThatExceptionOfType(OperationInterruptedException.class)
+                .isThrownBy(Operation::documentExamined)
+                .withMessage("[Error 11601] operation was interrupted");
+            assertThatExceptionOfType(OperationInterruptedException.class)
+                .isThrownBy(Operation::checkForInterrupt);
+            assertThat(operation.getDocsExamined()).isEqualTo(2);
+        } finally {
+            registry.finish(operation);
+        }
+
+        Operation.checkForInterrupt();
+    }
+
+    @Test
+    void testMaxTimeMS() throws Exception {
+        Operation operation = registry.start(null, "testdb", "find", json("find: 'collection', maxTimeMS: 1"));
+        try {
+            Thread.sleep(5);
+
+            for (int i = 1; i < 64; i++) {
+                Operation.documentExamined();
+            }
+            assertThatExceptionOfType(MaxTimeMSExpiredException.class)
+                .isThrownBy(Operation::documentExamined)
+                .withMessage("[Error 50] operation exceeded time limit");
+
+            for (int i = 1; i < 64; i++) {
+                Operation.checkForInterrupt();
+            }
+            assertThatExceptionOfType(MaxTimeMSExpiredException.class)
+                .isThrownBy(Operation::checkForInterrupt);
+        } finally {
+            registry.finish(operation);
+        }
+    }
+
+    @Test
+    void testNoTimeLimit() throws Exception {
+        Operation operation = registry.start(null, "testdb", "find", json("find: 'collection', maxTimeMS: 0"));
+        try {
+            Thread.sleep(2);
+            Operation.checkForInterrupt();
+        } finally {
+            registry.finish(operation);
+        }
+    }
+
+    @Test
+    void testIllegalMaxTimeMS() throws Exception {
+        assertThatExceptionOfType(BadValueException.class)
+            .isThrownBy(() -> registry.start(null, "testdb", "find", json("find: 'collection', maxTimeMS: -1")))
+            .withMessage("[Error 2] -1 value for maxTimeMS is out of range [0, 2147483647]");
+
+        assertThatExceptionOfType(BadValueException.class)
+            .isThrownBy(() -> registry.start(null, "testdb", "find", json("find: 'collection', maxTimeMS: 'abc'")))
+            .withMessage("[Error 2] maxTimeMS must be an integer");
+
+        assertThat(registry.size()).isZero();
+        assertThat(Operation.current()).isNull();
+    }
+
+}
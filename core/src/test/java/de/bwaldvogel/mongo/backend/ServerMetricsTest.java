@@ -0,0 +1,102 @@
+package de.bwaldvogel.mongo.backend;
+
+import static de.bwaldvogel.mongo.TestUtils.json;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+class ServerMetricsTest {
+
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    @Test
+    void testOpcounters() throws Exception {
+        metrics.recordCommand("insert", json("insert: 'c', documents: [{_id: 1}, {_id: 2}]"), 0, false);
+        metrics.recordCommand("update", json("update: 'c', updates: [{q: {}, u: {}}]"), 0, false);
+        metrics.recordCommand("delete", json("delete: 'c', deletes: [{q: {}}, {q: {}}, {q: {}}]"), 0, false);
+        metrics.recordCommand("find", json("find: 'c'"), 0, false);
+        metrics.recordCommand("getMore", json("getMore: 1"), 0, false);
+        metrics.recordCommand("ping", null, 0, false);
+        metrics.recordQuery(0);
+
+        Document serverStatus = new Document();
+        metrics.appendTo(serverStatus, new Document());
+
+        assertThat(serverStatus.get("opcounters")).isEqualTo(new Document("insert", 2L)
+            .append("query", 2L)
+            .append("update", 1L)
+            .append("delete", 3L)
+            .append("getmore", 1L)
+            .append("command", 1L));
+    }
+
+    @Test
+    void testNetwork() throws Exception {
+        metrics.countBytesIn(100);
+        metrics.countBytesIn(50);
+        metrics.countBytesOut(20);
+        metrics.countRequest();
+
+        Document serverStatus = new Document();
+        metrics.appendTo(serverStatus, new Document());
+
+        assertThat(serverStatus.get("network")).isEqualTo(new Document("bytesIn", 150L)
+            .append("bytesOut", 20L)
+            .append("numRequests", 1L));
+    }
+
+    @Test
+    void testCommandNamesAreNormalized() throws Exception {
+        metrics.recordCommand("find", json("find: 'c'"), 0, false);
+        metrics.recordCommand("FIND", json("FIND: 'c'"), 0, false);
+        metrics.recordCommand("findandmodify", json("findandmodify: 'c'"), 0, false);
+        metrics.recordCommand("someFutureCommand", json("someFutureCommand: 1"), 0, false);
+        metrics.recordCommand("SOMEFUTURECOMMAND", json("SOMEFUTURECOMMAND: 1"), 0, false);
+
+        Document serverStatus = new Document();
+        Document metricsDocument = new Document();
+        metrics.appendTo(serverStatus, metricsDocument);
+
+        Document commands = (Document) metricsDocument.get("commands");
+        assertThat(commands.keySet()).containsExactly("find", "findAndModify", "somefuturecommand");
+        assertThat(((Document) commands.get("find")).get("total")).isEqualTo(2L);
+        assertThat(((Document) commands.get("somefuturecommand")).get("total")).isEqualTo(2L);
+        assertThat(((Document) serverStatus.get("opcounters")).get("query")).isEqualTo(2L);
+    }
+
+    @Test
+    void testLatencies() throws Exception {
+        metrics.recordCommand("find", json("find: 'c'"), TimeUnit.MICROSECONDS.toNanos(10), false);
+        metrics.recordCommand("insert", json("insert: 'c', documents: []"), TimeUnit.MICROSECONDS.toNanos(20), false);
+        metrics.recordCommand("insert", json("insert: 'c', documents: []"), TimeUnit.MICROSECONDS.toNanos(40), true);
+        metrics.recordCommand(ServerMetrics.UNKNOWN_COMMAND, json("foo: 1"), 0, true);
+
+        Document serverStatus = new Document();
+        Document metricsDocument = new Document();
+        metrics.appendTo(serverStatus, metricsDocument);
+
+        Document opLatencies = (Document) serverStatus.get("opLatencies");
+        assertThat(((Document) opLatencies.get("reads")).get("latency")).isEqualTo(10L);
+        assertThat(((Document) opLatencies.get("reads")).get("ops")).isEqualTo(1L);
+        assertThat(((Document) opLatencies.get("writes")).get("latency")).isEqualTo(60L);
+        assertThat(((Document) opLatencies.get("writes")).get("ops")).isEqualTo(2L);
+        assertThat(((Document) opLatencies.get("commands")).get("ops")).isEqualTo(1L);
+
+        Document commands = (Document) metricsDocument.get("commands");
+        assertThat(commands.keySet()).containsExactly("<UNKNOWN>", "find", "insert");
+        Document insert = (Document) commands.get("insert");
+        assertThat(insert.get("total")).isEqualTo(2L);
+        assertThat(insert.get("failed")).isEqualTo(1L);
+        assertThat(insert.get("latency")).isEqualTo(new Document("latency", 60L)
+            .append("ops", 2L)
+            .append("histogram", List.of(
+                new Document("micros", 16L).append("count", 1L),
+                new Document("micros", 32L).append("count", 1L))));
+    }
+
+}
@@ -5,8 +5,11 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.entry;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
@@ -42,4 +45,29 @@ public class StreamUtilsTest {
         assertThat(result).containsExactly("a", "b", "c");
     }
 
+    @Test
+    void testToSortedList() throws Exception {
+        List<Integer> result = Stream.of(5, 3, 9, 1, 7, 2)
+            .collect(StreamUtils.toSortedList(Comparator.naturalOrder(), 3));
+        assertThat(result).containsExactly(1, 2, 3);
+
+        assertThat(Stream.of(2, 1).collect(StreamUtils.toSortedList(Comparator.<Integer> reverseOrder(), 5)))
+            .containsExactly(2, 1);
+    }
+
+    @Test
+    void testToSortedList_isStable() throws Exception {
+        List<String> result = Stream.of("b1", "a1", "c1", "a2", "b2", "a3", "b3")
+            .collect(StreamUtils.toSortedList(Comparator.comparing(value -> value.charAt(0)), 4));
+        assertThat(result).containsExactly("a1", "a2", "a3", "b1");
+    }
+
+    @Test
+    void testToSortedList_parallel() throws Exception {
+        List<Integer> result = IntStream.range(0, 10_000).boxed()
+            .parallel()
+            .collect(StreamUtils.toSortedList(Comparator.comparing(value -> value % 10), 3));
+        assertThat(result).containsExactly(0, 10, 20);
+    }
+
 }
@@ -0,0 +1,81 @@
+package de.bwaldvogel.mongo.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+class StreamingCursorTest {
+
+    @Test
+    void testIsEmpty() {
+        assertThat(new StreamingCursor(1L, List.of(new Document()).iterator(), Runnable::run).isEmpty()).isFalse();
+        assertThat(new StreamingCursor(1L, List.<Document> of().iterator(), Runnable::run).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testTakeDocuments() {
+        List<Document> documents = IntStream.range(0, 12)
+            .mapToObj(idx -> new Document("number", idx + 1))
+            .collect(Collectors.toList());
+
+        StreamingCursor cursor = new StreamingCursor(1L, documents.iterator(), Runnable::run);
+        assertThat(cursor.takeDocuments(1)).containsExactly(documents.get(0));
+        assertThat(cursor.takeDocuments(2)).containsExactly(documents.get(1), documents.get(2));
+        assertThat(cursor.takeDocuments(6)).containsExactlyElementsOf(documents.subList(3, 9));
+        assertThat(cursor.takeDocuments(10)).containsExactlyElementsOf(documents.subList(9, 12));
+        assertThat(cursor.takeDocuments(10)).isEmpty();
+        assertThat(cursor.isEmpty()).isTrue();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> cursor.takeDocuments(0))
+            .withMessage("Illegal number to return: 0");
+    }
+
+    @Test
+    void testTakeDocuments_readsLazily() {
+        AtomicInteger numberOfReadDocuments = new AtomicInteger();
+        StreamingCursor cursor = new StreamingCursor(1L, IntStream.range(0, 100)
+            .peek(value -> numberOfReadDocuments.incrementAndGet())
+            .mapToObj(value -> new Document("value", value))
+            .iterator(), Runnable::run);
+
+        assertThat(cursor.takeDocuments(5)).hasSize(5);
+        assertThat(numberOfReadDocuments).hasValueLessThan(10);
+    }
+
+    @Test
+    void testTakeDocuments_advancesUnderReadLock() {
+        AtomicInteger lockDepth = new AtomicInteger();
+        StreamingCursor cursor = new StreamingCursor(1L, IntStream.range(0, 10)
+            .peek(value -> assertThat(lockDepth).hasValue(1))
+            .mapToObj(value -> new Document("value", value))
+            .iterator(), action -> {
+            lockDepth.incrementAndGet();
+            try {
+                action.run();
+            } finally {
+                lockDepth.decrementAndGet();
+            }
+        });
+
+        assertThat(cursor.takeDocuments(3)).hasSize(3);
+        assertThat(cursor.isEmpty()).isFalse();
+        assertThat(cursor.takeDocuments(10)).hasSize(7);
+        assertThat(cursor.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testToString() throws Exception {
+        assertThat(new StreamingCursor(123L, List.of(new Document()).iterator(), Runnable::run))
+            .hasToString("StreamingCursor(id: 123)");
+    }
+
+}
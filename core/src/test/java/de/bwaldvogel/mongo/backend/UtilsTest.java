@@ -349,4 +349,30 @@ class UtilsTest {
         assertThat(Utils.collectCommonPathFragments("ab.c", "a.b.c")).isEmpty();
     }
 
+    @Test
+    void testCopyPathForModification() throws Exception {
+        Document original = json("_id: 1, a: {b: {c: 1, d: [1, 2]}, e: {f: 1}}, g: {h: 1}, list: [{x: 1}]");
+        Document copy = new Document(original);
+
+        Utils.copyPathForModification(copy, "a.b.c");
+        Utils.copyPathForModification(copy, "list.0.x");
+        Utils.copyPathForModification(copy, "missing.path");
+
+        Document a = (Document) copy.get("a");
+        Document b = (Document) a.get("b");
+        assertThat(a).isNotSameAs(original.get("a"));
+        assertThat(b).isNotSameAs(((Document) original.get("a")).get("b"));
+        assertThat(b.get("d")).isSameAs(Utils.getSubdocumentValue(original, "a.b.d"));
+        assertThat(a.get("e")).isSameAs(((Document) original.get("a")).get("e"));
+        assertThat(copy.get("g")).isSameAs(original.get("g"));
+        assertThat(copy.get("list")).isNotSameAs(original.get("list"));
+        assertThat(((List<?>) copy.get("list")).get(0)).isNotSameAs(((List<?>) original.get("list")).get(0));
+        assertThat(copy).isEqualTo(original);
+
+        Utils.changeSubdocumentValue(copy, "a.b.c", 2);
+        Utils.changeSubdocumentValue(copy, "list.0.x", 2);
+        assertThat(copy).isEqualTo(json("_id: 1, a: {b: {c: 2, d: [1, 2]}, e: {f: 1}}, g: {h: 1}, list: [{x: 2}]"));
+        assertThat(original).isEqualTo(json("_id: 1, a: {b: {c: 1, d: [1, 2]}, e: {f: 1}}, g: {h: 1}, list: [{x: 1}]"));
+    }
+
 }
@@ -38,6 +38,13 @@ class BsonRegularExpressionTest {
         );
     }
 
+    @Test
+    void testMatcherWithoutOptions() throws Exception {
+        BsonRegularExpression regularExpression = new BsonRegularExpression("^a.*z$");
+        assertThat(regularExpression.matcher("abcz").find()).isTrue();
+        assertThat(regularExpression.matcher("Abcz").find()).isFalse();
+    }
+
     @Test
     void testConvertToRegularExpressionWithIllegalArgument() throws Exception {
         assertThatExceptionOfType(IllegalArgumentException.class)
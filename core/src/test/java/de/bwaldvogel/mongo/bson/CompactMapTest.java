@@ -0,0 +1,183 @@
+package de.bwaldvogel.mongo.bson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.jupiter.api.Test;
+
+class CompactMapTest {
+
+    @Test
+    void testPutGetAndRemove() throws Exception {
+        CompactMap map = new CompactMap();
+        assertThat(map).isEmpty();
+
+        assertThat(map.put("a", 1)).isNull();
+        assertThat(map.put("b", 2)).isNull();
+        assertThat(map.put("c", null)).isNull();
+        assertThat(map.put("a", 3)).isEqualTo(1);
+
+        assertThat(map).containsExactly(entry("a", 3), entry("b", 2), entry("c", null));
+        assertThat(map.get("b")).isEqualTo(2);
+        assertThat(map.get("x")).isNull();
+        assertThat(map.containsKey("c")).isTrue();
+        assertThat(map.containsKey("x")).isFalse();
+        assertThat(map.containsValue(3)).isTrue();
+        assertThat(map.containsValue(1)).isFalse();
+
+        assertThat(map.remove("a")).isEqualTo(3);
+        assertThat(map.remove("a")).isNull();
+        assertThat(map).containsExactly(entry("b", 2), entry("c", null));
+
+        map.put("a", 4);
+        assertThat(map.keySet()).containsExactly("b", "c", "a");
+
+        map.clear();
+        assertThat(map).isEmpty();
+        map.put("d", 5);
+        assertThat(map).containsExactly(entry("d", 5));
+    }
+
+    @Test
+    void testPromoteToHashTable() throws Exception {
+        CompactMap map = new CompactMap();
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < CompactMap.MAX_COMPACT_SIZE; i++) {
+            map.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        assertThat(map.isPromoted()).isFalse();
+
+        map.put("key0", "updated");
+        expected.put("key0", "updated");
+        assertThat(map.isPromoted()).isFalse();
+
+        map.put("more", true);
+        expected.put("more", true);
+        assertThat(map.isPromoted()).isTrue();
+
+        assertThat(map).containsExactlyEntriesOf(expected);
+        assertThat(map.get("key7")).isEqualTo(7);
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+
+        map.remove("key3");
+        expected.remove("key3");
+        assertThat(map).containsExactlyEntriesOf(expected);
+        assertThat(new CompactMap(map)).containsExactlyEntriesOf(expected);
+    }
+
+    @Test
+    void testEqualsAndHashCode() throws Exception {
+        CompactMap map = new CompactMap();
+        map.put("a", 1);
+        map.put("b", List.of(1, 2));
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", 1);
+        expected.put("b", List.of(1, 2));
+
+        assertThat(map).isEqualTo(expected);
+        assertThat(expected).isEqualTo(map);
+        assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(map.entrySet()).isEqualTo(expected.entrySet());
+    }
+
+    @Test
+    void testIteratorRemove() throws Exception {
+        CompactMap map = new CompactMap();
+        for (int i = 0; i < 5; i++) {
+            map.put("key" + i, i);
+        }
+
+        map.entrySet().removeIf(entry -> ((Integer) entry.getValue()) % 2 == 0);
+        assertThat(map).containsExactly(entry("key1", 1), entry("key3", 3));
+
+        Iterator<String> iterator = map.keySet().iterator();
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(iterator::remove);
+        iterator.next();
+        iterator.remove();
+        assertThat(map).containsExactly(entry("key3", 3));
+    }
+
+    @Test
+    void testEntrySetValue() throws Exception {
+        CompactMap map = new CompactMap();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+
+        for (Entry<String, Object> entry : map.entrySet()) {
+            entry.setValue((Integer) entry.getValue() * 10);
+        }
+        assertThat(map).containsExactly(entry("a", 10), entry("b", 20), entry("c", 30));
+
+        Entry<String, Object> last = map.entrySet().stream().reduce((first, second) -> second).orElseThrow();
+        map.remove("a");
+        assertThat(last.getValue()).isEqualTo(30);
+        assertThat(last.setValue(31)).isEqualTo(30);
+        assertThat(map).containsExactly(entry("b", 20), entry("c", 31));
+    }
+
+    @Test
+    void testConcurrentModification() throws Exception {
+        CompactMap map = new CompactMap();
+        map.put("a", 1);
+        map.put("b", 2);
+
+        Iterator<String> iterator = map.keySet().iterator();
+        iterator.next();
+        map.put("c", 3);
+        assertThatExceptionOfType(ConcurrentModificationException.class).isThrownBy(iterator::next);
+
+        assertThatExceptionOfType(ConcurrentModificationException.class)
+            .isThrownBy(() -> map.forEach((key, value) -> map.remove("c")));
+    }
+
+    @Test
+    void testCopyIsIndependent() throws Exception {
+        CompactMap map = new CompactMap();
+        map.put("a", 1);
+
+        CompactMap copy = new CompactMap(map);
+        copy.put("b", 2);
+        map.put("a", 3);
+
+        assertThat(map).containsExactly(entry("a", 3));
+        assertThat(copy).containsExactly(entry("a", 1), entry("b", 2));
+    }
+
+    @Test
+    void testReplaceKeys() throws Exception {
+        String key = "key";
+        CompactMap map = new CompactMap();
+        map.put(new String(key.toCharArray()), 1);
+        map.put("other", 2);
+
+        map.replaceKeys(k -> k.equals(key) ? key : k);
+        assertThat(map.keySet().iterator().next()).isSameAs(key);
+        assertThat(map).containsExactly(entry("key", 1), entry("other", 2));
+
+        for (int i = 0; i < CompactMap.MAX_COMPACT_SIZE; i++) {
+            map.put("key" + i, i);
+        }
+        map.put("promoted", new String(key.toCharArray()));
+        map.remove(key);
+        map.put(new String(key.toCharArray()), 3);
+        assertThat(map.isPromoted()).isTrue();
+
+        map.replaceKeys(k -> k.equals(key) ? key : k);
+        assertThat(map.keySet()).last().isSameAs(key);
+        assertThat(map.keySet()).startsWith("other", "key0");
+        assertThat(map.get(key)).isEqualTo(3);
+    }
+
+}
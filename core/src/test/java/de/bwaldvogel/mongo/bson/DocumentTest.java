@@ -4,6 +4,12 @@ import static de.bwaldvogel.mongo.TestUtils.json;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -14,14 +20,29 @@ import org.junit.jupiter.api.Test;
 
 import de.bwaldvogel.mongo.backend.Missing;
 import de.bwaldvogel.mongo.backend.Utils;
+import de.bwaldvogel.mongo.wire.bson.BsonDecoder;
+import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
 
 class DocumentTest {
 
     @Test
     void testEqualsAndHashCodeContract() throws Exception {
+        byte[] emptyDocument = { 5, 0, 0, 0, 0 };
+        CompactMap red = new CompactMap();
+        red.put("red", 1);
+        CompactMap blue = new CompactMap();
+        blue.put("blue", 2);
         EqualsVerifier.forClass(Document.class)
             .withNonnullFields("documentAsMap")
+            .withPrefabValues(CompactMap.class, red, blue)
+            .withPrefabValues(RawBson.class, new RawBson(emptyDocument, 0), new RawBson(emptyDocument.clone(), 0))
+            .withIgnoredFields("rawBson", "internFieldNamesWhenMaterialized")
+            .suppress(Warning.NONFINAL_FIELDS)
             .verify();
     }
 
@@ -78,6 +99,70 @@ class DocumentTest {
         assertThat(original).hasToString(originalToString);
     }
 
+    @Test
+    void testCloneDeeplyLazyDocument() throws Exception {
+        Document original = decode(new Document("_id", 1).append("sub", new Document("key", "value")));
+
+        Document deepClone = original.cloneDeeply();
+        assertThat(deepClone.isMaterialized()).isFalse();
+        assertThat(original.isMaterialized()).isFalse();
+
+        Utils.changeSubdocumentValue(deepClone, "sub.key", "other");
+        assertThat(deepClone).isEqualTo(new Document("_id", 1).append("sub", new Document("key", "other")));
+        assertThat(original).isEqualTo(new Document("_id", 1).append("sub", new Document("key", "value")));
+    }
+
+    @Test
+    void testSerialize() throws Exception {
+        Document document = new Document("_id", 1).append("sub", new Document("key", "value"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(document);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Document deserialized = (Document) in.readObject();
+            assertThat(deserialized).isEqualTo(document);
+            deserialized.put("other", 2);
+            assertThat(deserialized.keySet()).containsExactly("_id", "sub", "other");
+        }
+    }
+
+    @Test
+    void testDeserializeDocumentThatWasSerializedAsLinkedHashMap() throws Exception {
+        // {_id: 1, sub: {key: 'value'}} as serialized by older versions
+        byte[] bytes = Base64.getDecoder().decode("rO0ABXNyACFkZS5id2FsZHZvZ2VsLm1vbmdvLmJzb24uRG9jdW1lbnQAAAAAAAAAAQMAAkwADWRvY3VtZW50QXNNYXB0ABlMamF2"
+            + "YS91dGlsL0xpbmtlZEhhc2hNYXA7TAAHcmF3QnNvbnQAIkxkZS9id2FsZHZvZ2VsL21vbmdvL2Jzb24vUmF3QnNvbjt4cHNyABdq"
+            + "YXZhLnV0aWwuTGlua2VkSGFzaE1hcDTATlwQbMD7AgABWgALYWNjZXNzT3JkZXJ4cgARamF2YS51dGlsLkhhc2hNYXAFB9rBwxZg"
+            + "0QMAAkYACmxvYWRGYWN0b3JJAAl0aHJlc2hvbGR4cD9AAAAAAAADdwgAAAAEAAAAAnQAA19pZHNyABFqYXZhLmxhbmcuSW50ZWdl"
+            + "chLioKT3gYc4AgABSQAFdmFsdWV4cgAQamF2YS5sYW5nLk51bWJlcoaslR0LlOCLAgAAeHAAAAABdAADc3Vic3EAfgAAc3EAfgAE"
+            + "P0AAAAAAAAF3CAAAAAIAAAABdAADa2V5dAAFdmFsdWV4AHB4eABweA==");
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Document deserialized = (Document) in.readObject();
+            assertThat(deserialized).isEqualTo(new Document("_id", 1).append("sub", new Document("key", "value")));
+        }
+    }
+
+    @Test
+    void testSerializeLazyDocument() throws Exception {
+        Document document = decode(new Document("_id", 1).append("sub", new Document("key", "value")));
+        Document subDocument = (Document) document.get("sub");
+        assertThat(subDocument.isMaterialized()).isFalse();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(subDocument);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Document deserialized = (Document) in.readObject();
+            assertThat(deserialized.isMaterialized()).isFalse();
+            assertThat(deserialized).isEqualTo(new Document("key", "value"));
+        }
+    }
+
     @Test
     void testClear() throws Exception {
         Document document = json("abc: 123");
@@ -128,4 +213,109 @@ class DocumentTest {
         assertThat(document.getOrMissing("a")).isEqualTo(1);
     }
 
+    @Test
+    void testInternFieldNames() throws Exception {
+        Document embedded = new Document(newString("embedded"), 1);
+        Document document = new Document(newString("field"), List.of(new Document(newString("inList"), 1)))
+            .append(newString("shared"), embedded);
+        document.prepareForStorage(null);
+
+        FieldNameInterner fieldNameInterner = FieldNameInterner.getInstance();
+        assertThat(document.keySet()).allSatisfy(key -> assertThat(key).isSameAs(fieldNameInterner.intern(key)));
+        assertThat(embedded.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("embedded"));
+        Document inList = (Document) ((List<?>) document.get("field")).get(0);
+        assertThat(inList.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("inList"));
+
+        Document newVersion = document.clone();
+        newVersion.put(newString("added"), 1);
+        embedded.put(newString("notInterned"), 1);
+        newVersion.prepareForStorage(document);
+
+        assertThat(newVersion.keySet()).allSatisfy(key -> assertThat(key).isSameAs(fieldNameInterner.intern(key)));
+
+        // a field that is also in the previous version, but with another instance of its name
+        Document replacement = new Document(newString("field"), 2);
+        replacement.prepareForStorage(document);
+        assertThat(replacement.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("field"));
+        // shared with the previous version, hence skipped
+        assertThat(embedded.keySet()).last().isNotSameAs(fieldNameInterner.intern("notInterned"));
+    }
+
+    @Test
+    void testInternFieldNamesOfDocumentThatWasNotMaterialized() throws Exception {
+        Document document = new Document(newString("someField"), new Document(newString("otherField"), 1));
+        FieldNameInterner fieldNameInterner = FieldNameInterner.getInstance();
+
+        // a decoded document, like a query, does not take up the dictionary
+        Document decodedDocument = decode(document);
+        assertThat(decodedDocument.keySet().iterator().next()).isNotSameAs(fieldNameInterner.intern("someField"));
+
+        Document storedDocument = decode(document);
+        storedDocument.prepareForStorage(null);
+        assertThat(storedDocument.isMaterialized()).isFalse();
+        assertThat(storedDocument.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("someField"));
+        Document embedded = (Document) storedDocument.get("someField");
+        assertThat(embedded.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("otherField"));
+    }
+
+    @Test
+    void testStoredDocumentsDoNotRetainTheBytesOfTheCommand() throws Exception {
+        byte[] command = encode(json("documents: [{_id: 1, sub: {key: 'value'}}], update: {$set: {sub: {key: 'other'}}}"));
+        Document commandDocument = Document.fromRawBson(command, 0);
+
+        Document insertedDocument = (Document) ((List<?>) commandDocument.get("documents")).get(0);
+        insertedDocument.prepareForStorage(null);
+        assertThat(insertedDocument.isMaterialized()).isFalse();
+
+        Document setDocument = (Document) ((Document) commandDocument.get("update")).get("$set");
+        Document updatedDocument = new Document("_id", 2).append("sub", setDocument.get("sub"));
+        updatedDocument.prepareForStorage(null);
+
+        Arrays.fill(command, (byte) 0);
+
+        assertThat(insertedDocument).isEqualTo(json("_id: 1, sub: {key: 'value'}"));
+        assertThat(updatedDocument).isEqualTo(json("_id: 2, sub: {key: 'other'}"));
+    }
+
+    @Test
+    void testDeserializedFieldNamesAreInterned() throws Exception {
+        Document document = new Document(newString("someField"), new Document(newString("otherField"), 1));
+        FieldNameInterner fieldNameInterner = FieldNameInterner.getInstance();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(document);
+        }
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Document deserializedDocument = (Document) objectInputStream.readObject();
+            assertThat(deserializedDocument.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("someField"));
+            Document embedded = (Document) deserializedDocument.get("someField");
+            assertThat(embedded.keySet().iterator().next()).isSameAs(fieldNameInterner.intern("otherField"));
+        }
+    }
+
+    private static String newString(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static byte[] encode(Document document) {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            return ByteBufUtil.getBytes(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static Document decode(Document document) {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            return BsonDecoder.decodeBson(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
 }
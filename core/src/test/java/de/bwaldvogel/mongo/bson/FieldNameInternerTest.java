@@ -0,0 +1,52 @@
+package de.bwaldvogel.mongo.bson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class FieldNameInternerTest {
+
+    @Test
+    void testIntern() throws Exception {
+        FieldNameInterner fieldNameInterner = new FieldNameInterner(10);
+        String fieldName = newString("field");
+
+        assertThat(fieldNameInterner.intern(fieldName)).isSameAs(fieldName);
+        assertThat(fieldNameInterner.intern(fieldName)).isSameAs(fieldName);
+        assertThat(fieldNameInterner.getDeduplicatedFieldNames()).isZero();
+
+        assertThat(fieldNameInterner.intern(newString("field"))).isSameAs(fieldName);
+        assertThat(fieldNameInterner.intern(newString("field"))).isSameAs(fieldName);
+        assertThat(fieldNameInterner.size()).isEqualTo(1);
+        assertThat(fieldNameInterner.getDeduplicatedFieldNames()).isEqualTo(2);
+        assertThat(fieldNameInterner.getDeduplicatedBytes()).isEqualTo(2 * (24 + 24));
+    }
+
+    @Test
+    void testMaxSize() throws Exception {
+        FieldNameInterner fieldNameInterner = new FieldNameInterner(2);
+        fieldNameInterner.intern("a");
+        fieldNameInterner.intern("b");
+
+        String fieldName = newString("c");
+        assertThat(fieldNameInterner.intern(fieldName)).isSameAs(fieldName);
+        assertThat(fieldNameInterner.intern(newString("c"))).isNotSameAs(fieldName);
+        assertThat(fieldNameInterner.size()).isEqualTo(2);
+        assertThat(fieldNameInterner.getMaxSize()).isEqualTo(2);
+    }
+
+    @Test
+    void testLongFieldNamesAreNotInterned() throws Exception {
+        FieldNameInterner fieldNameInterner = new FieldNameInterner(10);
+        String fieldName = "x".repeat(FieldNameInterner.MAX_FIELD_NAME_LENGTH + 1);
+
+        assertThat(fieldNameInterner.intern(fieldName)).isSameAs(fieldName);
+        assertThat(fieldNameInterner.intern(newString(fieldName))).isNotSameAs(fieldName);
+        assertThat(fieldNameInterner.size()).isZero();
+    }
+
+    private static String newString(String value) {
+        return new String(value.toCharArray());
+    }
+
+}
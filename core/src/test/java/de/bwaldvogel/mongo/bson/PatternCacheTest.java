@@ -0,0 +1,69 @@
+package de.bwaldvogel.mongo.bson;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class PatternCacheTest {
+
+    @Test
+    void testGetPattern() throws Exception {
+        PatternCache cache = new PatternCache(10);
+        AtomicInteger compilations = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            Pattern pattern = cache.getPattern("^abc", "i", () -> {
+                compilations.incrementAndGet();
+                return Pattern.compile("^abc", Pattern.CASE_INSENSITIVE);
+            });
+            assertThat(pattern.pattern()).isEqualTo("^abc");
+        }
+
+        cache.getPattern("^abc", "", () -> Pattern.compile("^abc"));
+
+        assertThat(compilations).hasValue(1);
+        assertThat(cache.getHits()).isEqualTo(4);
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.clear();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedPattern() throws Exception {
+        PatternCache cache = new PatternCache(2);
+
+        cache.getPattern("a", "", () -> Pattern.compile("a"));
+        cache.getPattern("b", "", () -> Pattern.compile("b"));
+        cache.getPattern("a", "", () -> Pattern.compile("a"));
+        cache.getPattern("c", "", () -> Pattern.compile("c"));
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(3);
+
+        cache.getPattern("a", "", () -> Pattern.compile("a"));
+        assertThat(cache.getHits()).isEqualTo(2);
+
+        cache.getPattern("b", "", () -> Pattern.compile("b"));
+        assertThat(cache.getMisses()).isEqualTo(4);
+    }
+
+    @Test
+    void testRegularExpressionsShareCompiledPattern() throws Exception {
+        PatternCache cache = PatternCache.getInstance();
+        String regex = "^" + UUID.randomUUID();
+        long misses = cache.getMisses();
+
+        for (int i = 0; i < 100; i++) {
+            BsonRegularExpression regularExpression = BsonRegularExpression.convertToRegularExpression(new Document("$regex", regex));
+            assertThat(regularExpression.matcher(regex.substring(1)).find()).isTrue();
+        }
+
+        assertThat(cache.getMisses() - misses).isEqualTo(1);
+    }
+
+}
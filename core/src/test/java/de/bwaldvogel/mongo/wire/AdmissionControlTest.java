@@ -0,0 +1,156 @@
+package de.bwaldvogel.mongo.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+
+class AdmissionControlTest {
+
+    @Test
+    void testConnectionLimit() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(2, AdmissionControl.UNLIMITED, AdmissionControl.UNLIMITED);
+
+        assertThat(admissionControl.tryOpenConnection()).isTrue();
+        assertThat(admissionControl.tryOpenConnection()).isTrue();
+        assertThat(admissionControl.tryOpenConnection()).isFalse();
+        admissionControl.connectionClosed();
+        assertThat(admissionControl.tryOpenConnection()).isTrue();
+
+        assertThat(admissionControl.getCurrentConnections()).isEqualTo(2);
+        assertThat(admissionControl.getTotalCreatedConnections()).isEqualTo(3);
+        assertThat(admissionControl.getRejectedConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void testRequestLimits() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(AdmissionControl.UNLIMITED, 2, 3);
+
+        assertThat(admissionControl.canStartRequest(1)).isTrue();
+        assertThat(admissionControl.canStartRequest(2)).isFalse();
+
+        admissionControl.requestStarted();
+        admissionControl.requestStarted();
+        assertThat(admissionControl.canStartRequest(0)).isTrue();
+        admissionControl.requestStarted();
+        assertThat(admissionControl.canStartRequest(0)).isFalse();
+        assertThat(admissionControl.getInFlightRequests()).isEqualTo(3);
+
+        admissionControl.requestFinished();
+        assertThat(admissionControl.canStartRequest(0)).isTrue();
+    }
+
+    @Test
+    void testResumePausedChannels() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl();
+        AtomicInteger resumed = new AtomicInteger();
+        Runnable resumeReading = resumed::incrementAndGet;
+
+        admissionControl.requestStarted();
+        admissionControl.requestStarted();
+        admissionControl.registerPausedChannel(resumeReading);
+        admissionControl.registerPausedChannel(resumeReading);
+        admissionControl.requestFinished();
+        assertThat(resumed).hasValue(1);
+
+        admissionControl.unregisterPausedChannel(resumeReading);
+        admissionControl.requestFinished();
+        assertThat(resumed).hasValue(1);
+    }
+
+    @Test
+    void testResumeOnlyAsManyPausedChannelsAsThereAreFreeSlots() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(AdmissionControl.UNLIMITED, 10, 3);
+        List<String> resumed = new ArrayList<>();
+
+        admissionControl.requestStarted();
+        admissionControl.requestStarted();
+        admissionControl.requestStarted();
+        admissionControl.registerPausedChannel(() -> resumed.add("first"));
+        admissionControl.registerPausedChannel(() -> resumed.add("second"));
+        admissionControl.registerPausedChannel(() -> resumed.add("third"));
+
+        admissionControl.requestFinished();
+        assertThat(resumed).containsExactly("first");
+
+        // the resumed channel takes the free slot
+        admissionControl.requestStarted();
+        admissionControl.requestFinished();
+        assertThat(resumed).containsExactly("first", "second");
+
+        admissionControl.requestFinished();
+        assertThat(resumed).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    void testResumeAllPausedChannelsWhenNoRequestIsInFlight() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(AdmissionControl.UNLIMITED, 10, 1);
+        AtomicInteger resumed = new AtomicInteger();
+
+        admissionControl.requestStarted();
+        admissionControl.registerPausedChannel(resumed::incrementAndGet);
+        admissionControl.registerPausedChannel(resumed::incrementAndGet);
+        admissionControl.requestFinished();
+
+        assertThat(resumed).hasValue(2);
+    }
+
+    @Test
+    void testAwaitNoInFlightRequests() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl();
+        assertThat(admissionControl.awaitNoInFlightRequests(0, TimeUnit.MILLISECONDS)).isTrue();
+
+        admissionControl.requestStarted();
+        assertThat(admissionControl.awaitNoInFlightRequests(10, TimeUnit.MILLISECONDS)).isFalse();
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Boolean> finished = CompletableFuture.supplyAsync(() -> {
+            waiting.countDown();
+            try {
+                return admissionControl.awaitNoInFlightRequests(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waiting.await();
+        admissionControl.requestFinished();
+
+        assertThat(finished.get(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void testConnectionStatus() throws Exception {
+        AdmissionControl admissionControl = new AdmissionControl(10, 1, 1);
+        admissionControl.tryOpenConnection();
+        admissionControl.requestStarted();
+        admissionControl.countPausedRead();
+
+        assertThat(admissionControl.getConnectionStatus()).isEqualTo(new Document()
+            .append("current", 1)
+            .append("available", 9)
+            .append("totalCreated", 1L)
+            .append("rejected", 0L)
+            .append("inFlightRequests", 1)
+            .append("pausedReads", 1L));
+    }
+
+    @Test
+    void testIllegalLimits() throws Exception {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> new AdmissionControl(0, 1, 1))
+            .withMessage("Illegal maximum number of connections: 0");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> new AdmissionControl(1, -1, 1))
+            .withMessage("Illegal maximum number of in-flight requests per connection: -1");
+    }
+
+}
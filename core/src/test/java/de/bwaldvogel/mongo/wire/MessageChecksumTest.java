@@ -0,0 +1,117 @@
+package de.bwaldvogel.mongo.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.message.MessageHeader;
+import de.bwaldvogel.mongo.wire.message.MongoMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+
+class MessageChecksumTest {
+
+    @Test
+    void testCalculate() throws Exception {
+        ByteBuf buffer = Unpooled.copiedBuffer("123456789", StandardCharsets.US_ASCII);
+        assertThat(MessageChecksum.calculate(buffer, 0, 9)).isEqualTo(0xE3069283);
+    }
+
+    @Test
+    void testCalculateOverCompositeBuffer() throws Exception {
+        byte[] bytes = "some message that is split into several components".getBytes(StandardCharsets.US_ASCII);
+        CompositeByteBuf buffer = Unpooled.compositeBuffer();
+        buffer.addComponent(true, Unpooled.wrappedBuffer(bytes, 0, 10));
+        buffer.addComponent(true, Unpooled.wrappedBuffer(bytes, 10, 20));
+        buffer.addComponent(true, Unpooled.wrappedBuffer(bytes, 30, bytes.length - 30));
+
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(bytes, 5, bytes.length - 10);
+        assertThat(MessageChecksum.calculate(buffer, 5, bytes.length - 10)).isEqualTo((int) crc32c.getValue());
+    }
+
+    @Test
+    void testCalculateWithLengthField() throws Exception {
+        ByteBuf message = Unpooled.buffer();
+        message.writeIntLE(20);
+        message.writeBytes("some message".getBytes(StandardCharsets.US_ASCII));
+
+        int expectedChecksum = MessageChecksum.calculate(message, 0, message.readableBytes());
+        ByteBuf withoutLength = message.slice(4, message.readableBytes() - 4);
+        assertThat(MessageChecksum.calculate(20, withoutLength, 0, withoutLength.readableBytes()))
+            .isEqualTo(expectedChecksum);
+    }
+
+    @Test
+    void testEncodeAndVerifyChecksum() throws Exception {
+        Document document = new Document("find", "collection").append("$db", "testdb");
+        ByteBuf encodedMessage = encodeWithChecksum(document);
+
+        int length = encodedMessage.getIntLE(0);
+        assertThat(length).isEqualTo(encodedMessage.readableBytes());
+        assertThat(MessageFlag.CHECKSUM_PRESENT.isSet(encodedMessage.getIntLE(16))).isTrue();
+        assertThat(encodedMessage.getIntLE(length - 4))
+            .isEqualTo(MessageChecksum.calculate(encodedMessage, 0, length - 4));
+
+        EmbeddedChannel decoderChannel = newDecoderChannel(true);
+        decoderChannel.writeInbound(encodedMessage);
+        MongoMessage decodedMessage = decoderChannel.readInbound();
+        assertThat(decodedMessage.getDocument()).isEqualTo(document);
+        assertThat(decoderChannel.finish()).isFalse();
+    }
+
+    @Test
+    void testRejectMessageWithWrongChecksum() throws Exception {
+        ByteBuf encodedMessage = encodeWithChecksum(new Document("ping", 1).append("$db", "admin"));
+        corruptChecksum(encodedMessage);
+
+        EmbeddedChannel decoderChannel = newDecoderChannel(true);
+        assertThatExceptionOfType(DecoderException.class)
+            .isThrownBy(() -> decoderChannel.writeInbound(encodedMessage))
+            .withCauseInstanceOf(IOException.class)
+            .withMessageContaining("checksum mismatch in message 23");
+    }
+
+    @Test
+    void testIgnoreWrongChecksumByDefault() throws Exception {
+        Document document = new Document("ping", 1).append("$db", "admin");
+        ByteBuf encodedMessage = encodeWithChecksum(document);
+        corruptChecksum(encodedMessage);
+
+        EmbeddedChannel decoderChannel = newDecoderChannel(false);
+        decoderChannel.writeInbound(encodedMessage);
+        MongoMessage decodedMessage = decoderChannel.readInbound();
+        assertThat(decodedMessage.getDocument()).isEqualTo(document);
+        assertThat(decoderChannel.finish()).isFalse();
+    }
+
+    private static ByteBuf encodeWithChecksum(Document document) {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new MongoWireMessageEncoder(null, true));
+        encoderChannel.writeOutbound(new MongoMessage(null, new MessageHeader(23, 17), document));
+        ByteBuf encodedMessage = encoderChannel.readOutbound();
+        assertThat(encoderChannel.finish()).isFalse();
+        return encodedMessage;
+    }
+
+    private static EmbeddedChannel newDecoderChannel(boolean verifyChecksums) {
+        CompressionContext compressionContext = new CompressionContext(List.of());
+        return new EmbeddedChannel(new MongoWireProtocolHandler(compressionContext, verifyChecksums));
+    }
+
+    private static void corruptChecksum(ByteBuf encodedMessage) {
+        int checksumIndex = encodedMessage.writerIndex() - 4;
+        encodedMessage.setIntLE(checksumIndex, ~encodedMessage.getIntLE(checksumIndex));
+    }
+
+}
@@ -4,9 +4,14 @@ import static de.bwaldvogel.mongo.TestUtils.json;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
 import org.junit.jupiter.api.Test;
 
 import de.bwaldvogel.mongo.MongoBackend;
@@ -15,6 +20,9 @@ import de.bwaldvogel.mongo.wire.message.MessageHeader;
 import de.bwaldvogel.mongo.wire.message.MongoMessage;
 import de.bwaldvogel.mongo.wire.message.MongoQuery;
 import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 
 class MongoDatabaseHandlerTest {
 
@@ -71,4 +79,144 @@ class MongoDatabaseHandlerTest {
         assertThat(responseMessageDoc.get("errmsg")).isEqualTo("Unknown error: unexpected");
         assertThat(responseMessageDoc.get("ok")).isEqualTo(0);
     }
+
+    @Test
+    void testUnacknowledgedMessage() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        when(backend.handleMessage(any())).thenReturn(json("ok: 1"));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoDatabaseHandler(backend, new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE)));
+        MongoMessage request = new MongoMessage(channel, new MessageHeader(100, 0),
+            json("insert: 'collection', documents: [{_id: 1}], $db: 'dbName'"), MessageFlag.MORE_TO_COME.addTo(0));
+        channel.writeInbound(request);
+
+        verify(backend).handleMessage(request);
+        assertThat(channel.outboundMessages()).isEmpty();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void testExhaustCursor() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        when(backend.handleMessage(any()))
+            .thenReturn(cursorResponse(5L, 1), cursorResponse(5L, 2), cursorResponse(0L, 3));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoDatabaseHandler(backend, new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE)));
+        Document getMore = json("getMore: 5, collection: 'collection', $db: 'dbName'");
+        channel.writeInbound(new MongoMessage(channel, new MessageHeader(100, 0), getMore, MessageFlag.EXHAUST_ALLOWED.addTo(0)));
+        while (channel.hasPendingTasks()) {
+            channel.runPendingTasks();
+        }
+
+        MongoMessage first = channel.readOutbound();
+        MongoMessage second = channel.readOutbound();
+        MongoMessage third = channel.readOutbound();
+        assertThat((Object) channel.readOutbound()).isNull();
+
+        assertThat(first.getHeader().getResponseTo()).isEqualTo(100);
+        assertThat(first.isMoreToCome()).isTrue();
+        assertThat(first.getDocument()).isEqualTo(cursorResponse(5L, 1));
+
+        assertThat(second.getHeader().getResponseTo()).isEqualTo(first.getHeader().getRequestID());
+        assertThat(second.isMoreToCome()).isTrue();
+        assertThat(second.getDocument()).isEqualTo(cursorResponse(5L, 2));
+
+        assertThat(third.getHeader().getResponseTo()).isEqualTo(second.getHeader().getRequestID());
+        assertThat(third.isMoreToCome()).isFalse();
+        assertThat(third.getDocument()).isEqualTo(cursorResponse(0L, 3));
+
+        verify(backend, times(3)).handleMessage(any());
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void testGetMoreWithoutExhaustAllowed() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        when(backend.handleMessage(any())).thenReturn(cursorResponse(5L, 1));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoDatabaseHandler(backend, new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE)));
+        Document getMore = json("getMore: 5, collection: 'collection', $db: 'dbName'");
+        channel.writeInbound(new MongoMessage(channel, new MessageHeader(100, 0), getMore));
+        channel.runPendingTasks();
+
+        MongoMessage response = channel.readOutbound();
+        assertThat(response.isMoreToCome()).isFalse();
+        assertThat((Object) channel.readOutbound()).isNull();
+        verify(backend).handleMessage(any());
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void testRejectConnectionAboveLimit() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        DefaultChannelGroup channelGroup = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.UNLIMITED, AdmissionControl.UNLIMITED);
+
+        EmbeddedChannel first = new EmbeddedChannel(new MongoDatabaseHandler(backend, channelGroup, null, null, admissionControl));
+        EmbeddedChannel second = new EmbeddedChannel(new MongoDatabaseHandler(backend, channelGroup, null, null, admissionControl));
+
+        assertThat(first.isOpen()).isTrue();
+        assertThat(second.isOpen()).isFalse();
+        assertThat(channelGroup.contains(first)).isTrue();
+        assertThat(channelGroup.contains(second)).isFalse();
+        assertThat(admissionControl.getCurrentConnections()).isEqualTo(1);
+        assertThat(admissionControl.getRejectedConnections()).isEqualTo(1);
+
+        first.close();
+        assertThat(admissionControl.getCurrentConnections()).isZero();
+        verify(backend).handleClose(first);
+    }
+
+    @Test
+    void testStopReadingAtInFlightRequestLimit() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        when(backend.handleMessage(any())).thenReturn(json("ok: 1"));
+        AdmissionControl admissionControl = new AdmissionControl(AdmissionControl.UNLIMITED, 2, AdmissionControl.UNLIMITED);
+        Queue<Runnable> pendingRequests = new ArrayDeque<>();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoDatabaseHandler(backend,
+            new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE), pendingRequests::add, null, admissionControl));
+
+        channel.writeInbound(new MongoMessage(channel, new MessageHeader(1, 0), json("ping: 1, $db: 'admin'")));
+        assertThat(channel.config().isAutoRead()).isTrue();
+        channel.writeInbound(new MongoMessage(channel, new MessageHeader(2, 0), json("ping: 1, $db: 'admin'")));
+        assertThat(channel.config().isAutoRead()).isFalse();
+        assertThat(admissionControl.getInFlightRequests()).isEqualTo(2);
+        assertThat(admissionControl.getPausedReads()).isEqualTo(1);
+
+        pendingRequests.remove().run();
+        assertThat(channel.config().isAutoRead()).isTrue();
+        pendingRequests.remove().run();
+        assertThat(admissionControl.getInFlightRequests()).isZero();
+
+        assertThat(channel.outboundMessages()).hasSize(2);
+        channel.releaseOutbound();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void testServerStatusReportsConnections() throws Exception {
+        MongoBackend backend = mock(MongoBackend.class);
+        when(backend.handleMessage(any())).thenReturn(json("connections: {current: 1}, ok: 1"));
+        AdmissionControl admissionControl = new AdmissionControl(10, AdmissionControl.UNLIMITED, AdmissionControl.UNLIMITED);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoDatabaseHandler(backend,
+            new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE), null, null, admissionControl));
+        channel.writeInbound(new MongoMessage(channel, new MessageHeader(1, 0), json("serverStatus: 1, $db: 'admin'")));
+
+        MongoMessage response = channel.readOutbound();
+        Document connections = (Document) response.getDocument().get("connections");
+        assertThat(connections.get("current")).isEqualTo(1);
+        assertThat(connections.get("available")).isEqualTo(9);
+        assertThat(connections.get("totalCreated")).isEqualTo(1L);
+        assertThat(connections.get("rejected")).isEqualTo(0L);
+        assertThat(channel.finish()).isFalse();
+    }
+
+    private static Document cursorResponse(long cursorId, int value) {
+        Document cursor = new Document("nextBatch", List.of(new Document("_id", value)))
+            .append("id", cursorId)
+            .append("ns", "dbName.collection");
+        return new Document("cursor", cursor).append("ok", 1.0);
+    }
 }
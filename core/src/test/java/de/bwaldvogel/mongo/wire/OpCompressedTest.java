@@ -0,0 +1,83 @@
+package de.bwaldvogel.mongo.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.wire.compression.CompressionContext;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressor;
+import de.bwaldvogel.mongo.wire.compression.MessageCompressors;
+import de.bwaldvogel.mongo.wire.message.MessageHeader;
+import de.bwaldvogel.mongo.wire.message.MongoMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+
+class OpCompressedTest {
+
+    private static final Document DOCUMENT = new Document("find", "collection")
+        .append("filter", new Document("value", "x".repeat(1000)))
+        .append("$db", "testdb");
+
+    @ParameterizedTest
+    @ValueSource(strings = { "snappy", "zstd", "zlib" })
+    void testEncodeAndDecodeCompressedMessage(String compressorName) throws Exception {
+        MessageCompressor compressor = MessageCompressors.getByName(compressorName);
+        ByteBuf compressedMessage = compress(compressor);
+
+        assertThat(compressedMessage.getIntLE(12)).isEqualTo(OpCode.OP_COMPRESSED.getId());
+        assertThat(compressedMessage.getIntLE(16)).isEqualTo(OpCode.OP_MSG.getId());
+        assertThat(compressedMessage.getByte(24)).isEqualTo(compressor.getId());
+        assertThat(compressedMessage.readableBytes()).isLessThan(500);
+
+        CompressionContext decoderContext = new CompressionContext(List.of(compressor));
+        decoderContext.negotiate(List.of(compressorName));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new MongoWireProtocolHandler(decoderContext));
+        decoderChannel.writeInbound(compressedMessage);
+        MongoMessage decodedMessage = decoderChannel.readInbound();
+
+        assertThat(decodedMessage.getDocument()).isEqualTo(DOCUMENT);
+        assertThat(decodedMessage.getHeader().getRequestID()).isEqualTo(23);
+        assertThat(decodedMessage.getHeader().getResponseTo()).isEqualTo(17);
+        assertThat(decoderContext.removeCompressorForReply(23)).isSameAs(compressor);
+        assertThat(decoderContext.removeCompressorForReply(23)).isNull();
+
+        assertThat(decoderChannel.finish()).isFalse();
+    }
+
+    @Test
+    void testRejectCompressorThatWasNotNegotiated() throws Exception {
+        MessageCompressor compressor = MessageCompressors.getByName("zlib");
+
+        CompressionContext decoderContext = new CompressionContext(List.of(compressor));
+        decoderContext.negotiate(List.of("snappy"));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new MongoWireProtocolHandler(decoderContext));
+        assertThatExceptionOfType(DecoderException.class)
+            .isThrownBy(() -> decoderChannel.writeInbound(compress(compressor)))
+            .withMessageContaining("compressor 2 was not negotiated");
+        assertThat(decoderContext.isCompressedReply(23)).isFalse();
+
+        EmbeddedChannel channelWithoutCompression = new EmbeddedChannel(new MongoWireProtocolHandler());
+        assertThatExceptionOfType(DecoderException.class)
+            .isThrownBy(() -> channelWithoutCompression.writeInbound(compress(compressor)))
+            .withMessageContaining("compressor 2 was not negotiated");
+    }
+
+    private static ByteBuf compress(MessageCompressor compressor) {
+        CompressionContext encoderContext = new CompressionContext(List.of(compressor));
+        encoderContext.registerCompressedRequest(17, compressor);
+
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new MongoWireMessageEncoder(encoderContext));
+        encoderChannel.writeOutbound(new MongoMessage(null, new MessageHeader(23, 17), DOCUMENT));
+        ByteBuf compressedMessage = encoderChannel.readOutbound();
+        assertThat(encoderChannel.finish()).isFalse();
+        return compressedMessage;
+    }
+
+}
@@ -0,0 +1,99 @@
+package de.bwaldvogel.mongo.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.wire.bson.BsonDecoder;
+import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
+import de.bwaldvogel.mongo.wire.message.MessageHeader;
+import de.bwaldvogel.mongo.wire.message.MongoMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+class OutputBuffersTest {
+
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+
+    @Test
+    void testAllocateSmallBuffer() throws Exception {
+        ByteBuf buffer = OutputBuffers.allocate(allocator, 1000);
+        try {
+            assertThat(buffer).isNotInstanceOf(CompositeByteBuf.class);
+            assertThat(buffer.capacity()).isEqualTo(1000);
+            assertThat(buffer.readableBytes()).isZero();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testAllocateBufferOfUnknownSize() throws Exception {
+        ByteBuf buffer = OutputBuffers.allocate(allocator, -1);
+        try {
+            assertThat(buffer).isNotInstanceOf(CompositeByteBuf.class);
+            assertThat(buffer.readableBytes()).isZero();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testAllocateLargeBuffer() throws Exception {
+        int size = OutputBuffers.COMPOSITE_THRESHOLD + OutputBuffers.CHUNK_SIZE / 2;
+        ByteBuf buffer = OutputBuffers.allocate(allocator, size);
+        try {
+            assertThat(buffer).isInstanceOf(CompositeByteBuf.class);
+            assertThat(((CompositeByteBuf) buffer).numComponents()).isEqualTo(5);
+            assertThat(buffer.capacity()).isEqualTo(size);
+            assertThat(buffer.readableBytes()).isZero();
+
+            for (int i = 0; i < size / 4; i++) {
+                buffer.writeIntLE(i);
+            }
+            buffer.writeIntLE(42);
+            assertThat(((CompositeByteBuf) buffer).numComponents()).isEqualTo(6);
+            assertThat(buffer.getIntLE(OutputBuffers.CHUNK_SIZE)).isEqualTo(OutputBuffers.CHUNK_SIZE / 4);
+            assertThat(buffer.getIntLE(size)).isEqualTo(42);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testEncodeLargeMessage() throws Exception {
+        List<Document> firstBatch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            firstBatch.add(new Document("_id", i).append("value", "x".repeat(1000)));
+        }
+        Document document = new Document("cursor", new Document("firstBatch", firstBatch).append("id", 0L))
+            .append("ok", 1.0);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MongoWireMessageEncoder());
+        channel.writeOutbound(new MongoMessage(null, new MessageHeader(23, 17), document));
+        ByteBuf message = channel.readOutbound();
+        try {
+            int expectedSize = 21 + BsonEncoder.calculateEncodedSize(document);
+            assertThat(expectedSize).isGreaterThan(OutputBuffers.COMPOSITE_THRESHOLD);
+            assertThat(message).isInstanceOf(CompositeByteBuf.class);
+            assertThat(message.readableBytes()).isEqualTo(expectedSize);
+            assertThat(message.capacity()).isEqualTo(expectedSize);
+            assertThat(message.getIntLE(0)).isEqualTo(expectedSize);
+            assertThat(message.getIntLE(12)).isEqualTo(OpCode.OP_MSG.getId());
+
+            message.skipBytes(21);
+            assertThat(BsonDecoder.decodeBson(message)).isEqualTo(document);
+        } finally {
+            message.release();
+        }
+
+        assertThat(channel.finish()).isFalse();
+    }
+
+}
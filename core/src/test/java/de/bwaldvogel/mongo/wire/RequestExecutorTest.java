@@ -0,0 +1,113 @@
+package de.bwaldvogel.mongo.wire;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class RequestExecutorTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdownExecutorService() throws Exception {
+        executorService.shutdownNow();
+        assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @Timeout(10)
+    void testRequestsOfChannelAreExecutedInOrder() throws Exception {
+        RequestExecutor requestExecutor = new RequestExecutor(executorService);
+        Executor channelExecutor = requestExecutor.newChannelExecutor();
+
+        List<Integer> executedRequests = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            int request = i;
+            channelExecutor.execute(() -> {
+                executedRequests.add(request);
+                latch.countDown();
+            });
+        }
+
+        latch.await();
+        assertThat(executedRequests).isEqualTo(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+        awaitCompletedRequests(requestExecutor, 100);
+        assertThat(requestExecutor.getQueueDepth()).isZero();
+        assertThat(requestExecutor.getActiveRequests()).isZero();
+    }
+
+    @Test
+    @Timeout(10)
+    void testSlowRequestDoesNotBlockOtherChannels() throws Exception {
+        RequestExecutor requestExecutor = new RequestExecutor(executorService);
+        Executor slowChannel = requestExecutor.newChannelExecutor();
+        Executor fastChannel = requestExecutor.newChannelExecutor();
+
+        CountDownLatch slowRequestStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlowRequest = new CountDownLatch(1);
+        slowChannel.execute(() -> {
+            slowRequestStarted.countDown();
+            awaitUninterruptibly(releaseSlowRequest);
+        });
+        slowChannel.execute(() -> {
+        });
+        slowRequestStarted.await();
+
+        assertThat(requestExecutor.getActiveRequests()).isEqualTo(1);
+        assertThat(requestExecutor.getQueueDepth()).isEqualTo(1);
+        assertThat(requestExecutor.getMaxQueueDepth()).isGreaterThanOrEqualTo(1);
+
+        CountDownLatch fastRequestExecuted = new CountDownLatch(1);
+        fastChannel.execute(fastRequestExecuted::countDown);
+        fastRequestExecuted.await();
+
+        releaseSlowRequest.countDown();
+        awaitCompletedRequests(requestExecutor, 3);
+        assertThat(requestExecutor.getQueueDepth()).isZero();
+        assertThat(requestExecutor).hasToString("RequestExecutor(queueDepth: 0, active: 0)");
+    }
+
+    @Test
+    @Timeout(10)
+    void testFailingRequestDoesNotStopChannel() throws Exception {
+        RequestExecutor requestExecutor = new RequestExecutor(executorService);
+        Executor channelExecutor = requestExecutor.newChannelExecutor();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        channelExecutor.execute(() -> {
+            throw new IllegalStateException("unexpected");
+        });
+        channelExecutor.execute(latch::countDown);
+
+        latch.await();
+        awaitCompletedRequests(requestExecutor, 2);
+    }
+
+    private static void awaitCompletedRequests(RequestExecutor requestExecutor, long expectedRequests) throws InterruptedException {
+        while (requestExecutor.getCompletedRequests() < expectedRequests) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package de.bwaldvogel.mongo.wire.bson;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -12,6 +14,7 @@ import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.bson.MaxKey;
 import de.bwaldvogel.mongo.bson.MinKey;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 
 public class BsonDecoderTest {
@@ -47,4 +50,121 @@ public class BsonDecoderTest {
             }
         }
     }
+
+    @Test
+    void testDecodeLazily() throws Exception {
+        Document document = new Document("_id", 1)
+            .append("sub", new Document("key", "value"))
+            .append("array", List.of(1, new Document("a", "b"), "c"));
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            Document decodedDocument = BsonDecoder.decodeBson(buffer);
+            assertThat(buffer.readableBytes()).isZero();
+            assertThat(decodedDocument.isMaterialized()).isFalse();
+
+            assertThat(decodedDocument.get("_id")).isEqualTo(1);
+            assertThat(decodedDocument.isMaterialized()).isTrue();
+
+            Document subDocument = (Document) decodedDocument.get("sub");
+            assertThat(subDocument.isMaterialized()).isFalse();
+            assertThat(subDocument).containsExactly(entry("key", "value"));
+
+            @SuppressWarnings("unchecked")
+            List<Object> array = (List<Object>) decodedDocument.get("array");
+            assertThat(array).containsExactly(1, new Document("a", "b"), "c");
+
+            assertThat(decodedDocument).isEqualTo(document);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testEncodeUnmaterializedDocument() throws Exception {
+        Document document = new Document("_id", 1).append("sub", new Document("key", "value"));
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            byte[] encoded = ByteBufUtil.getBytes(buffer);
+            Document decodedDocument = BsonDecoder.decodeBson(buffer);
+            assertThat(decodedDocument.get("_id")).isEqualTo(1);
+
+            buffer.clear();
+            BsonEncoder.encodeDocument(decodedDocument, buffer);
+            assertThat(ByteBufUtil.getBytes(buffer)).isEqualTo(encoded);
+            assertThat(decodedDocument.get("sub")).isEqualTo(new Document("key", "value"));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testDecodeIllegalEmbeddedDocument() throws Exception {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(new Document("sub", new Document("key", 1)), buffer);
+            // replace the type of the embedded int32 value
+            int typeIndex = buffer.indexOf(0, buffer.writerIndex(), (byte) 'k') - 1;
+            buffer.setByte(typeIndex, 0x42);
+
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> BsonDecoder.decodeBson(buffer))
+                .withMessage("unknown type: 0x42");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testDecodeDuplicateField() throws Exception {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(new Document("a", 1).append("b", 2), buffer);
+            buffer.setByte(buffer.indexOf(0, buffer.writerIndex(), (byte) 'b'), 'a');
+
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> BsonDecoder.decodeBson(buffer))
+                .withMessage("Document already contains field 'a'");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testDecodeDuplicateFieldInEmbeddedDocument() throws Exception {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(new Document("_id", 1)
+                .append("x", new Document("a", 1).append("b", 2))
+                .append("y", List.of(1, 2)), buffer);
+            buffer.setByte(buffer.indexOf(0, buffer.writerIndex(), (byte) 'b'), 'a');
+
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> BsonDecoder.decodeBson(buffer))
+                .withMessage("Document already contains field 'a'");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testFieldNamesOfStoredDocumentsAreShared() throws Exception {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(new Document("someFieldName", 1), buffer);
+            Document first = BsonDecoder.decodeBson(buffer.duplicate());
+            Document second = BsonDecoder.decodeBson(buffer.duplicate());
+            assertThat(first.keySet().iterator().next()).isNotSameAs(second.keySet().iterator().next());
+
+            first.prepareForStorage(null);
+            second.prepareForStorage(null);
+            assertThat(first.keySet().iterator().next()).isSameAs(second.keySet().iterator().next());
+        } finally {
+            buffer.release();
+        }
+    }
+
 }
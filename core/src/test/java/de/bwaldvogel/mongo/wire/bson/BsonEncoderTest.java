@@ -2,15 +2,25 @@ package de.bwaldvogel.mongo.wire.bson;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
+import de.bwaldvogel.mongo.bson.BinData;
+import de.bwaldvogel.mongo.bson.BsonJavaScript;
+import de.bwaldvogel.mongo.bson.BsonRegularExpression;
+import de.bwaldvogel.mongo.bson.Decimal128;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.bson.ObjectId;
 import de.bwaldvogel.mongo.wire.BsonConstants;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 
 public class BsonEncoderTest {
@@ -51,4 +61,123 @@ public class BsonEncoderTest {
         }
     }
 
+    @Test
+    void testEncodeLargeArray() throws Exception {
+        List<Integer> values = IntStream.range(0, 2500).boxed().collect(Collectors.toList());
+        Document document = new Document("array", values).append("set", new LinkedHashSet<>(List.of("a", "b")));
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            Document decodedDocument = BsonDecoder.decodeBson(buffer);
+            assertThat(decodedDocument.get("array")).isEqualTo(values);
+            assertThat(decodedDocument.get("set")).isEqualTo(List.of("a", "b"));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testEncodeUnicodeKeysAndValues() throws Exception {
+        String string = "\u0442\u0435\u0441\u0442 \uD83D\uDE00";
+        Document document = new Document(string, string);
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            ByteBuf expected = Unpooled.buffer();
+            try {
+                expected.writeIntLE(4 + 1 + utf8.length + 1 + 4 + utf8.length + 1 + 1);
+                expected.writeByte(BsonConstants.TYPE_UTF8_STRING);
+                expected.writeBytes(utf8).writeByte(0);
+                expected.writeIntLE(utf8.length + 1);
+                expected.writeBytes(utf8).writeByte(0);
+                expected.writeByte(BsonConstants.TERMINATING_BYTE);
+                assertThat(ByteBufUtil.getBytes(buffer)).isEqualTo(ByteBufUtil.getBytes(expected));
+            } finally {
+                expected.release();
+            }
+
+            assertThat(BsonDecoder.decodeBson(buffer)).isEqualTo(document);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testCalculateEncodedSize() throws Exception {
+        Document document = new Document("_id", new ObjectId())
+            .append("string", "\u0442\u0435\u0441\u0442 \uD83D\uDE00")
+            .append("\u00fcmlaut", 1.5)
+            .append("array", IntStream.range(0, 1200).boxed().collect(Collectors.toList()))
+            .append("sub", new Document("null", null).append("bool", true).append("long", 1L))
+            .append("data", new BinData(new byte[] { 1, 2, 3 }))
+            .append("uuid", UUID.randomUUID())
+            .append("regex", new BsonRegularExpression("^a.*", "i"))
+            .append("date", Instant.now())
+            .append("decimal", Decimal128.ONE)
+            .append("js", new BsonJavaScript("function() {}"));
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            assertThat(BsonEncoder.calculateEncodedSize(document)).isEqualTo(buffer.writerIndex());
+
+            Document lazyDocument = BsonDecoder.decodeBson(buffer.duplicate());
+            assertThat(BsonEncoder.calculateEncodedSize(lazyDocument)).isEqualTo(buffer.writerIndex());
+            assertThat(lazyDocument.isMaterialized()).isFalse();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    void testCalculateEncodedSizeDifference() throws Exception {
+        Document address = new Document("street", "Main Street").append("zip", 12345);
+        Document oldDocument = new Document("_id", 1)
+            .append("name", "foo")
+            .append("address", address)
+            .append("tags", List.of("a", "b"))
+            .append("removed", 1.5);
+
+        Document newDocument = oldDocument.clone();
+        newDocument.put("name", "foobar");
+        newDocument.put("address", address.clone().append("zip", "12345").append("city", "\u00fcberall"));
+        newDocument.put("tags", List.of("a", "b", "c"));
+        newDocument.remove("removed");
+        newDocument.put("added", new Document("x", null));
+
+        assertSizeDifference(oldDocument, newDocument);
+        assertSizeDifference(newDocument, oldDocument);
+        assertSizeDifference(oldDocument, oldDocument);
+        assertSizeDifference(oldDocument, new Document("_id", 1).append("address", "replaced"));
+
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(oldDocument, buffer);
+            Document lazyDocument = BsonDecoder.decodeBson(buffer);
+            assertSizeDifference(lazyDocument, newDocument);
+            assertThat(lazyDocument.isMaterialized()).isFalse();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static void assertSizeDifference(Document oldDocument, Document newDocument) {
+        int expectedDifference = encodedSize(newDocument) - encodedSize(oldDocument);
+        assertThat(BsonEncoder.calculateEncodedSizeDifference(oldDocument, newDocument)).isEqualTo(expectedDifference);
+    }
+
+    private static int encodedSize(Document document) {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            BsonEncoder.encodeDocument(document, buffer);
+            return buffer.writerIndex();
+        } finally {
+            buffer.release();
+        }
+    }
+
 }
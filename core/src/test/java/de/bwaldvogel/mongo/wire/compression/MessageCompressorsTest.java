@@ -0,0 +1,58 @@
+package de.bwaldvogel.mongo.wire.compression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.exception.MongoServerException;
+
+class MessageCompressorsTest {
+
+    @Test
+    void testAvailableCompressors() throws Exception {
+        assertThat(MessageCompressors.getAvailableCompressors())
+            .extracting(MessageCompressor::getName)
+            .containsExactly("snappy", "zstd", "zlib");
+
+        assertThat(MessageCompressors.getByName("zlib").getId()).isEqualTo((byte) 2);
+        assertThat(MessageCompressors.getById((byte) 1).getName()).isEqualTo("snappy");
+        assertThat(MessageCompressors.getByName("unknown")).isNull();
+        assertThat(MessageCompressors.getById((byte) 0)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "snappy", "zstd", "zlib" })
+    void testCompressAndDecompress(String compressorName) throws Exception {
+        MessageCompressor compressor = MessageCompressors.getByName(compressorName);
+        byte[] data = "abc".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = compressor.compress(data);
+        assertThat(compressed.length).isLessThan(data.length / 10);
+        assertThat(compressor.decompress(compressed, data.length)).isEqualTo(data);
+
+        assertThatExceptionOfType(MongoServerException.class)
+            .isThrownBy(() -> compressor.decompress(compressed, data.length + 1));
+    }
+
+    @Test
+    void testNegotiate() throws Exception {
+        CompressionContext compressionContext = new CompressionContext(List.of(
+            MessageCompressors.getByName("zstd"),
+            MessageCompressors.getByName("zlib")));
+
+        assertThat(compressionContext.getNegotiatedCompressor(ZlibCompressor.ID)).isNull();
+
+        assertThat(compressionContext.negotiate(List.of("zlib", "snappy", "zstd"))).containsExactly("zlib", "zstd");
+        assertThat(compressionContext.getNegotiatedCompressor(ZlibCompressor.ID)).isSameAs(MessageCompressors.getByName("zlib"));
+
+        assertThat(compressionContext.negotiate(List.of("snappy", "noop"))).isEmpty();
+        assertThat(compressionContext.getNegotiatedCompressor(ZlibCompressor.ID)).isNull();
+    }
+
+}
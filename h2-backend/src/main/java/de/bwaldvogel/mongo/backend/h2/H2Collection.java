@@ -9,7 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.bwaldvogel.mongo.MongoDatabase;
-import de.bwaldvogel.mongo.backend.AbstractSynchronizedMongoCollection;
+import de.bwaldvogel.mongo.backend.AbstractReadWriteLockedMongoCollection;
 import de.bwaldvogel.mongo.backend.Assert;
 import de.bwaldvogel.mongo.backend.CollectionOptions;
 import de.bwaldvogel.mongo.backend.CursorRegistry;
@@ -20,20 +20,23 @@ import de.bwaldvogel.mongo.backend.Utils;
 import de.bwaldvogel.mongo.backend.ValueComparator;
 import de.bwaldvogel.mongo.bson.Document;
 
-public class H2Collection extends AbstractSynchronizedMongoCollection<Object> {
+public class H2Collection extends AbstractReadWriteLockedMongoCollection<Object> {
 
     private static final Logger log = LoggerFactory.getLogger(H2Collection.class);
 
     private final MVMap<Object, Document> dataMap;
     private final MVMap<String, Object> metaMap;
+    private final MVMap<Object, Integer> sizeMap;
 
     private static final String DATA_SIZE_KEY = "dataSize";
 
     public H2Collection(MongoDatabase database, String collectionName, CollectionOptions options,
-                        MVMap<Object, Document> dataMap, MVMap<String, Object> metaMap, CursorRegistry cursorRegistry) {
+                        MVMap<Object, Document> dataMap, MVMap<String, Object> metaMap, MVMap<Object, Integer> sizeMap,
+                        CursorRegistry cursorRegistry) {
         super(database, collectionName, options, cursorRegistry);
         this.dataMap = dataMap;
         this.metaMap = metaMap;
+        this.sizeMap = sizeMap;
         if (!this.metaMap.containsKey(DATA_SIZE_KEY)) {
             this.metaMap.put(DATA_SIZE_KEY, Long.valueOf(0));
         } else {
@@ -56,6 +59,26 @@ public class H2Collection extends AbstractSynchronizedMongoCollection<Object> {
         return value.intValue();
     }
 
+    @Override
+    protected int getDocumentSize(Object position, Document document) {
+        Integer size = sizeMap.get(Missing.ofNullable(position));
+        if (size == null) {
+            // stored before the sizes of the documents were kept
+            return super.getDocumentSize(position, document);
+        }
+        return size.intValue();
+    }
+
+    @Override
+    protected void storeDocumentSize(Object position, int size) {
+        sizeMap.put(Missing.ofNullable(position), Integer.valueOf(size));
+    }
+
+    @Override
+    protected void updateDocumentSize(Object position, int sizeDelta) {
+        sizeMap.computeIfPresent(Missing.ofNullable(position), (key, size) -> Integer.valueOf(size.intValue() + sizeDelta));
+    }
+
     @Override
     protected Object addDocumentInternal(Document document) {
         final Object key;
@@ -91,6 +114,7 @@ public class H2Collection extends AbstractSynchronizedMongoCollection<Object> {
         if (remove == null) {
             throw new NoSuchElementException("No document with key " + position);
         }
+        sizeMap.remove(Missing.ofNullable(position));
     }
 
     @Override
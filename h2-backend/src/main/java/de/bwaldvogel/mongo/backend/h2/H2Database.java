@@ -25,6 +25,7 @@ public class H2Database extends AbstractSynchronizedMongoDatabase<Object> {
     private static final Logger log = LoggerFactory.getLogger(H2Database.class);
 
     private static final String META_PREFIX = "meta.";
+    private static final String SIZES_PREFIX = "sizes.";
     static final String DATABASES_PREFIX = "databases.";
 
     private final MVStore mvStore;
@@ -61,6 +62,7 @@ public class H2Database extends AbstractSynchronizedMongoDatabase<Object> {
             .filter(name -> name.startsWith(databaseName + ".")
                 || name.startsWith(DATABASES_PREFIX + databaseName)
                 || name.startsWith(META_PREFIX + databaseName)
+                || name.startsWith(SIZES_PREFIX + databaseName)
             )
             .map(mvStore::openMap)
             .collect(Collectors.toList());
@@ -75,7 +77,8 @@ public class H2Database extends AbstractSynchronizedMongoDatabase<Object> {
         String fullCollectionName = getFullCollectionNamespace(collectionName);
         MVMap<Object, Document> dataMap = mvStore.openMap(DATABASES_PREFIX + fullCollectionName);
         MVMap<String, Object> metaMap = mvStore.openMap(META_PREFIX + fullCollectionName);
-        return new H2Collection(this, collectionName, options, dataMap, metaMap, cursorRegistry);
+        MVMap<Object, Integer> sizeMap = mvStore.openMap(SIZES_PREFIX + fullCollectionName);
+        return new H2Collection(this, collectionName, options, dataMap, metaMap, sizeMap, cursorRegistry);
     }
 
     @Override
@@ -99,8 +102,10 @@ public class H2Database extends AbstractSynchronizedMongoDatabase<Object> {
         String fullCollectionName = getFullCollectionNamespace(collectionName);
         MVMap<Object, Document> dataMap = mvStore.openMap(DATABASES_PREFIX + fullCollectionName);
         MVMap<String, Object> metaMap = mvStore.openMap(META_PREFIX + fullCollectionName);
+        MVMap<Object, Integer> sizeMap = mvStore.openMap(SIZES_PREFIX + fullCollectionName);
         mvStore.removeMap(dataMap);
         mvStore.removeMap(metaMap);
+        mvStore.removeMap(sizeMap);
     }
 
     @Override
@@ -110,9 +115,11 @@ public class H2Database extends AbstractSynchronizedMongoDatabase<Object> {
         String newFullName = getFullCollectionNamespace(newCollectionName);
         MVMap<Object, Document> dataMap = mvStore.openMap(DATABASES_PREFIX + fullCollectionName);
         MVMap<String, Object> metaMap = mvStore.openMap(META_PREFIX + fullCollectionName);
+        MVMap<Object, Integer> sizeMap = mvStore.openMap(SIZES_PREFIX + fullCollectionName);
 
         mvStore.renameMap(dataMap, DATABASES_PREFIX + newFullName);
         mvStore.renameMap(metaMap, META_PREFIX + newFullName);
+        mvStore.renameMap(sizeMap, SIZES_PREFIX + newFullName);
     }
 
 }
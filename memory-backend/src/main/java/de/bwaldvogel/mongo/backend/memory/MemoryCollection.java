@@ -1,6 +1,7 @@
 package de.bwaldvogel.mongo.backend.memory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -10,19 +11,22 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import de.bwaldvogel.mongo.MongoDatabase;
-import de.bwaldvogel.mongo.backend.AbstractSynchronizedMongoCollection;
+import de.bwaldvogel.mongo.backend.AbstractReadWriteLockedMongoCollection;
 import de.bwaldvogel.mongo.backend.CollectionOptions;
 import de.bwaldvogel.mongo.backend.CursorRegistry;
 import de.bwaldvogel.mongo.backend.DocumentWithPosition;
 import de.bwaldvogel.mongo.backend.QueryResult;
 import de.bwaldvogel.mongo.bson.Document;
 
-public class MemoryCollection extends AbstractSynchronizedMongoCollection<Integer> {
+public class MemoryCollection extends AbstractReadWriteLockedMongoCollection<Integer> {
 
     private final List<Document> documents = new ArrayList<>();
     private final Queue<Integer> emptyPositions = new LinkedList<>();
     private final AtomicInteger dataSize = new AtomicInteger();
 
+    // the encoded size of the document at the same position in 'documents'
+    private int[] documentSizes = new int[16];
+
     public MemoryCollection(MongoDatabase database, String collectionName,
                             CollectionOptions options, CursorRegistry cursorRegistry) {
         super(database, collectionName, options, cursorRegistry);
@@ -38,6 +42,25 @@ public class MemoryCollection extends AbstractSynchronizedMongoCollection<Intege
         return dataSize.get();
     }
 
+    @Override
+    protected int getDocumentSize(Integer position, Document document) {
+        return documentSizes[position.intValue()];
+    }
+
+    @Override
+    protected void storeDocumentSize(Integer position, int size) {
+        int index = position.intValue();
+        if (index >= documentSizes.length) {
+            documentSizes = Arrays.copyOf(documentSizes, Math.max(documentSizes.length * 2, index + 1));
+        }
+        documentSizes[index] = size;
+    }
+
+    @Override
+    protected void updateDocumentSize(Integer position, int sizeDelta) {
+        documentSizes[position.intValue()] += sizeDelta;
+    }
+
     @Override
     protected Integer addDocumentInternal(Document document) {
         Integer position = emptyPositions.poll();
@@ -70,13 +93,13 @@ public class MemoryCollection extends AbstractSynchronizedMongoCollection<Intege
     }
 
     @Override
-    public synchronized int count() {
-        return documents.size() - emptyPositions.size();
+    public int count() {
+        return readLocked(() -> Integer.valueOf(documents.size() - emptyPositions.size())).intValue();
     }
 
     @Override
-    public synchronized boolean isEmpty() {
-        return documents.isEmpty() || super.isEmpty();
+    public boolean isEmpty() {
+        return readLocked(() -> Boolean.valueOf(documents.size() == emptyPositions.size())).booleanValue();
     }
 
     @Override
@@ -7,6 +7,7 @@ import de.bwaldvogel.mongo.backend.CollectionOptions;
 import de.bwaldvogel.mongo.backend.CursorRegistry;
 import de.bwaldvogel.mongo.backend.Index;
 import de.bwaldvogel.mongo.backend.IndexKey;
+import de.bwaldvogel.mongo.backend.memory.index.MemorySecondaryIndex;
 import de.bwaldvogel.mongo.backend.memory.index.MemoryUniqueIndex;
 
 public class MemoryDatabase extends AbstractSynchronizedMongoDatabase<Integer> {
@@ -26,6 +27,11 @@ public class MemoryDatabase extends AbstractSynchronizedMongoDatabase<Integer> {
         return new MemoryUniqueIndex(indexName, keys, sparse);
     }
 
+    @Override
+    protected Index<Integer> openOrCreateSecondaryIndex(String collectionName, String indexName, List<IndexKey> keys, boolean sparse) {
+        return new MemorySecondaryIndex(indexName, keys, sparse);
+    }
+
     @Override
     protected long getStorageSize() {
         return 0;
@@ -0,0 +1,90 @@
+package de.bwaldvogel.mongo.backend.memory.index;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import de.bwaldvogel.mongo.backend.AbstractSecondaryIndex;
+import de.bwaldvogel.mongo.backend.IndexKey;
+import de.bwaldvogel.mongo.backend.KeyValue;
+import de.bwaldvogel.mongo.backend.KeyValueComparator;
+import de.bwaldvogel.mongo.wire.bson.BsonEncoder;
+
+public class MemorySecondaryIndex extends AbstractSecondaryIndex<Integer> {
+
+    // positions are kept sorted to return documents in their natural order
+    private final NavigableMap<KeyValue, NavigableSet<Integer>> index = new ConcurrentSkipListMap<>(KeyValueComparator.getInstance());
+
+    public MemorySecondaryIndex(String name, List<IndexKey> keys, boolean sparse) {
+        super(name, keys, sparse);
+    }
+
+    @Override
+    public long getCount() {
+        return index.values().stream()
+            .mapToLong(Set::size)
+            .sum();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    @Override
+    public long getDataSize() {
+        // the encoded key values and one position per indexed document
+        return index.entrySet().stream()
+            .mapToLong(entry -> calculateKeySize(entry.getKey()) + (long) Integer.BYTES * entry.getValue().size())
+            .sum();
+    }
+
+    private static long calculateKeySize(KeyValue keyValue) {
+        return keyValue.stream()
+            .mapToLong(BsonEncoder::calculateEncodedValueSize)
+            .sum();
+    }
+
+    @Override
+    protected void addPosition(KeyValue keyValue, Integer position) {
+        index.computeIfAbsent(keyValue, k -> new TreeSet<>()).add(position);
+    }
+
+    @Override
+    protected void removePosition(KeyValue keyValue, Integer position) {
+        index.computeIfPresent(keyValue, (k, positions) -> {
+            positions.remove(position);
+            return positions.isEmpty() ? null : positions;
+        });
+    }
+
+    @Override
+    protected Collection<Integer> getPositions(KeyValue keyValue) {
+        Collection<Integer> positions = index.get(keyValue);
+        if (positions == null) {
+            return List.of();
+        }
+        return positions;
+    }
+
+    @Override
+    protected NavigableMap<KeyValue, NavigableSet<Integer>> getSortedEntries() {
+        return index;
+    }
+
+    @Override
+    protected Set<Integer> createPositionSet() {
+        return new TreeSet<>();
+    }
+
+    @Override
+    public void drop() {
+        super.drop();
+        index.clear();
+    }
+
+}
@@ -1,17 +1,22 @@
 package de.bwaldvogel.mongo.backend.memory.index;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.bwaldvogel.mongo.backend.AbstractUniqueIndex;
 import de.bwaldvogel.mongo.backend.IndexKey;
 import de.bwaldvogel.mongo.backend.KeyValue;
+import de.bwaldvogel.mongo.backend.KeyValueComparator;
 
 public class MemoryUniqueIndex extends AbstractUniqueIndex<Integer> {
 
-    private final Map<KeyValue, Integer> index = new ConcurrentHashMap<>();
+    private final NavigableMap<KeyValue, Integer> index = new ConcurrentSkipListMap<>(KeyValueComparator.getInstance());
+
+    // the size of a ConcurrentSkipListMap is not a constant-time operation
+    private final AtomicInteger count = new AtomicInteger();
 
     public MemoryUniqueIndex(String name, List<IndexKey> keys, boolean sparse) {
         super(name, keys, sparse);
@@ -19,7 +24,7 @@ public class MemoryUniqueIndex extends AbstractUniqueIndex<Integer> {
 
     @Override
     public long getCount() {
-        return index.size();
+        return count.get();
     }
 
     @Override
@@ -34,13 +39,21 @@ public class MemoryUniqueIndex extends AbstractUniqueIndex<Integer> {
 
     @Override
     protected Integer removeDocument(KeyValue keyValue) {
-        return index.remove(keyValue);
+        Integer position = index.remove(keyValue);
+        if (position != null) {
+            count.decrementAndGet();
+        }
+        return position;
     }
 
     @Override
     protected boolean putKeyPosition(KeyValue keyValue, Integer position) {
         Integer oldValue = index.putIfAbsent(keyValue, position);
-        return oldValue == null;
+        if (oldValue != null) {
+            return false;
+        }
+        count.incrementAndGet();
+        return true;
     }
 
     @Override
@@ -53,4 +66,9 @@ public class MemoryUniqueIndex extends AbstractUniqueIndex<Integer> {
         return index.entrySet();
     }
 
+    @Override
+    protected NavigableMap<KeyValue, Integer> getSortedEntries() {
+        return index;
+    }
+
 }
@@ -0,0 +1,205 @@
+package de.bwaldvogel.mongo.backend.memory.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.bwaldvogel.mongo.backend.IndexKey;
+import de.bwaldvogel.mongo.bson.BsonRegularExpression;
+import de.bwaldvogel.mongo.bson.Document;
+import de.bwaldvogel.mongo.exception.CannotIndexParallelArraysError;
+
+class MemorySecondaryIndexTest {
+
+    @Test
+    void testGetPositions() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        index.add(new Document("a", 1), 0, null);
+        index.add(new Document("a", 2), 1, null);
+        index.add(new Document("a", 1.0), 2, null);
+        index.add(new Document("b", 1), 3, null);
+
+        assertThat(index.getCount()).isEqualTo(4);
+        assertThat(index.getPositions(new Document("a", 1))).containsExactly(0, 2);
+        assertThat(index.getPositions(new Document("a", 2L))).containsExactly(1);
+        assertThat(index.getPositions(new Document("a", 3))).isEmpty();
+        assertThat(index.getPositions(new Document("a", new Document("$eq", 2)))).containsExactly(1);
+        assertThat(index.getPositions(new Document("a", new Document("$in", List.of(2, 1, 3))))).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void testGetDataSize() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1", List.of(new IndexKey("a", true)), false);
+        assertThat(index.getDataSize()).isZero();
+
+        index.add(new Document("a", 1), 0, null);
+        index.add(new Document("a", 1.0), 1, null);
+        index.add(new Document("a", "abc"), 2, null);
+        index.add(new Document("b", 1), 3, null);
+
+        // double key with two positions, string key and null key with one position each
+        assertThat(index.getDataSize()).isEqualTo((8 + 2 * 4) + (8 + 4) + (0 + 4));
+
+        index.remove(new Document("a", 1), 0);
+        index.remove(new Document("b", 1), 3);
+        assertThat(index.getDataSize()).isEqualTo((8 + 4) + (8 + 4));
+    }
+
+    @Test
+    void testGetPositions_multiKey() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a.b_1", List.of(new IndexKey("a.b", true)), false);
+
+        index.add(new Document("a", List.of(new Document("b", "x"), new Document("b", "y"))), 0, null);
+        index.add(new Document("a", new Document("b", List.of("y", "z"))), 1, null);
+
+        assertThat(index.getPositions(new Document("a.b", "x"))).containsExactly(0);
+        assertThat(index.getPositions(new Document("a.b", "y"))).containsExactly(0, 1);
+        assertThat(index.getPositions(new Document("a.b", "z"))).containsExactly(1);
+    }
+
+    @Test
+    void testGetPositions_compound() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1_b_1", List.of(
+            new IndexKey("a", true),
+            new IndexKey("b", true)
+        ), false);
+
+        index.add(new Document("a", 1).append("b", 2), 0, null);
+        index.add(new Document("a", 1).append("b", 3), 1, null);
+        index.add(new Document("a", 1).append("b", List.of(2, 3)), 2, null);
+
+        assertThat(index.getPositions(new Document("a", 1).append("b", 2))).containsExactly(0, 2);
+        assertThat(index.getPositions(new Document("b", 3).append("a", 1))).containsExactly(1, 2);
+    }
+
+    @Test
+    void testRemoveAndUpdate() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        Document document = new Document("a", List.of(1, 2));
+        index.add(document, 0, null);
+        index.add(new Document("a", 1), 1, null);
+
+        index.updateInPlace(document, new Document("a", 3), 0, null);
+        assertThat(index.getPositions(new Document("a", 1))).containsExactly(1);
+        assertThat(index.getPositions(new Document("a", 2))).isEmpty();
+        assertThat(index.getPositions(new Document("a", 3))).containsExactly(0);
+
+        index.remove(new Document("a", 3), 0);
+        index.remove(new Document("a", 1), 1);
+        assertThat(index.isEmpty()).isTrue();
+        assertThat(index.getCount()).isZero();
+    }
+
+    @Test
+    void testCanHandle() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        assertThat(index.canHandle(new Document("a", 1))).isTrue();
+        assertThat(index.canHandle(new Document("a", "x").append("b", 2))).isTrue();
+        assertThat(index.canHandle(new Document("a", new Document("b", 1)))).isTrue();
+        assertThat(index.canHandle(new Document("a", new Document("$eq", 1)))).isTrue();
+        assertThat(index.canHandle(new Document("a", new Document("$in", List.of(1, 2))))).isTrue();
+        assertThat(index.canHandle(new Document("a", new BsonRegularExpression("^x")))).isTrue();
+        assertThat(index.canHandle(new Document("a", new Document("$gt", 1)))).isTrue();
+
+        assertThat(index.canHandle(new Document())).isFalse();
+        assertThat(index.canHandle(new Document("b", 1))).isFalse();
+        assertThat(index.canHandle(new Document("a", null))).isFalse();
+        assertThat(index.canHandle(new Document("a", List.of(1, 2)))).isFalse();
+        assertThat(index.canHandle(new Document("a", new Document("$in", List.of(1, 2)).append("$ne", 1)))).isFalse();
+        assertThat(index.canHandle(new Document("a", new Document("$in", List.of(1, new BsonRegularExpression("^x")))))).isFalse();
+        assertThat(index.canHandle(new Document("a", new Document("$in", Arrays.asList(1, null))))).isFalse();
+    }
+
+    @Test
+    void testCanHandle_compound() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1_b_1", List.of(
+            new IndexKey("a", true),
+            new IndexKey("b", true)
+        ), false);
+
+        assertThat(index.canHandle(new Document("a", 1).append("b", 2))).isTrue();
+        assertThat(index.canHandle(new Document("a", 1))).isTrue();
+        assertThat(index.canHandle(new Document("a", 1).append("b", new Document("$in", List.of(1, 2))))).isTrue();
+        assertThat(index.canHandle(new Document("b", 1))).isFalse();
+    }
+
+    @Test
+    void testGetPositions_range() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1_b_1", List.of(
+            new IndexKey("a", true),
+            new IndexKey("b", true)
+        ), false);
+
+        index.add(new Document("a", 1).append("b", 3), 0, null);
+        index.add(new Document("a", 1).append("b", 1), 1, null);
+        index.add(new Document("a", 2).append("b", 2), 2, null);
+        index.add(new Document("a", 1).append("b", 2), 3, null);
+        index.add(new Document("a", 1).append("b", List.of(0, 5)), 4, null);
+
+        assertThat(index.getPositions(new Document("a", 1))).containsExactly(0, 1, 3, 4);
+        assertThat(index.getPositions(new Document("a", 1).append("b", new Document("$gte", 2)))).containsExactly(0, 3, 4);
+        assertThat(index.getPositions(new Document("a", new Document("$gt", 1)))).containsExactly(2);
+    }
+
+    @Test
+    void testGetPositionsInOrder() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1_b_1", List.of(
+            new IndexKey("a", true),
+            new IndexKey("b", true)
+        ), false);
+
+        index.add(new Document("a", 1).append("b", 3), 0, null);
+        index.add(new Document("a", 1).append("b", 1), 1, null);
+        index.add(new Document("a", 2).append("b", 2), 2, null);
+        index.add(new Document("a", 1).append("b", 2), 3, null);
+        index.add(new Document("a", 1).append("b", 1), 4, null);
+        index.add(new Document("c", 1), 5, null);
+
+        // documents with the same value of a are ordered by b
+        assertThat(index.getPositionsInOrder(new Document(), new Document("a", 1)))
+            .containsExactly(5, 1, 4, 3, 0, 2);
+        assertThat(index.getPositionsInOrder(new Document(), new Document("a", -1).append("b", -1)))
+            .containsExactly(2, 0, 3, 1, 4, 5);
+        assertThat(index.getPositionsInOrder(new Document("a", 1), new Document("b", -1)))
+            .containsExactly(0, 3, 1, 4);
+        assertThat(index.getPositionsInOrder(new Document("a", 1).append("b", new Document("$lt", 3)), new Document("a", 1).append("b", 1)))
+            .containsExactly(1, 4, 3);
+
+        assertThat(index.getPositionsInOrder(new Document(), new Document("b", 1))).isNull();
+        assertThat(index.getPositionsInOrder(new Document(), new Document("a", 1).append("b", -1))).isNull();
+
+        index.add(new Document("a", List.of(3, 4)), 6, null);
+        assertThat(index.getPositionsInOrder(new Document(), new Document("a", 1))).isNull();
+    }
+
+    @Test
+    void testCheckAdd_cannotIndexParallelArrays() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1_b_1", List.of(
+            new IndexKey("a", true),
+            new IndexKey("b", true)
+        ), false);
+
+        assertThatExceptionOfType(CannotIndexParallelArraysError.class)
+            .isThrownBy(() -> index.checkAdd(new Document("a", List.of(1, 2)).append("b", List.of(3, 4)), null))
+            .withMessage("[Error 171] cannot index parallel arrays [b] [a]");
+    }
+
+    @Test
+    void testSparse() throws Exception {
+        MemorySecondaryIndex index = new MemorySecondaryIndex("a_1", List.of(new IndexKey("a", true)), true);
+
+        index.add(new Document("b", 1), 0, null);
+        assertThat(index.isEmpty()).isTrue();
+
+        index.remove(new Document("b", 1), 0);
+        assertThat(index.isEmpty()).isTrue();
+    }
+
+}
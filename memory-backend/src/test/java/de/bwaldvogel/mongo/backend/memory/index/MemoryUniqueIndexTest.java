@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import de.bwaldvogel.mongo.backend.Index;
 import de.bwaldvogel.mongo.backend.IndexKey;
 import de.bwaldvogel.mongo.backend.KeyValue;
+import de.bwaldvogel.mongo.bson.BsonRegularExpression;
 import de.bwaldvogel.mongo.bson.Document;
 import de.bwaldvogel.mongo.exception.CannotIndexParallelArraysError;
 
@@ -94,6 +95,106 @@ class MemoryUniqueIndexTest {
         );
     }
 
+    @Test
+    void testGetPositions_range() throws Exception {
+        MemoryUniqueIndex index = new MemoryUniqueIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        index.add(new Document("a", 3), 0, null);
+        index.add(new Document("a", 1), 1, null);
+        index.add(new Document("a", 2.5), 2, null);
+        index.add(new Document("a", "x"), 3, null);
+        index.add(new Document("a", null), 4, null);
+        index.add(new Document("a", 5L), 5, null);
+
+        assertThat(index.canHandle(new Document("a", new Document("$gt", 1)))).isTrue();
+        assertThat(index.getPositions(new Document("a", new Document("$gt", 1)))).containsExactly(2, 0, 5);
+        assertThat(index.getPositions(new Document("a", new Document("$gte", 1)))).containsExactly(1, 2, 0, 5);
+        assertThat(index.getPositions(new Document("a", new Document("$lt", 3)))).containsExactly(1, 2);
+        assertThat(index.getPositions(new Document("a", new Document("$lte", 3.0)))).containsExactly(1, 2, 0);
+        assertThat(index.getPositions(new Document("a", new Document("$gt", 1).append("$lt", 5)))).containsExactly(2, 0);
+        assertThat(index.getPositions(new Document("a", new Document("$gte", "a")))).containsExactly(3);
+        assertThat(index.getPositions(new Document("a", new Document("$gt", 5)))).isEmpty();
+    }
+
+    @Test
+    void testGetPositions_rangeOnMultiKeyIndex() throws Exception {
+        MemoryUniqueIndex index = new MemoryUniqueIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        index.add(new Document("a", List.of(1, 10)), 0, null);
+        index.add(new Document("a", 5), 1, null);
+
+        // the first document matches {a: {$gt: 2, $lt: 8}} since 10 > 2 and 1 < 8
+        assertThat(index.getPositions(new Document("a", new Document("$gt", 2).append("$lt", 8)))).containsExactly(1, 0);
+    }
+
+    @Test
+    void testGetPositions_regularExpression() throws Exception {
+        MemoryUniqueIndex index = new MemoryUniqueIndex("a_1", List.of(new IndexKey("a", true)), false);
+
+        index.add(new Document("a", "abc"), 0, null);
+        index.add(new Document("a", "ab"), 1, null);
+        index.add(new Document("a", "b"), 2, null);
+        index.add(new Document("a", "Abc"), 3, null);
+        index.add(new Document("a", 1), 4, null);
+
+        assertThat(index.getPositions(new Document("a", new BsonRegularExpression("^ab", "")))).containsExactly(1, 0);
+        assertThat(index.getPositions(new Document("a", new BsonRegularExpression("^abc?$", "")))).containsExactly(1, 0);
+        assertThat(index.getPositions(new Document("a", new BsonRegularExpression("^ab", "i")))).containsExactly(3, 1, 0);
+        assertThat(index.getPositions(new Document("a", new BsonRegularExpression("c", "")))).containsExactly(3, 0);
+        assertThat(index.getPositions(new Document("a", new Document("$regex", "^b")))).containsExactly(2);
+    }
+
+    @Test
+    void testGetPositions_compoundPrefixAndRange() throws Exception {
+        MemoryUniqueIndex index = new MemoryUniqueIndex("tenant_1_ts_1", List.of(
+            new IndexKey("tenant", true),
+            new IndexKey("ts", true)
+        ), false);
+
+        index.add(new Document("tenant", "a").append("ts", 30), 0, null);
+        index.add(new Document("tenant", "b").append("ts", 10), 1, null);
+        index.add(new Document("tenant", "a").append("ts", 10), 2, null);
+        index.add(new Document("tenant", "a").append("ts", 20), 3, null);
+        index.add(new Document("tenant", "c").append("ts", 20), 4, null);
+
+        Document timeWindow = new Document("tenant", "a").append("ts", new Document("$gte", 10).append("$lt", 30));
+        assertThat(index.canHandle(timeWindow)).isTrue();
+        assertThat(index.getPositions(timeWindow)).containsExactly(2, 3);
+        assertThat(index.getPositions(new Document("tenant", "a"))).containsExactly(2, 3, 0);
+        assertThat(index.getPositions(new Document("tenant", "b").append("other", 1))).containsExactly(1);
+        assertThat(index.getPositions(new Document("tenant", "a").append("ts", 20))).containsExactly(3);
+        assertThat(index.getPositions(new Document("tenant", new Document("$gt", "a")))).containsExactly(1, 4);
+
+        assertThat(index.canHandle(new Document("ts", 10))).isFalse();
+        assertThat(index.canHandle(new Document("tenant", new Document("$ne", "a")))).isFalse();
+    }
+
+    @Test
+    void testGetPositionsInOrder() throws Exception {
+        MemoryUniqueIndex index = new MemoryUniqueIndex("tenant_1_ts_1", List.of(
+            new IndexKey("tenant", true),
+            new IndexKey("ts", true)
+        ), false);
+
+        index.add(new Document("tenant", "a").append("ts", 30), 0, null);
+        index.add(new Document("tenant", "b").append("ts", 10), 1, null);
+        index.add(new Document("tenant", "a").append("ts", 10), 2, null);
+        index.add(new Document("tenant", "a").append("ts", 20), 3, null);
+
+        assertThat(index.getPositionsInOrder(new Document("tenant", "a"), new Document("ts", -1)))
+            .containsExactly(0, 3, 2);
+        assertThat(index.getPositionsInOrder(new Document("tenant", "a").append("ts", new Document("$lt", 30)), new Document("ts", -1)))
+            .containsExactly(3, 2);
+        assertThat(index.getPositionsInOrder(new Document("tenant", "a").append("ts", new Document("$gt", 10)), new Document("ts", 1)))
+            .containsExactly(3, 0);
+        assertThat(index.getPositionsInOrder(new Document(), new Document("tenant", 1).append("ts", 1)))
+            .containsExactly(2, 3, 0, 1);
+        assertThat(index.getPositionsInOrder(new Document("tenant", "b"), new Document("tenant", -1).append("ts", -1)))
+            .containsExactly(1);
+
+        assertThat(index.getPositionsInOrder(new Document(), new Document("ts", 1))).isNull();
+    }
+
     private static Document jsonDocument(String json) {
         return convert(json(json));
     }
@@ -11,6 +11,7 @@ import java.util.Objects;
 import java.util.Spliterator;
 import java.util.Spliterators.AbstractSpliterator;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -82,7 +83,9 @@ public class PostgresqlCollection extends AbstractSynchronizedMongoCollection<Lo
                 }
             }, false);
 
-            return matchDocumentsFromStream(query, documents, numberToSkip, numberToReturn, batchSize, null, fieldSelector);
+            // the result set is closed when this method returns, hence a cursor cannot read from it later
+            List<Document> allDocuments = documents.collect(Collectors.toList());
+            return matchDocumentsFromStream(query, allDocuments.stream(), numberToSkip, numberToReturn, batchSize, null, fieldSelector);
         } catch (SQLException e) {
             throw new MongoServerException("Failed to query " + this, e);
         }
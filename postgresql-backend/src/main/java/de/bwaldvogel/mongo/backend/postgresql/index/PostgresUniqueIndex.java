@@ -120,8 +120,8 @@ public class PostgresUniqueIndex extends Index<Long> {
     }
 
     @Override
-    public Long remove(Document document) {
-        return getPosition(document);
+    public void remove(Document document, Long position) {
+        // the index is maintained by the database when the row is deleted
     }
 
     private void fillStrings(PreparedStatement statement, Map<String, Object> keyValues) throws SQLException {
@@ -8,26 +8,47 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
 
 import de.bwaldvogel.mongo.backend.CollectionUtils;
+import de.bwaldvogel.mongo.wire.AdmissionControl;
+import de.bwaldvogel.mongo.wire.RequestExecutor;
 
 public abstract class MongoServerTest {
 
@@ -194,6 +215,206 @@ public abstract class MongoServerTest {
             .withMessage("key required for servers");
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = { "snappy", "zstd", "zlib" })
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testCompression(String compressor) throws Exception {
+        String connectionString = server.bindAndGetConnectionString();
+
+        try (MongoClient client = MongoClients.create(connectionString + "/?compressors=" + compressor)) {
+            MongoCollection<Document> collection = client.getDatabase("abc").getCollection("def");
+            for (int i = 0; i < 100; i++) {
+                collection.insertOne(new Document("_id", i).append("value", "x".repeat(1000)));
+            }
+
+            assertThat(collection.find().into(new ArrayList<>()))
+                .hasSize(100)
+                .allSatisfy(document -> assertThat(document.getString("value")).hasSize(1000));
+
+            Document response = client.getDatabase("admin")
+                .runCommand(new Document("isMaster", 1).append("compression", List.of("unknown", compressor)));
+            assertThat(response.getList("compression", String.class)).containsExactly(compressor);
+        }
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testCompressionDisabled() throws Exception {
+        server.setCompressors();
+        String connectionString = server.bindAndGetConnectionString();
+
+        try (MongoClient client = MongoClients.create(connectionString + "/?compressors=zlib")) {
+            Document response = client.getDatabase("admin")
+                .runCommand(new Document("isMaster", 1).append("compression", List.of("zlib")));
+            assertThat(response.getList("compression", String.class)).isEmpty();
+            pingServer(client);
+        }
+    }
+
+    @Test
+    void testSetUnsupportedCompressor() throws Exception {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> server.setCompressors("zlib", "lz4"))
+            .withMessage("Unsupported compressor: lz4");
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testChecksums() throws Exception {
+        server.enableChecksums();
+        String connectionString = server.bindAndGetConnectionString();
+
+        try (MongoClient client = MongoClients.create(connectionString)) {
+            MongoCollection<Document> collection = client.getDatabase("abc").getCollection("def");
+            collection.insertOne(new Document("_id", 1).append("value", "x".repeat(1000)));
+            assertThat(collection.find().first()).isEqualTo(new Document("_id", 1).append("value", "x".repeat(1000)));
+        }
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> server.enableChecksums())
+            .withMessage("Server already started");
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testUnacknowledgedWrites() throws Exception {
+        String connectionString = server.bindAndGetConnectionString();
+
+        // a single connection processes the requests in order
+        try (MongoClient client = MongoClients.create(connectionString + "/?maxPoolSize=1")) {
+            MongoCollection<Document> collection = client.getDatabase("abc").getCollection("def")
+                .withWriteConcern(WriteConcern.UNACKNOWLEDGED);
+            for (int i = 0; i < 10; i++) {
+                collection.insertOne(new Document("_id", i));
+            }
+            collection.insertOne(new Document("_id", 0)); // duplicate key errors are not reported
+            collection.deleteOne(new Document("_id", 9));
+
+            assertThat(collection.withWriteConcern(WriteConcern.ACKNOWLEDGED).countDocuments()).isEqualTo(9);
+        }
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    @EnabledOnOs(value = OS.LINUX, architectures = { "amd64", "aarch64" })
+    void testNativeTransportWithMultipleAcceptors() throws Exception {
+        server.enableNativeTransport(2);
+        String connectionString = server.bindAndGetConnectionString();
+        assertThat(server.isNativeTransportActive()).isTrue();
+
+        for (int i = 0; i < 5; i++) {
+            try (MongoClient client = MongoClients.create(connectionString)) {
+                pingServer(client);
+            }
+        }
+
+        server.stopListening();
+
+        // all acceptors must be closed
+        InetSocketAddress serverAddress = toInetSocketAddress(connectionString);
+        assertThatExceptionOfType(IOException.class)
+            .isThrownBy(() -> {
+                try (Socket socket = new Socket()) {
+                    socket.connect(serverAddress);
+                }
+            });
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testUnixDomainSocket(boolean nativeTransport, @TempDir Path tempDir) throws Exception {
+        if (nativeTransport) {
+            server.enableNativeTransport();
+        }
+        Path socketPath = tempDir.resolve("mongo.sock");
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+
+        assertThat(server.getLocalAddress()).isNull();
+        assertThat(server.getUnixDomainSocketPath()).isEqualTo(socketPath);
+        assertThat(server).hasToString("MongoServer(path: " + socketPath + ", ssl: false)");
+        assertThat(server.getConnectionString())
+            .startsWith("mongodb://%2F")
+            .isEqualTo("mongodb://" + URLEncoder.encode(socketPath.toString(), StandardCharsets.UTF_8));
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            RawBsonDocument response = runCommand(channel, new Document("ping", 1).append("$db", "admin"));
+            assertThat(response.getNumber("ok").intValue()).isEqualTo(1);
+        }
+
+        server.stopListening();
+        assertThat(server.getUnixDomainSocketPath()).isNull();
+        assertThat(socketPath).doesNotExist();
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testMaxConnections() throws Exception {
+        server.setMaxConnections(1);
+        server.setMaxInFlightRequests(1, 10);
+        server.setMaxPendingReplyBytes(1024 * 1024);
+        InetSocketAddress serverAddress = server.bind();
+
+        try (SocketChannel first = SocketChannel.open(serverAddress)) {
+            // make sure that the first connection was accepted before the second connection is opened
+            runCommand(first, new Document("ping", 1).append("$db", "admin"));
+
+            try (SocketChannel second = SocketChannel.open(serverAddress)) {
+                assertThat(second.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+            }
+
+            RawBsonDocument serverStatus = runCommand(first, new Document("serverStatus", 1).append("$db", "admin"));
+            RawBsonDocument connections = (RawBsonDocument) serverStatus.getDocument("connections");
+            assertThat(connections.getInt32("current").getValue()).isEqualTo(1);
+            assertThat(connections.getInt32("available").getValue()).isEqualTo(0);
+            assertThat(connections.getInt64("totalCreated").getValue()).isEqualTo(1);
+            assertThat(connections.getInt64("rejected").getValue()).isEqualTo(1);
+        }
+
+        // the request is finished on the server when its reply was written
+        AdmissionControl admissionControl = server.getAdmissionControl();
+        assertThat(admissionControl.awaitNoInFlightRequests(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(admissionControl.getInFlightRequests()).isZero();
+    }
+
+    @Test
+    void testSetMaxConnectionsAfterAlreadyStarted() throws Exception {
+        server.bind();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> server.setMaxConnections(10))
+            .withMessage("Server already started");
+    }
+
+    @Test
+    @Timeout(TEST_TIMEOUT_SECONDS)
+    void testRequestExecutor() throws Exception {
+        server.enableRequestExecutor(2);
+        String connectionString = server.bindAndGetConnectionString();
+
+        try (MongoClient client = MongoClients.create(connectionString)) {
+            client.getDatabase("abc").getCollection("def").insertOne(new Document("_id", 1));
+            assertThat(client.getDatabase("abc").getCollection("def").countDocuments()).isEqualTo(1);
+            pingServer(client);
+        }
+
+        RequestExecutor requestExecutor = server.getRequestExecutor();
+        assertThat(requestExecutor.getCompletedRequests()).isPositive();
+        assertThat(requestExecutor.getMaxQueueDepth()).isPositive();
+
+        server.shutdownNow();
+        assertThat(server.getRequestExecutor()).isNull();
+    }
+
+    @Test
+    void testEnableRequestExecutorAfterAlreadyStarted() throws Exception {
+        server.bindAndGetConnectionString();
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> server.enableRequestExecutor(2))
+            .withMessage("Server already started");
+    }
+
     private PrivateKey getPrivateKey() throws Exception {
         return (PrivateKey) loadTestKeyStore().getKey("localhost", new char[0]);
     }
@@ -219,6 +440,36 @@ public abstract class MongoServerTest {
         return sslContext;
     }
 
+    // the driver needs an additional library for Unix domain sockets, hence the message is sent by hand
+    private static RawBsonDocument runCommand(SocketChannel channel, Document command) throws IOException {
+        ByteBuffer body = new RawBsonDocument(command, new DocumentCodec()).getByteBuffer().asNIO();
+        ByteBuffer request = ByteBuffer.allocate(21 + body.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        request.putInt(request.capacity());
+        request.putInt(1); // requestID
+        request.putInt(0); // responseTo
+        request.putInt(2013); // OP_MSG
+        request.putInt(0); // flags
+        request.put((byte) 0); // section kind: body
+        request.put(body);
+        request.flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+
+        ByteBuffer length = readFully(channel, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN));
+        ByteBuffer response = readFully(channel, ByteBuffer.allocate(length.getInt() - 4));
+        return new RawBsonDocument(response.array(), 17, response.capacity() - 17);
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+        }
+        return buffer.flip();
+    }
+
     private void pingServer(MongoClient client) {
         client.getDatabase("admin").runCommand(new Document("ping", 1));
     }
@@ -84,6 +84,7 @@ import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCommandException;
 import com.mongodb.MongoCursorNotFoundException;
+import com.mongodb.MongoExecutionTimeoutException;
 import com.mongodb.MongoNamespace;
 import com.mongodb.MongoQueryException;
 import com.mongodb.MongoServerException;
@@ -252,6 +253,34 @@ public abstract class AbstractBackendTest extends AbstractTest {
         assertThat(retrievedDocuments).last().isEqualTo(json("x: 1024"));
     }
 
+    @Test
+    void testCursor_withConcurrentWrites() {
+        for (int i = 0; i < 30; i++) {
+            collection.insertOne(new Document("_id", i).append("x", i % 2));
+        }
+
+        MongoCursor<Document> cursor = collection.find(json("x: 0")).batchSize(4).cursor();
+
+        List<Document> retrievedDocuments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            retrievedDocuments.add(cursor.next());
+        }
+
+        collection.deleteMany(json("_id: {$lt: 6}"));
+        collection.updateMany(json("x: 1"), json("$set: {x: 2}"));
+        for (int i = 30; i < 40; i++) {
+            collection.insertOne(new Document("_id", i).append("x", 1));
+        }
+
+        while (cursor.hasNext()) {
+            retrievedDocuments.add(cursor.next());
+        }
+
+        assertThat(retrievedDocuments)
+            .extracting(document -> document.get("_id"))
+            .containsExactly(0, 2, 4, 6, 8, 10, 12, 14, 16, 18, 20, 22, 24, 26, 28);
+    }
+
     @Test
     void testCloseCursor() {
         int expectedCount = 20;
@@ -395,6 +424,12 @@ public abstract class AbstractBackendTest extends AbstractTest {
         assertThat(stats.getInteger("count")).isEqualTo(2);
         assertThat(stats.getInteger("size")).isEqualTo(57);
         assertThat(stats.getInteger("avgObjSize")).isEqualTo(28);
+
+        Document fieldNameInterning = stats.get("fieldNameInterning", Document.class);
+        assertThat(fieldNameInterning.getInteger("internedFieldNames")).isPositive();
+        assertThat(fieldNameInterning.getInteger("maxInternedFieldNames")).isEqualTo(10_000);
+        assertThat(fieldNameInterning.getLong("deduplicatedFieldNames")).isNotNegative();
+        assertThat(fieldNameInterning.getLong("deduplicatedBytes")).isNotNegative();
     }
 
     private Document getCollStats() {
@@ -478,6 +513,79 @@ public abstract class AbstractBackendTest extends AbstractTest {
             .isEqualTo(json("ok: 1.0, n: 3"));
     }
 
+    @Test
+    void testMaxTimeMS() throws Exception {
+        collection.insertMany(List.of(json("_id: 1, x: 'a'"), json("_id: 2, x: 'b'"), json("_id: 3, x: 'a'")));
+
+        assertThat(collection.find(json("x: 'a'")).maxTime(10, TimeUnit.SECONDS))
+            .extracting(document -> document.get("_id"))
+            .containsExactly(1, 3);
+
+        assertThat(collection.aggregate(List.of(json("$group: {_id: '$x'}"), json("$sort: {_id: 1}"))).maxTime(10, TimeUnit.SECONDS))
+            .containsExactly(json("_id: 'a'"), json("_id: 'b'"));
+
+        assertThat(collection.countDocuments(json("x: 'a'"), new CountOptions().maxTime(10, TimeUnit.SECONDS)))
+            .isEqualTo(2);
+
+        assertThat(collection.distinct("x", String.class).maxTime(10, TimeUnit.SECONDS))
+            .containsExactly("a", "b");
+
+        assertThatExceptionOfType(MongoCommandException.class)
+            .isThrownBy(() -> db.runCommand(new Document("find", getCollectionName()).append("maxTimeMS", -1)))
+            .withMessageContaining("error 2 (BadValue): '-1 value for maxTimeMS is out of range [0, 2147483647]'");
+
+        Document serverStatus = runCommand("serverStatus");
+        Document findMetrics = serverStatus.get("metrics", Document.class).get("commands", Document.class).get("find", Document.class);
+        assertThat(findMetrics.getLong("failed")).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void testMaxTimeMSExpired() throws Exception {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            documents.add(new Document("_id", i).append("x", i % 10));
+        }
+        collection.insertMany(documents);
+
+        // joins every document with every other document, which takes far longer than one millisecond
+        List<Document> pipeline = List.of(json("$lookup: {from: '" + getCollectionName() + "', localField: 'x', foreignField: 'x', as: 'others'}"));
+        assertThatExceptionOfType(MongoExecutionTimeoutException.class)
+            .isThrownBy(() -> collection.aggregate(pipeline).maxTime(1, TimeUnit.MILLISECONDS).first())
+            .withMessageContaining("operation exceeded time limit")
+            .extracting(MongoExecutionTimeoutException::getCode)
+            .isEqualTo(50);
+
+        assertThat(collection.aggregate(pipeline).maxTime(1, TimeUnit.MINUTES).first()).isNotNull();
+    }
+
+    @Test
+    void testMaxTimeMSExpiredOnGetMore() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            collection.insertOne(new Document("_id", i + 1));
+        }
+
+        try (MongoCursor<Document> cursor = collection.find().batchSize(2).maxTime(200, TimeUnit.MILLISECONDS).cursor()) {
+            assertThat(cursor.next()).isEqualTo(json("_id: 1"));
+            assertThat(cursor.next()).isEqualTo(json("_id: 2"));
+            assertThat(cursor.next()).isEqualTo(json("_id: 3"));
+
+            // the time limit of the query also applies to the getMores that continue its cursor
+            Thread.sleep(300);
+
+            assertThatExceptionOfType(MongoExecutionTimeoutException.class)
+                .isThrownBy(() -> {
+                    while (cursor.hasNext()) {
+                        cursor.next();
+                    }
+                })
+                .withMessageContaining("operation exceeded time limit")
+                .extracting(MongoExecutionTimeoutException::getCode)
+                .isEqualTo(50);
+        }
+
+        assertThat(getNumberOfOpenCursors()).isZero();
+    }
+
     @Test
     void testNonPrimaryCountCommand() {
         assertThat(collection.withReadPreference(ReadPreference.nearest()).countDocuments()).isZero();
@@ -803,7 +911,38 @@ public abstract class AbstractBackendTest extends AbstractTest {
     public void testCurrentOperations() {
         Document currentOperations = getAdminDb().getCollection("$cmd.sys.inprog").find().first();
         assertThat(currentOperations).isNotNull();
-        assertThat(currentOperations.get("inprog")).isInstanceOf(List.class);
+        assertThat(currentOperations.getList("inprog", Document.class))
+            .extracting(operation -> operation.get("ns"))
+            .contains("admin.$cmd.sys.inprog");
+    }
+
+    @Test
+    void testCurrentOpAndKillOp() throws Exception {
+        Document currentOp = getAdminDb().runCommand(json("currentOp: 1, op: 'command', 'command.currentOp': 1"));
+        assertThat(currentOp.get("ok")).isEqualTo(1.0);
+        List<Document> operations = currentOp.getList("inprog", Document.class);
+        assertThat(operations).hasSize(1);
+        Document operation = operations.get(0);
+        assertThat(operation.get("op")).isEqualTo("command");
+        assertThat(operation.get("ns")).isEqualTo("admin.$cmd");
+        assertThat(operation.get("active")).isEqualTo(true);
+        assertThat(operation.get("command", Document.class).get("currentOp")).isEqualTo(1);
+        assertThat(operation.get("opid")).isInstanceOf(Integer.class);
+
+        assertThat(getAdminDb().runCommand(json("currentOp: 1, op: 'query'")).getList("inprog", Document.class)).isEmpty();
+
+        Document killOp = getAdminDb().runCommand(new Document("killOp", 1).append("op", operation.get("opid")));
+        assertThat(killOp.get("ok")).isEqualTo(1.0);
+        assertThat(killOp.get("info")).isEqualTo("attempting to kill op");
+
+        // like all other commands, currentOp and killOp are case-insensitive
+        assertThat(getAdminDb().runCommand(json("currentop: 1, op: 'query'")).getList("inprog", Document.class)).isEmpty();
+        Document lowerCaseKillOp = getAdminDb().runCommand(new Document("killop", 1).append("op", operation.get("opid")));
+        assertThat(lowerCaseKillOp.get("ok")).isEqualTo(1.0);
+
+        assertThatExceptionOfType(MongoCommandException.class)
+            .isThrownBy(() -> getAdminDb().runCommand(json("killOp: 1, op: 'abc'")))
+            .withMessageContaining("error 2 (BadValue): 'Illegal attempt to kill operation with op: abc'");
     }
 
     @Test
@@ -2559,6 +2698,38 @@ public abstract class AbstractBackendTest extends AbstractTest {
         assertThat(connections.get("current")).isNotNull();
     }
 
+    @Test
+    void testServerStatusMetrics() {
+        collection.insertMany(List.of(new Document("_id", 1), new Document("_id", 2), new Document("_id", 3)));
+        collection.updateOne(json("_id: 1"), json("$set: {x: 1}"));
+        collection.deleteOne(json("_id: 2"));
+        assertThat(collection.find().into(new ArrayList<>())).hasSize(2);
+
+        Document serverStatus = runCommand("serverStatus");
+
+        Document opcounters = serverStatus.get("opcounters", Document.class);
+        assertThat(opcounters.getLong("insert")).isGreaterThanOrEqualTo(3);
+        assertThat(opcounters.getLong("update")).isGreaterThanOrEqualTo(1);
+        assertThat(opcounters.getLong("delete")).isGreaterThanOrEqualTo(1);
+        assertThat(opcounters.getLong("query")).isGreaterThanOrEqualTo(1);
+        assertThat(opcounters.getLong("command")).isPositive();
+
+        Document network = serverStatus.get("network", Document.class);
+        assertThat(network.getLong("bytesIn")).isPositive();
+        assertThat(network.getLong("bytesOut")).isPositive();
+        assertThat(network.getLong("numRequests")).isPositive();
+
+        Document writeLatencies = serverStatus.get("opLatencies", Document.class).get("writes", Document.class);
+        assertThat(writeLatencies.getLong("ops")).isGreaterThanOrEqualTo(3);
+        assertThat(writeLatencies.getList("histogram", Document.class)).isNotEmpty();
+
+        Document commands = serverStatus.get("metrics", Document.class).get("commands", Document.class);
+        Document insertMetrics = commands.get("insert", Document.class);
+        assertThat(insertMetrics.getLong("total")).isGreaterThanOrEqualTo(1);
+        assertThat(insertMetrics.getLong("failed")).isZero();
+        assertThat(insertMetrics.get("latency", Document.class).getLong("ops")).isEqualTo(insertMetrics.getLong("total"));
+    }
+
     @Test
     void testServerStatusWithOpenCursors() {
         for (int i = 0; i < 20; i++) {
@@ -2581,6 +2752,43 @@ public abstract class AbstractBackendTest extends AbstractTest {
         }
     }
 
+    @Test
+    void testIdleCursorTimeout() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            collection.insertOne(new Document("_id", i + 1));
+        }
+
+        CursorRegistry cursorRegistry = ((AbstractMongoBackend) backend).getCursorRegistry();
+        try (MongoCursor<Document> idleCursor = collection.find().batchSize(2).cursor();
+             MongoCursor<Document> noTimeoutCursor = collection.find().batchSize(2).noCursorTimeout(true).cursor()) {
+            assertThat(runCommand("serverStatus").get("metrics", Document.class).get("cursor", Document.class)
+                .get("open", Document.class).getLong("noTimeout")).isEqualTo(1);
+
+            // the cursor timeout is measured with a monotonic clock, hence it can't be wound forward
+            cursorRegistry.setCursorTimeout(Duration.ofMillis(200));
+            for (int i = 0; i < 100 && cursorRegistry.getTimedOutCursors() == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertThat(cursorRegistry.getTimedOutCursors()).isEqualTo(1);
+            assertThat(cursorRegistry.size()).isEqualTo(1);
+
+            idleCursor.next();
+            idleCursor.next();
+            assertThatExceptionOfType(MongoCursorNotFoundException.class)
+                .isThrownBy(idleCursor::next)
+                .withMessageContaining("error 43 (CursorNotFound)");
+
+            for (int i = 0; i < 10; i++) {
+                assertThat(noTimeoutCursor.next()).isEqualTo(new Document("_id", i + 1));
+            }
+
+            Document cursorMetrics = runCommand("serverStatus").get("metrics", Document.class).get("cursor", Document.class);
+            assertThat(cursorMetrics.getLong("timedOut")).isEqualTo(1);
+        } finally {
+            cursorRegistry.setCursorTimeout(CursorRegistry.DEFAULT_CURSOR_TIMEOUT);
+        }
+    }
+
     @Test
     void testPing() {
         assertThat(runCommand("ping").getDouble("ok")).isEqualTo(1.0);
@@ -2681,6 +2889,105 @@ public abstract class AbstractBackendTest extends AbstractTest {
             );
     }
 
+    @Test
+    void testSortWithIndex() {
+        collection.createIndex(json("a: 1"));
+
+        collection.insertOne(json("_id: 1, a: null"));
+        collection.insertOne(json("_id: 2, a: 1"));
+        collection.insertOne(json("_id: 3, a: 'abc'"));
+        collection.insertOne(json("_id: 4"));
+        collection.insertOne(json("_id: 5, a: 3"));
+        collection.insertOne(json("_id: 6, a: 2.5"));
+
+        assertThat(collection.find().sort(json("a: 1")).skip(2).limit(3))
+            .containsExactly(
+                json("_id: 2, a: 1"),
+                json("_id: 6, a: 2.5"),
+                json("_id: 5, a: 3")
+            );
+
+        assertThat(collection.find().sort(json("a: -1")).limit(2))
+            .containsExactly(
+                json("_id: 3, a: 'abc'"),
+                json("_id: 5, a: 3")
+            );
+
+        assertThat(collection.find(json("a: {$lt: 3}")).sort(json("a: -1")))
+            .containsExactly(
+                json("_id: 6, a: 2.5"),
+                json("_id: 2, a: 1")
+            );
+
+        assertThat(collection.find(json("_id: {$gt: 2}")).sort(json("a: 1")).limit(2))
+            .containsExactly(
+                json("_id: 4"),
+                json("_id: 6, a: 2.5")
+            );
+
+        collection.insertOne(json("_id: 7, a: [0, 5]"));
+
+        assertThat(collection.find().sort(json("a: 1")).limit(3))
+            .containsExactly(
+                json("_id: 1, a: null"),
+                json("_id: 4"),
+                json("_id: 7, a: [0, 5]")
+            );
+
+        assertThat(collection.find().sort(json("a: -1")).limit(2))
+            .containsExactly(
+                json("_id: 3, a: 'abc'"),
+                json("_id: 7, a: [0, 5]")
+            );
+    }
+
+    @Test
+    void testSortWithCompoundIndexAndLimit() {
+        collection.createIndex(json("tenant: 1, ts: 1"));
+
+        for (int i = 0; i < 30; i++) {
+            collection.insertOne(json("tenant: 'tenant" + (i % 3) + "', ts: " + (i * 7 % 30)));
+        }
+
+        assertThat(collection.find(json("tenant: 'tenant1'")).sort(json("ts: -1")).limit(3).projection(json("_id: 0")))
+            .containsExactly(
+                json("tenant: 'tenant1', ts: 28"),
+                json("tenant: 'tenant1', ts: 25"),
+                json("tenant: 'tenant1', ts: 22")
+            );
+
+        assertThat(collection.find(json("tenant: 'tenant2', ts: {$gte: 10}")).sort(json("ts: 1")).limit(2).projection(json("_id: 0")))
+            .containsExactly(
+                json("tenant: 'tenant2', ts: 11"),
+                json("tenant: 'tenant2', ts: 14")
+            );
+
+        assertThat(collection.find().sort(json("tenant: -1, ts: -1")).limit(1).projection(json("_id: 0")))
+            .containsExactly(json("tenant: 'tenant2', ts: 29"));
+    }
+
+    @Test
+    void testSortAndLimitWithoutIndex() {
+        for (int i = 0; i < 20; i++) {
+            collection.insertOne(json("_id: " + i + ", a: " + (i % 4)));
+        }
+
+        assertThat(collection.find().sort(json("a: -1, _id: 1")).skip(3).limit(4))
+            .containsExactly(
+                json("_id: 15, a: 3"),
+                json("_id: 19, a: 3"),
+                json("_id: 2, a: 2"),
+                json("_id: 6, a: 2")
+            );
+
+        assertThat(collection.find(json("_id: {$gte: 10}")).sort(json("a: 1, _id: -1")).limit(3))
+            .containsExactly(
+                json("_id: 16, a: 0"),
+                json("_id: 12, a: 0"),
+                json("_id: 17, a: 1")
+            );
+    }
+
     @Test
     void testUpdate() {
         Document object = json("_id: 1");
@@ -3033,6 +3340,29 @@ public abstract class AbstractBackendTest extends AbstractTest {
         assertThat(yetNewSize.intValue() - oldSize.intValue()).isEqualTo(4);
     }
 
+    @Test
+    void testDatasizeAfterUpdatesAndDeletes() {
+        collection.insertOne(json("_id: 1, a: {b: {c: 1, d: 'x'}, e: [1, 2]}, f: 'foo'"));
+        collection.insertOne(json("_id: 2, a: {b: {c: 2}}"));
+        collection.insertOne(json("_id: 3, g: 1.5"));
+
+        collection.updateOne(json("_id: 1"), json("$set: {'a.b.c': 'long string value', 'a.x': {y: 1}}"));
+        collection.updateOne(json("_id: 1"), json("$unset: {f: 1}, $push: {'a.e': 3}"));
+        collection.updateOne(json("_id: 2"), json("$rename: {'a.b': 'z'}, $inc: {n: 1}"));
+        collection.replaceOne(json("_id: 3"), json("_id: 3, h: [{i: 'text'}]"));
+        collection.deleteOne(json("_id: 2"));
+
+        MongoCollection<Document> otherCollection = db.getCollection("other");
+        otherCollection.insertMany(collection.find().into(new ArrayList<>()));
+
+        Number size = getCollStats().getInteger("size");
+        Number expectedSize = getCollectionStatistics(db, "other").getInteger("size");
+        assertThat(size).isEqualTo(expectedSize);
+
+        collection.deleteMany(json(""));
+        assertThat(getCollStats().getInteger("size")).isEqualTo(0);
+    }
+
     @Test
     void testUpdatePull() {
         Document obj = json("_id: 1");
@@ -4283,6 +4613,158 @@ public abstract class AbstractBackendTest extends AbstractTest {
         collection.insertOne(json("someField: 'abc'"));
     }
 
+    @Test
+    void testQueryWithNonUniqueIndex() {
+        collection.createIndex(json("a: 1"));
+
+        collection.insertOne(json("_id: 1, a: 10"));
+        collection.insertOne(json("_id: 2, a: [10, 20]"));
+        collection.insertOne(json("_id: 3, a: 20.0"));
+        collection.insertOne(json("_id: 4, b: 10"));
+        collection.insertOne(json("_id: 5, a: null"));
+
+        assertThat(collection.find(json("a: 10")))
+            .containsExactly(json("_id: 1, a: 10"), json("_id: 2, a: [10, 20]"));
+
+        assertThat(collection.find(json("a: {$in: [20, 30]}")))
+            .containsExactly(json("_id: 2, a: [10, 20]"), json("_id: 3, a: 20.0"));
+
+        assertThat(collection.find(json("a: 20, _id: {$gt: 2}")))
+            .containsExactly(json("_id: 3, a: 20.0"));
+
+        assertThat(collection.find(json("a: null")))
+            .containsExactly(json("_id: 4, b: 10"), json("_id: 5, a: null"));
+
+        collection.updateMany(json("a: 10"), json("$set: {a: 30}"));
+
+        assertThat(collection.find(json("a: 10"))).isEmpty();
+        assertThat(collection.find(json("a: 30")))
+            .containsExactly(json("_id: 1, a: 30"), json("_id: 2, a: 30"));
+
+        collection.deleteMany(json("a: 30"));
+
+        assertThat(collection.find(json("a: 30"))).isEmpty();
+        assertThat(collection.find(json("a: {$in: [10, 20, 30]}")))
+            .containsExactly(json("_id: 3, a: 20.0"));
+
+        collection.insertOne(json("_id: 6, a: 30"));
+
+        assertThat(collection.find(json("a: 30")))
+            .containsExactly(json("_id: 6, a: 30"));
+    }
+
+    @Test
+    void testQueryWithNonUniqueCompoundIndexOnSubdocuments() {
+        collection.insertOne(json("_id: 1, a: {b: 'x', c: 1}"));
+        collection.insertOne(json("_id: 2, a: [{b: 'x', c: 1}, {b: 'y', c: 2}]"));
+        collection.insertOne(json("_id: 3, a: {b: 'x', c: 2}"));
+
+        collection.createIndex(json("'a.b': 1, 'a.c': -1"));
+
+        assertThat(collection.find(json("'a.b': 'x', 'a.c': 1")))
+            .containsExactly(
+                json("_id: 1, a: {b: 'x', c: 1}"),
+                json("_id: 2, a: [{b: 'x', c: 1}, {b: 'y', c: 2}]")
+            );
+
+        assertThat(collection.find(json("'a.b': 'y', 'a.c': 2")))
+            .containsExactly(json("_id: 2, a: [{b: 'x', c: 1}, {b: 'y', c: 2}]"));
+
+        collection.deleteOne(json("_id: 2"));
+
+        assertThat(collection.find(json("'a.b': 'y', 'a.c': 2"))).isEmpty();
+    }
+
+    @Test
+    void testRangeQueryWithUniqueIndex() {
+        collection.createIndex(json("a: 1"), new IndexOptions().unique(true));
+
+        collection.insertOne(json("_id: 1, a: 30"));
+        collection.insertOne(json("_id: 2, a: 10.5"));
+        collection.insertOne(json("_id: 3, a: 'abc'"));
+        collection.insertOne(json("_id: 4, a: [5, 40]"));
+        collection.insertOne(json("_id: 5, a: 'abd'"));
+        collection.insertOne(json("_id: 6, a: 'bcd'"));
+        collection.insertOne(json("_id: 7"));
+
+        assertThat(collection.find(json("a: {$gt: 10}")))
+            .containsExactlyInAnyOrder(json("_id: 1, a: 30"), json("_id: 2, a: 10.5"), json("_id: 4, a: [5, 40]"));
+
+        assertThat(collection.find(json("a: {$gte: 10, $lt: 30}")))
+            .containsExactly(json("_id: 2, a: 10.5"));
+
+        assertThat(collection.find(json("a: {$lte: 5}")))
+            .containsExactly(json("_id: 4, a: [5, 40]"));
+
+        assertThat(collection.find(json("a: {$gt: 'abc'}")))
+            .containsExactlyInAnyOrder(json("_id: 5, a: 'abd'"), json("_id: 6, a: 'bcd'"));
+
+        assertThat(collection.find(json("a: {$regex: '^ab'}")))
+            .containsExactlyInAnyOrder(json("_id: 3, a: 'abc'"), json("_id: 5, a: 'abd'"));
+
+        assertThat(collection.find(json("a: {$regex: '^ab', $options: 'i'}, _id: {$gt: 3}")))
+            .containsExactly(json("_id: 5, a: 'abd'"));
+
+        assertThat(collection.find(json("a: {$in: [30, 'bcd', 7]}")))
+            .containsExactlyInAnyOrder(json("_id: 1, a: 30"), json("_id: 6, a: 'bcd'"));
+
+        collection.deleteMany(json("a: {$gt: 20}"));
+
+        assertThat(collection.find(json("a: {$gt: 0}")))
+            .containsExactly(json("_id: 2, a: 10.5"));
+    }
+
+    @Test
+    void testRangeQueryWithUniqueMultiKeyIndex() {
+        collection.createIndex(json("a: 1"), new IndexOptions().unique(true));
+
+        collection.insertOne(json("_id: 1, a: [15, 40]"));
+        collection.insertOne(json("_id: 2, a: 20"));
+
+        assertThat(collection.find(json("a: {$gt: 10}")))
+            .containsExactlyInAnyOrder(json("_id: 1, a: [15, 40]"), json("_id: 2, a: 20"));
+
+        assertThat(collection.countDocuments(json("a: {$gt: 10}"))).isEqualTo(2);
+
+        collection.deleteMany(json("a: {$gt: 10}"));
+
+        assertThat(collection.countDocuments()).isZero();
+    }
+
+    @Test
+    void testTimeWindowQueryWithUniqueCompoundIndex() {
+        collection.createIndex(json("tenant: 1, ts: 1"), new IndexOptions().unique(true));
+
+        Instant start = Instant.parse("2024-03-01T00:00:00Z");
+        for (int i = 0; i < 20; i++) {
+            for (String tenant : List.of("a", "b", "c")) {
+                collection.insertOne(new Document("tenant", tenant)
+                    .append("ts", Date.from(start.plusSeconds(60L * i)))
+                    .append("value", i));
+            }
+        }
+
+        Document timeWindow = new Document("tenant", "b")
+            .append("ts", new Document("$gte", Date.from(start.plusSeconds(60 * 5)))
+                .append("$lt", Date.from(start.plusSeconds(60 * 8))));
+
+        assertThat(collection.find(timeWindow).sort(json("ts: 1")).projection(json("_id: 0, tenant: 1, value: 1")))
+            .containsExactly(
+                json("tenant: 'b', value: 5"),
+                json("tenant: 'b', value: 6"),
+                json("tenant: 'b', value: 7")
+            );
+
+        assertThat(collection.countDocuments(json("tenant: 'c'"))).isEqualTo(20);
+        assertThat(collection.countDocuments(json("tenant: {$gt: 'a'}"))).isEqualTo(40);
+        assertThat(collection.countDocuments(new Document("tenant", "a")
+            .append("ts", new Document("$gt", Date.from(start.plusSeconds(60 * 18)))))).isEqualTo(1);
+
+        assertThatExceptionOfType(MongoWriteException.class)
+            .isThrownBy(() -> collection.insertOne(new Document("tenant", "a").append("ts", Date.from(start))))
+            .withMessageContaining("E11000 duplicate key error collection: testdb.testcoll index: tenant_1_ts_1");
+    }
+
     // https://github.com/bwaldvogel/mongo-java-server/issues/61
     @Test
     void testDeleteAllDocumentsWithUniqueSparseIndex() {
@@ -6848,6 +7330,56 @@ public abstract class AbstractBackendTest extends AbstractTest {
         }
     }
 
+    @Test
+    void testPointLookupsAndUpdatesConcurrently(TestInfo testInfo) throws Exception {
+        int numberOfDocuments = 10;
+        int numberOfReaders = 3;
+        for (int id = 0; id < numberOfDocuments; id++) {
+            collection.insertOne(new Document("_id", id).append("a", 0).append("b", 0));
+        }
+
+        ThreadFactory threadFactory = new CustomizableThreadFactory(testInfo.getDisplayName());
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfReaders + 1, threadFactory);
+        try {
+            Future<?> writer = executorService.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    int id = i % numberOfDocuments;
+                    collection.updateOne(json("_id: " + id), json("$inc: {a: 1, b: 1}"));
+                    // move other documents around, such that positions are reused
+                    collection.insertOne(new Document("_id", "other-" + i));
+                    collection.deleteOne(new Document("_id", "other-" + (i - 1)));
+                }
+                return null;
+            });
+
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < numberOfReaders; reader++) {
+                readers.add(executorService.submit(() -> {
+                    int i = 0;
+                    while (!writer.isDone()) {
+                        int id = i++ % numberOfDocuments;
+                        Document document = collection.find(json("_id: " + id)).first();
+                        assertThat(document).isNotNull();
+                        assertThat(document.get("_id")).isEqualTo(id);
+                    }
+                    return null;
+                }));
+            }
+
+            writer.get(DEFAULT_TEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(DEFAULT_TEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executorService.shutdown();
+            boolean success = executorService.awaitTermination(DEFAULT_TEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            assertThat(success).isTrue();
+        }
+
+        assertThat(collection.countDocuments()).isEqualTo(numberOfDocuments + 1);
+        assertThat(collection.find(json("_id: 0")).first()).isEqualTo(json("_id: 0, a: 50, b: 50"));
+    }
+
     // https://github.com/bwaldvogel/mongo-java-server/issues/197
     @Test
     void testFindDocumentByNestedByArray() {
@@ -123,6 +123,16 @@ public abstract class AbstractOplogTest extends AbstractTest {
         assertThat(deleteOplogDocument.get("o")).isEqualTo(json("_id: 1"));
     }
 
+    @Test
+    void testOplogInsertIsNotAffectedByUpdateOfEmbeddedDocument() {
+        collection.insertOne(json("_id: 1, sub: {counter: 1, other: {x: 1}}, list: [{y: 1}]"));
+        collection.updateOne(json("_id: 1"), json("$inc: {'sub.counter': 1}, $set: {'list.0.y': 2}"));
+
+        Document insertOplogDocument = getOplogCollection().find(json("op: 'i'")).first();
+        assertThat(insertOplogDocument.get("o")).isEqualTo(json("_id: 1, sub: {counter: 1, other: {x: 1}}, list: [{y: 1}]"));
+        assertThat(collection.find().first()).isEqualTo(json("_id: 1, sub: {counter: 2, other: {x: 1}}, list: [{y: 2}]"));
+    }
+
     @Test
     void testQueryOplogWhenOplogIsDisabled() throws Exception {
         backend.disableOplog();